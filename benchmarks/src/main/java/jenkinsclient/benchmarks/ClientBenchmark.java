@@ -0,0 +1,133 @@
+package jenkinsclient.benchmarks;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.offbytwo.jenkins.model.BuildResult;
+
+import jenkinsclient.JenkinsClient;
+import jenkinsclient.JenkinsClientConfig;
+import jenkinsclient.model.QueueItemInfo;
+
+/**
+ * Throughput and latency distribution of the main operations of the client
+ * against a {@link JenkinsStub}. Run all with "java -jar target/benchmarks.jar"
+ * or pick parameters, for example "-p latencyMillis=20 -p jobCacheTtlMillis=0
+ * -t 32". Operations are measured on an already created client, except
+ * createClient.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({ Mode.Throughput, Mode.SampleTime })
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@Threads(8)
+public class ClientBenchmark {
+	private static final String JOB_PATH = "/Folder/JobA";
+	private static final Map<String, String> PARAMS = Collections.singletonMap("BRANCH", "master");
+
+	/** Delay of every answer of the stub. */
+	@Param({ "0", "5" })
+	public long latencyMillis;
+
+	/** Minimum size of every answer of the stub. */
+	@Param({ "512", "16384" })
+	public int payloadBytes;
+
+	/** Zero resolves the job on every trigger and build lookup. */
+	@Param({ "0", "60000" })
+	public long jobCacheTtlMillis;
+
+	@Param({ "20" })
+	public int maxConnectionsPerRoute;
+
+	private JenkinsStub stub;
+	private JenkinsClientConfig config;
+	private JenkinsClient client;
+	private String queueReferenceUrl;
+
+	@Setup(Level.Trial)
+	public void setUp() throws Exception {
+		stub = new JenkinsStub(latencyMillis, payloadBytes, 64);
+		config = new JenkinsClientConfig();
+		config.setJobCacheTtlMillis(jobCacheTtlMillis);
+		config.setMaxConnectionsPerRoute(maxConnectionsPerRoute);
+		config.setMaxConnectionsTotal(maxConnectionsPerRoute);
+		config.setMaxOperations(64);
+		config.setJmxEnabled(false);
+		client = JenkinsClient.getClient(JenkinsClient.createClient(stub.getUrl(), "user", "token", config));
+		queueReferenceUrl = client.jobOps().triggerJob(JOB_PATH, PARAMS);
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() {
+		client.close();
+		stub.close();
+	}
+
+	/**
+	 * Registration of a new client, including its liveness request, and its
+	 * close. Uses another url than the shared client, so it is never reused.
+	 */
+	@Benchmark
+	@Threads(1)
+	public String createClient() throws Exception {
+		String jenkinsId = JenkinsClient.createClient(stub.getUrl() + "create/", "user", "token", config);
+		JenkinsClient.getClient(jenkinsId).close();
+		return jenkinsId;
+	}
+
+	@Benchmark
+	public String triggerJob() throws Exception {
+		return client.jobOps().triggerJob(JOB_PATH, PARAMS);
+	}
+
+	@Benchmark
+	public BuildResult getBuildResult() throws Exception {
+		return client.buildOps().getBuildResult(JOB_PATH, 1);
+	}
+
+	@Benchmark
+	public QueueItemInfo getQueueItemInfo() throws Exception {
+		return client.queueOps().getQueueItemInfo(queueReferenceUrl);
+	}
+
+	@Benchmark
+	public boolean isInQueue() throws Exception {
+		return client.queueOps().isInQueue(queueReferenceUrl);
+	}
+
+	@Benchmark
+	public int getBuildNumber() throws Exception {
+		return client.queueOps().getBuildNumber(queueReferenceUrl);
+	}
+
+	/** Served from the capacity snapshot of the client. */
+	@Benchmark
+	public int getIdleExecutors() throws Exception {
+		return client.getIdleExecutors("linux", false);
+	}
+
+	/** Fetched from the stub on every call. */
+	@Benchmark
+	public int getIdleExecutorsFresh() throws Exception {
+		return client.getIdleExecutors("linux", true);
+	}
+}
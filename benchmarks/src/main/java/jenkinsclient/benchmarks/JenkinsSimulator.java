@@ -0,0 +1,811 @@
+package jenkinsclient.benchmarks;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.sun.net.httpserver.Headers;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * In-process simulated Jenkins controller implementing the REST subset the
+ * client uses: folders and jobs can be created and deleted, triggered builds
+ * wait in the queue until an executor is free, run for a simulated duration
+ * and finish with a result, and queue items and builds can be cancelled and
+ * stopped. Builds serve the artifacts put on their job, with byte ranges,
+ * If-Range and ETags. Executors, queue dynamics, latency, injected errors and
+ * CSRF behaviour are set by a {@link SimulatorConfig}.
+ *
+ * Answers contain all fields the client may ask for, the tree parameter is
+ * only read for the depth of nested jobs and the range of allBuilds.
+ */
+public class JenkinsSimulator implements Closeable {
+	private static final String VERSION = "2.401.3";
+	private static final String FOLDER_CLASS = "com.cloudbees.hudson.plugins.folder.Folder";
+	private static final String JOB_CLASS = "hudson.model.FreeStyleProject";
+	private static final String CRUMB_FIELD = "Jenkins-Crumb";
+	private static final Pattern RANGE = Pattern.compile("\\{(\\d*),(\\d*)\\}");
+	private static final Pattern BYTE_RANGE = Pattern.compile("bytes=(\\d+)-");
+	private static final String OCTET_STREAM = "application/octet-stream";
+	private static final Pattern PARAMETER_DEFINITIONS = Pattern
+			.compile("<parameterDefinitions>(.*?)</parameterDefinitions>", Pattern.DOTALL);
+	private static final Pattern NAME = Pattern.compile("<name>([^<]+)</name>");
+
+	static {
+		// Without it the server waits for delayed acks, adding up to 40ms per answer.
+		if (System.getProperty("sun.net.httpserver.nodelay") == null)
+			System.setProperty("sun.net.httpserver.nodelay", "true");
+	}
+
+	private static class Item {
+		final String name;
+		final String path;
+		final boolean folder;
+		final List<String> parameters;
+		final String configXml;
+		final NavigableMap<String, Item> children = new ConcurrentSkipListMap<String, Item>();
+		final NavigableMap<Integer, Build> builds = new ConcurrentSkipListMap<Integer, Build>(
+				Collections.reverseOrder());
+		final AtomicInteger nextBuildNumber = new AtomicInteger(1);
+		final NavigableMap<String, Artifact> artifacts = new ConcurrentSkipListMap<String, Artifact>();
+
+		Item(String name, String path, boolean folder, List<String> parameters, String configXml) {
+			this.name = name;
+			this.path = path;
+			this.folder = folder;
+			this.parameters = parameters;
+			this.configXml = configXml;
+		}
+	}
+
+	private static class Build {
+		final Item job;
+		final int number;
+		final long timestamp;
+		final long queueWaitMillis;
+		final long plannedDuration;
+		volatile boolean building = true;
+		volatile boolean aborted;
+		volatile String result;
+		volatile long duration;
+
+		Build(Item job, int number, long timestamp, long queueWaitMillis, long plannedDuration) {
+			this.job = job;
+			this.number = number;
+			this.timestamp = timestamp;
+			this.queueWaitMillis = queueWaitMillis;
+			this.plannedDuration = plannedDuration;
+		}
+	}
+
+	private static class Artifact {
+		final byte[] content;
+		final String etag;
+
+		Artifact(byte[] content, String etag) {
+			this.content = content;
+			this.etag = etag;
+		}
+	}
+
+	private static class QueueItem {
+		final long id;
+		final Item job;
+		final long inQueueSince;
+		volatile boolean cancelled;
+		volatile Build executable;
+		volatile long leftAt;
+
+		QueueItem(long id, Item job, long inQueueSince) {
+			this.id = id;
+			this.job = job;
+			this.inQueueSince = inQueueSince;
+		}
+	}
+
+	private final SimulatorConfig config;
+	private final HttpServer server;
+	private final ExecutorService executor;
+	private final ScheduledExecutorService ticker;
+	private final ObjectMapper json = new ObjectMapper();
+
+	private final Item root = new Item("", "", true, Collections.<String>emptyList(), null);
+	private final AtomicLong queueIds = new AtomicLong();
+	private final Map<Long, QueueItem> queueItems = new ConcurrentHashMap<Long, QueueItem>();
+	private final ConcurrentLinkedQueue<QueueItem> waiting = new ConcurrentLinkedQueue<QueueItem>();
+	private final ConcurrentLinkedQueue<Build> running = new ConcurrentLinkedQueue<Build>();
+	private final AtomicInteger busyExecutors = new AtomicInteger();
+	private final AtomicLong requests = new AtomicLong();
+	private final AtomicLong injectedErrors = new AtomicLong();
+	private final AtomicLong finishedBuilds = new AtomicLong();
+	private final AtomicLong artifactVersions = new AtomicLong();
+	private final AtomicLong breakArtifactAfter = new AtomicLong(-1);
+
+	private volatile String crumb = UUID.randomUUID().toString();
+	private volatile long crumbIssuedAt = System.currentTimeMillis();
+
+	public JenkinsSimulator(SimulatorConfig config) throws IOException {
+		this.config = config;
+		this.executor = Executors.newFixedThreadPool(config.getThreads());
+		this.server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 4096);
+		this.server.setExecutor(executor);
+		this.server.createContext("/", this::handle);
+		this.ticker = Executors.newSingleThreadScheduledExecutor();
+		this.ticker.scheduleWithFixedDelay(this::tick, config.getTickMillis(), config.getTickMillis(),
+				TimeUnit.MILLISECONDS);
+		this.server.start();
+	}
+
+	public String getUrl() {
+		return "http://127.0.0.1:" + server.getAddress().getPort() + "/";
+	}
+
+	/**
+	 * Creates a job directly, without a request, with missing folders.
+	 *
+	 * @param jobPath
+	 *            Path of the job, for example "/Project/JobA"
+	 * @param parameters
+	 *            names of the parameters of the job
+	 */
+	public void createJob(String jobPath, String... parameters) {
+		Item parent = root;
+		String[] names = jobPath.replaceAll("^/+", "").split("/");
+		for (int i = 0; i < names.length - 1; i++) {
+			Item folder = parent.children.get(names[i]);
+			if (folder == null)
+				folder = add(parent, names[i], true, Collections.<String>emptyList(), null);
+			parent = folder;
+		}
+		add(parent, names[names.length - 1], false, Arrays.asList(parameters), null);
+	}
+
+	/**
+	 * Puts an artifact on an existing job, served by all of its builds. Putting it
+	 * again replaces the content and gives it a new ETag.
+	 *
+	 * @param relativePath
+	 *            path of the artifact below the artifact directory, for example
+	 *            "target/app.jar"
+	 */
+	public void putArtifact(String jobPath, String relativePath, byte[] content) {
+		Item item = root;
+		for (String name : jobPath.split("/")) {
+			if (!name.isEmpty())
+				item = item.children.get(name);
+		}
+		item.artifacts.put(relativePath, new Artifact(content, "\"" + artifactVersions.incrementAndGet() + "\""));
+	}
+
+	/**
+	 * Makes the next artifact response close the connection after the given
+	 * number of body bytes, like a transfer that broke off.
+	 */
+	public void breakNextArtifactDownload(long afterBytes) {
+		breakArtifactAfter.set(afterBytes);
+	}
+
+	/**
+	 * Requests received since the simulator was started, including the ones
+	 * answered with an injected error.
+	 */
+	public long getRequests() {
+		return requests.get();
+	}
+
+	public long getInjectedErrors() {
+		return injectedErrors.get();
+	}
+
+	public int getQueueLength() {
+		return waiting.size();
+	}
+
+	public int getBusyExecutors() {
+		return busyExecutors.get();
+	}
+
+	public long getFinishedBuilds() {
+		return finishedBuilds.get();
+	}
+
+	public void close() {
+		ticker.shutdownNow();
+		server.stop(0);
+		executor.shutdownNow();
+	}
+
+	// Queue dynamics -------------------------------------
+
+	private int getTotalExecutors() {
+		return config.getNodes() * config.getExecutorsPerNode();
+	}
+
+	/**
+	 * Finishes the builds that ran for their duration, then starts waiting items
+	 * in queue order while executors are free.
+	 */
+	private void tick() {
+		try {
+			long now = System.currentTimeMillis();
+			for (Iterator<Build> it = running.iterator(); it.hasNext();) {
+				Build build = it.next();
+				if (build.aborted || now - build.timestamp >= build.plannedDuration) {
+					build.duration = now - build.timestamp;
+					build.result = build.aborted ? "ABORTED"
+							: ThreadLocalRandom.current().nextDouble() < config.getFailureRate() ? "FAILURE"
+									: "SUCCESS";
+					build.building = false;
+					it.remove();
+					busyExecutors.decrementAndGet();
+					finishedBuilds.incrementAndGet();
+				}
+			}
+
+			for (Iterator<QueueItem> it = waiting.iterator(); it.hasNext();) {
+				QueueItem item = it.next();
+				if (item.cancelled) {
+					it.remove();
+					continue;
+				}
+				if (now - item.inQueueSince < config.getQuietPeriodMillis())
+					continue;
+				if (busyExecutors.get() >= getTotalExecutors())
+					break;
+				busyExecutors.incrementAndGet();
+				double jitter = config.getBuildDurationJitter() * (2 * ThreadLocalRandom.current().nextDouble() - 1);
+				Build build = new Build(item.job, item.job.nextBuildNumber.getAndIncrement(), now,
+						now - item.inQueueSince, Math.max(0, (long) (config.getBuildDurationMillis() * (1 + jitter))));
+				item.job.builds.put(build.number, build);
+				running.add(build);
+				item.executable = build;
+				item.leftAt = now;
+				it.remove();
+			}
+
+			for (Iterator<QueueItem> it = queueItems.values().iterator(); it.hasNext();) {
+				QueueItem item = it.next();
+				if (item.leftAt > 0 && now - item.leftAt > config.getQueueItemRetentionMillis())
+					it.remove();
+			}
+		} catch (RuntimeException e) {
+			// Never let an exception cancel the periodic task.
+		}
+	}
+
+	// Requests -------------------------------------------
+
+	private static class Response {
+		final int status;
+		final String contentType;
+		final byte[] body;
+		final Map<String, String> headers = new HashMap<String, String>();
+		// Body bytes sent before the connection is closed, all if negative.
+		long breakAfter = -1;
+
+		Response(int status, String contentType, String body) {
+			this(status, contentType, body == null ? null : body.getBytes(StandardCharsets.UTF_8));
+		}
+
+		Response(int status, String contentType, byte[] body) {
+			this.status = status;
+			this.contentType = contentType;
+			this.body = body;
+		}
+	}
+
+	private void handle(HttpExchange exchange) throws IOException {
+		byte[] requestBody;
+		try (InputStream in = exchange.getRequestBody()) {
+			ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+			byte[] chunk = new byte[8192];
+			for (int read; (read = in.read(chunk)) >= 0;)
+				buffer.write(chunk, 0, read);
+			requestBody = buffer.toByteArray();
+		}
+		requests.incrementAndGet();
+		long delay = config.getLatencyMillis() + (config.getLatencyJitterMillis() > 0
+				? ThreadLocalRandom.current().nextLong(config.getLatencyJitterMillis() + 1)
+				: 0);
+		if (delay > 0) {
+			try {
+				TimeUnit.MILLISECONDS.sleep(delay);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		}
+
+		Response response;
+		if (config.getErrorRate() > 0 && ThreadLocalRandom.current().nextDouble() < config.getErrorRate()) {
+			injectedErrors.incrementAndGet();
+			response = new Response(config.getErrorStatus(), "text/plain", "Injected error");
+		} else {
+			try {
+				response = route(exchange.getRequestMethod(), exchange.getRequestURI().getRawPath(),
+						parseQuery(exchange.getRequestURI().getRawQuery()), exchange.getRequestHeaders(),
+						requestBody);
+			} catch (RuntimeException e) {
+				response = new Response(500, "text/plain", String.valueOf(e));
+			}
+		}
+
+		exchange.getResponseHeaders().add("X-Jenkins", VERSION);
+		for (Map.Entry<String, String> header : response.headers.entrySet())
+			exchange.getResponseHeaders().add(header.getKey(), header.getValue());
+		if (response.body == null) {
+			exchange.sendResponseHeaders(response.status, -1);
+			exchange.close();
+			return;
+		}
+		exchange.getResponseHeaders().add("Content-Type",
+				OCTET_STREAM.equals(response.contentType) ? OCTET_STREAM : response.contentType + ";charset=utf-8");
+		exchange.sendResponseHeaders(response.status, response.body.length);
+		if (response.breakAfter >= 0 && response.breakAfter < response.body.length) {
+			// Closing a fixed-length body early drops the connection.
+			OutputStream out = exchange.getResponseBody();
+			out.write(response.body, 0, (int) response.breakAfter);
+			out.flush();
+			try {
+				exchange.close();
+			} catch (RuntimeException e) {
+				// Reported by the server as too few bytes written, which is the point.
+			}
+			return;
+		}
+		try (OutputStream out = exchange.getResponseBody()) {
+			out.write(response.body);
+		}
+	}
+
+	private Response route(String method, String rawPath, Map<String, String> query, Headers headers, byte[] body)
+			throws UnsupportedEncodingException {
+		boolean post = "POST".equals(method);
+		String contentType = headers.getFirst("Content-Type");
+		if (post && config.isCrumbRequired() && !currentCrumb().equals(headers.getFirst(CRUMB_FIELD)))
+			return new Response(403, "text/plain", "No valid crumb was included in the request");
+
+		// The client appends api/json to the paths of most requests, also to posts.
+		String path = rawPath;
+		if (path.endsWith("/api/json"))
+			path = path.substring(0, path.length() - "api/json".length());
+		List<String> segments = new ArrayList<String>();
+		for (String segment : path.split("/")) {
+			if (!segment.isEmpty())
+				segments.add(URLDecoder.decode(segment, "UTF-8"));
+		}
+
+		// Walk down job/<name> pairs to the addressed item.
+		Item item = root;
+		int next = 0;
+		while (next + 1 < segments.size() && "job".equals(segments.get(next))) {
+			Item child = item.children.get(segments.get(next + 1));
+			if (child == null)
+				return notFound();
+			item = child;
+			next += 2;
+		}
+		List<String> rest = segments.subList(next, segments.size());
+		String tree = query.get("tree");
+
+		if (item == root && !rest.isEmpty()) {
+			switch (rest.get(0)) {
+			case "crumbIssuer":
+				return crumbIssuer();
+			case "computer":
+				return ok(computers());
+			case "label":
+				return rest.size() > 1 ? ok(label(rest.get(1))) : notFound();
+			case "queue":
+				return queue(method, rest, query);
+			case "scriptText":
+				return post ? new Response(200, "text/plain", "Result: simulated\n") : methodNotAllowed();
+			default:
+				break;
+			}
+		}
+
+		if (rest.isEmpty())
+			return ok(itemJson(item, tree, jobDepth(tree)));
+		String action = rest.get(0);
+		if ("createItem".equals(action) && item.folder && post)
+			return createItem(item, query, contentType, body);
+		if ("config.xml".equals(action) && !item.folder && item.configXml != null)
+			return new Response(200, "application/xml", item.configXml);
+		if ("doDelete".equals(action) && post && item != root) {
+			delete(item);
+			return new Response(200, "text/plain", "");
+		}
+		if (("build".equals(action) || "buildWithParameters".equals(action)) && !item.folder && post) {
+			Response response = new Response(201, "text/plain", (String) null);
+			response.headers.put("Location", getUrl() + "queue/item/" + enqueue(item).id + "/");
+			return response;
+		}
+		if (action.matches("\\d+") && !item.folder) {
+			Build build = item.builds.get(Integer.parseInt(action));
+			if (build == null)
+				return notFound();
+			if (rest.size() == 1)
+				return ok(buildJson(build));
+			if ("stop".equals(rest.get(1))) {
+				build.aborted = true;
+				return new Response(200, "text/plain", "");
+			}
+			if (rest.size() > 2 && "logText".equals(rest.get(1)))
+				return progressiveText(build, query);
+			if (rest.size() > 2 && "artifact".equals(rest.get(1))) {
+				Artifact artifact = item.artifacts.get(String.join("/", rest.subList(2, rest.size())));
+				return artifact == null ? notFound()
+						: artifact(artifact, headers.getFirst("Range"), headers.getFirst("If-Range"));
+			}
+		}
+		return notFound();
+	}
+
+	private String currentCrumb() {
+		long rotation = config.getCrumbRotationMillis();
+		if (rotation > 0 && System.currentTimeMillis() - crumbIssuedAt >= rotation) {
+			synchronized (this) {
+				if (System.currentTimeMillis() - crumbIssuedAt >= rotation) {
+					crumb = UUID.randomUUID().toString();
+					crumbIssuedAt = System.currentTimeMillis();
+				}
+			}
+		}
+		return crumb;
+	}
+
+	private Response crumbIssuer() {
+		if (!config.isCrumbRequired())
+			return notFound();
+		ObjectNode node = json.createObjectNode();
+		node.put("_class", "hudson.security.csrf.DefaultCrumbIssuer");
+		node.put("crumb", currentCrumb());
+		node.put("crumbRequestField", CRUMB_FIELD);
+		return ok(node);
+	}
+
+	private Response queue(String method, List<String> rest, Map<String, String> query) {
+		if (rest.size() == 1) {
+			ObjectNode node = json.createObjectNode();
+			ArrayNode items = node.putArray("items");
+			for (QueueItem item : waiting) {
+				if (!item.cancelled)
+					items.add(queueItemJson(item));
+			}
+			return ok(node);
+		}
+		if ("cancelItem".equals(rest.get(1))) {
+			if (!"POST".equals(method) && !config.isGetCancelAllowed())
+				return methodNotAllowed();
+			QueueItem item = query.containsKey("id") ? queueItems.get(Long.parseLong(query.get("id"))) : null;
+			if (item == null)
+				return notFound();
+			if (item.executable == null && !item.cancelled) {
+				item.cancelled = true;
+				item.leftAt = System.currentTimeMillis();
+			}
+			return new Response(204, "text/plain", (String) null);
+		}
+		if ("item".equals(rest.get(1)) && rest.size() > 2 && rest.get(2).matches("\\d+")) {
+			QueueItem item = queueItems.get(Long.parseLong(rest.get(2)));
+			return item == null ? notFound() : ok(queueItemJson(item));
+		}
+		return notFound();
+	}
+
+	private Response createItem(Item parent, Map<String, String> query, String contentType, byte[] body)
+			throws UnsupportedEncodingException {
+		String text = new String(body, StandardCharsets.UTF_8);
+		// Forms are sent either as body or as query string.
+		Map<String, String> form = new HashMap<String, String>(query);
+		if (contentType != null && contentType.startsWith("application/x-www-form-urlencoded"))
+			form.putAll(parseQuery(text));
+		String name = form.get("name");
+		if (name == null || name.isEmpty())
+			return new Response(400, "text/plain", "Query parameter 'name' is required");
+		if (parent.children.containsKey(name))
+			return new Response(400, "text/plain", String.format("A job already exists with the name '%s'", name));
+
+		boolean folder = FOLDER_CLASS.equals(form.get("mode")) || text.trim().startsWith("<" + FOLDER_CLASS)
+				|| text.contains("<?xml") && text.contains("<" + FOLDER_CLASS);
+		List<String> parameters = new ArrayList<String>();
+		Matcher definitions = PARAMETER_DEFINITIONS.matcher(text);
+		while (definitions.find()) {
+			Matcher names = NAME.matcher(definitions.group(1));
+			while (names.find())
+				parameters.add(names.group(1).trim());
+		}
+		add(parent, name, folder, parameters, folder ? null : text);
+		return new Response(200, "text/plain", "");
+	}
+
+	private Item add(Item parent, String name, boolean folder, List<String> parameters, String configXml) {
+		Item item = new Item(name, parent.path + "/" + name, folder, parameters, configXml);
+		Item existing = parent.children.putIfAbsent(name, item);
+		return existing != null ? existing : item;
+	}
+
+	private void delete(Item item) {
+		String parentPath = item.path.substring(0, item.path.lastIndexOf('/'));
+		Item parent = root;
+		for (String name : parentPath.split("/")) {
+			if (!name.isEmpty())
+				parent = parent.children.get(name);
+		}
+		if (parent != null)
+			parent.children.remove(item.name, item);
+	}
+
+	private QueueItem enqueue(Item job) {
+		QueueItem item = new QueueItem(queueIds.incrementAndGet(), job, System.currentTimeMillis());
+		queueItems.put(item.id, item);
+		waiting.add(item);
+		return item;
+	}
+
+	private Response progressiveText(Build build, Map<String, String> query) {
+		String log = String.format("Started by simulator%nBuilding %s #%s%n", build.job.path, build.number)
+				+ (build.building ? "" : String.format("Finished: %s%n", build.result));
+		byte[] bytes = log.getBytes(StandardCharsets.UTF_8);
+		int start = (int) Math.min(bytes.length, query.containsKey("start") ? Long.parseLong(query.get("start")) : 0);
+		Response response = new Response(200, "text/plain",
+				new String(bytes, start, bytes.length - start, StandardCharsets.UTF_8));
+		response.headers.put("X-Text-Size", String.valueOf(bytes.length));
+		if (build.building)
+			response.headers.put("X-More-Data", "true");
+		return response;
+	}
+
+	/**
+	 * Serves the artifact from the first byte of the range if there is no
+	 * If-Range or it still matches the ETag, otherwise the whole artifact.
+	 */
+	private Response artifact(Artifact artifact, String range, String ifRange) {
+		byte[] content = artifact.content;
+		Matcher matcher = range == null ? null : BYTE_RANGE.matcher(range);
+		Response response;
+		if (matcher != null && matcher.matches() && (ifRange == null || ifRange.equals(artifact.etag))) {
+			long from = Long.parseLong(matcher.group(1));
+			if (from >= content.length) {
+				response = new Response(416, "text/plain", (String) null);
+				response.headers.put("Content-Range", "bytes */" + content.length);
+				return response;
+			}
+			response = new Response(206, OCTET_STREAM, Arrays.copyOfRange(content, (int) from, content.length));
+			response.headers.put("Content-Range",
+					String.format("bytes %s-%s/%s", from, content.length - 1, content.length));
+		} else {
+			response = new Response(200, OCTET_STREAM, content);
+		}
+		response.headers.put("ETag", artifact.etag);
+		response.headers.put("Accept-Ranges", "bytes");
+		response.breakAfter = breakArtifactAfter.getAndSet(-1);
+		return response;
+	}
+
+	// Json -----------------------------------------------
+
+	/**
+	 * Levels of nested jobs the tree asks for, one if it asks for none.
+	 */
+	private static int jobDepth(String tree) {
+		if (tree == null)
+			return 1;
+		int depth = 0;
+		for (int index = tree.indexOf("jobs["); index >= 0; index = tree.indexOf("jobs[", index + 1))
+			depth++;
+		return Math.max(1, depth);
+	}
+
+	private ObjectNode itemJson(Item item, String tree, int depth) {
+		ObjectNode node = json.createObjectNode();
+		if (item == root) {
+			node.put("_class", "hudson.model.Hudson");
+			node.put("mode", "NORMAL");
+			node.put("numExecutors", getTotalExecutors());
+			node.put("url", getUrl());
+		} else {
+			node.put("_class", item.folder ? FOLDER_CLASS : JOB_CLASS);
+			node.put("name", item.name);
+			node.put("url", url(item));
+		}
+		if (item.folder) {
+			if (depth > 0) {
+				ArrayNode jobs = node.putArray("jobs");
+				for (Item child : item.children.values())
+					jobs.add(itemJson(child, null, depth - 1));
+			}
+			return node;
+		}
+
+		node.put("buildable", true);
+		Build last = item.builds.isEmpty() ? null : item.builds.firstEntry().getValue();
+		node.put("color", last == null ? "notbuilt"
+				: (last.building ? "blue_anime" : "SUCCESS".equals(last.result) ? "blue" : "red"));
+		node.put("nextBuildNumber", item.nextBuildNumber.get());
+		ArrayNode definitions = node.putArray("property").addObject().putArray("parameterDefinitions");
+		for (String parameter : item.parameters)
+			definitions.addObject().put("name", parameter);
+		node.putArray("actions");
+		if (last == null)
+			node.putNull("lastBuild");
+		else
+			node.set("lastBuild", buildJson(last));
+
+		int low = 0;
+		int high = Integer.MAX_VALUE;
+		Matcher range = tree == null ? null : RANGE.matcher(tree);
+		if (range != null && range.find()) {
+			low = range.group(1).isEmpty() ? 0 : Integer.parseInt(range.group(1));
+			high = range.group(2).isEmpty() ? Integer.MAX_VALUE : Integer.parseInt(range.group(2));
+		}
+		ArrayNode allBuilds = node.putArray("allBuilds");
+		int index = 0;
+		for (Build build : item.builds.values()) {
+			if (index >= high)
+				break;
+			if (index++ >= low)
+				allBuilds.add(buildJson(build));
+		}
+		return node;
+	}
+
+	private ObjectNode buildJson(Build build) {
+		ObjectNode node = json.createObjectNode();
+		node.put("_class", "hudson.model.FreeStyleBuild");
+		node.put("number", build.number);
+		node.put("url", url(build.job) + build.number + "/");
+		node.put("building", build.building);
+		if (build.result == null)
+			node.putNull("result");
+		else
+			node.put("result", build.result);
+		node.put("timestamp", build.timestamp);
+		node.put("duration", build.building ? 0 : build.duration);
+		node.putArray("actions").addObject().put("queuingDurationMillis", build.queueWaitMillis);
+		ArrayNode artifacts = node.putArray("artifacts");
+		for (String relativePath : build.job.artifacts.keySet()) {
+			artifacts.addObject().put("fileName", relativePath.substring(relativePath.lastIndexOf('/') + 1))
+					.put("relativePath", relativePath).putNull("displayPath");
+		}
+		return node;
+	}
+
+	private ObjectNode queueItemJson(QueueItem item) {
+		ObjectNode node = json.createObjectNode();
+		Build executable = item.executable;
+		node.put("_class", item.cancelled ? "hudson.model.Queue$LeftItem"
+				: executable != null ? "hudson.model.Queue$LeftItem" : "hudson.model.Queue$BuildableItem");
+		node.put("id", item.id);
+		node.put("url", "queue/item/" + item.id + "/");
+		node.put("cancelled", item.cancelled);
+		node.put("blocked", false);
+		node.put("buildable", executable == null && !item.cancelled);
+		node.put("inQueueSince", item.inQueueSince);
+		if (executable == null && !item.cancelled)
+			node.put("why", "Waiting for next available executor");
+		else
+			node.putNull("why");
+		node.set("task", json.createObjectNode().put("name", item.job.name).put("url", url(item.job)));
+		if (executable == null) {
+			node.putNull("executable");
+		} else {
+			ObjectNode build = node.putObject("executable");
+			build.put("number", executable.number);
+			build.put("url", url(item.job) + executable.number + "/");
+		}
+		return node;
+	}
+
+	private ObjectNode computers() {
+		ObjectNode node = json.createObjectNode();
+		ArrayNode computers = node.putArray("computer");
+		int busy = busyExecutors.get();
+		for (int n = 0; n < config.getNodes(); n++) {
+			ObjectNode computer = computers.addObject();
+			computer.put("displayName", nodeName(n));
+			computer.put("offline", false);
+			computer.put("numExecutors", config.getExecutorsPerNode());
+			ArrayNode labels = computer.putArray("assignedLabels");
+			labels.addObject().put("name", nodeName(n));
+			for (String label : config.getLabels())
+				labels.addObject().put("name", label);
+			ArrayNode executors = computer.putArray("executors");
+			for (int e = 0; e < config.getExecutorsPerNode(); e++)
+				executors.addObject().put("idle", busy-- <= 0);
+		}
+		return node;
+	}
+
+	private ObjectNode label(String name) {
+		int total = 0;
+		if (Arrays.asList(config.getLabels()).contains(name))
+			total = getTotalExecutors();
+		else {
+			for (int n = 0; n < config.getNodes(); n++) {
+				if (nodeName(n).equals(name))
+					total = config.getExecutorsPerNode();
+			}
+		}
+		// Builds are spread over the nodes, so a node label gets its share of them.
+		int busy = total == 0 ? 0 : (int) ((long) busyExecutors.get() * total / getTotalExecutors());
+		ObjectNode node = json.createObjectNode();
+		node.put("name", name);
+		node.put("totalExecutors", total);
+		node.put("busyExecutors", busy);
+		node.put("idleExecutors", total - busy);
+		node.put("offline", total == 0);
+		return node;
+	}
+
+	private static String nodeName(int n) {
+		return n == 0 ? "built-in" : "agent-" + n;
+	}
+
+	private String url(Item item) {
+		StringBuilder url = new StringBuilder(getUrl());
+		for (String name : item.path.split("/")) {
+			if (!name.isEmpty())
+				url.append("job/").append(name).append('/');
+		}
+		return url.toString();
+	}
+
+	private Response ok(ObjectNode node) {
+		return new Response(200, "application/json", node.toString());
+	}
+
+	private static Response notFound() {
+		return new Response(404, "text/html", "Not Found");
+	}
+
+	private static Response methodNotAllowed() {
+		return new Response(405, "text/html", "Method Not Allowed");
+	}
+
+	private static Map<String, String> parseQuery(String query) throws UnsupportedEncodingException {
+		Map<String, String> parameters = new HashMap<String, String>();
+		if (query == null || query.isEmpty())
+			return parameters;
+		for (String pair : query.split("&")) {
+			int equals = pair.indexOf('=');
+			if (equals < 0)
+				parameters.put(URLDecoder.decode(pair, "UTF-8"), "");
+			else
+				parameters.put(URLDecoder.decode(pair.substring(0, equals), "UTF-8"),
+						URLDecoder.decode(pair.substring(equals + 1), "UTF-8"));
+		}
+		return parameters;
+	}
+}
@@ -0,0 +1,149 @@
+package jenkinsclient.benchmarks;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * In-process HTTP server answering the Jenkins REST calls of the client with
+ * canned responses. Every answer is delayed by a fixed latency and padded to a
+ * minimum size, to mimic a remote controller and unprojected payloads. It keeps
+ * no state: every job exists with one parameter, every queue item has started
+ * as build 1 and every build succeeded.
+ */
+public class JenkinsStub implements Closeable {
+	private static final String VERSION = "2.401.3";
+
+	static {
+		// Without it the server waits for delayed acks, adding up to 40ms per answer.
+		if (System.getProperty("sun.net.httpserver.nodelay") == null)
+			System.setProperty("sun.net.httpserver.nodelay", "true");
+	}
+
+	private final HttpServer server;
+	private final ExecutorService executor;
+	private final long latencyMillis;
+	private final String padding;
+	private final AtomicLong queueIds = new AtomicLong();
+	private final AtomicLong requests = new AtomicLong();
+
+	/**
+	 * @param latencyMillis
+	 *            delay of every answer
+	 * @param payloadBytes
+	 *            minimum size of every JSON answer, reached with a padding field
+	 * @param threads
+	 *            requests handled at the same time
+	 */
+	public JenkinsStub(long latencyMillis, int payloadBytes, int threads) throws IOException {
+		this.latencyMillis = latencyMillis;
+		char[] filler = new char[Math.max(0, payloadBytes)];
+		Arrays.fill(filler, 'x');
+		this.padding = new String(filler);
+		this.executor = Executors.newFixedThreadPool(threads);
+		this.server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 1024);
+		this.server.setExecutor(executor);
+		this.server.createContext("/", this::handle);
+		this.server.start();
+	}
+
+	public String getUrl() {
+		return "http://127.0.0.1:" + server.getAddress().getPort() + "/";
+	}
+
+	/**
+	 * Requests answered since the stub was started.
+	 */
+	public long getRequests() {
+		return requests.get();
+	}
+
+	private void handle(HttpExchange exchange) throws IOException {
+		try (InputStream body = exchange.getRequestBody()) {
+			while (body.read() >= 0) {
+			}
+		}
+		requests.incrementAndGet();
+		if (latencyMillis > 0) {
+			try {
+				TimeUnit.MILLISECONDS.sleep(latencyMillis);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		}
+
+		// The client appends api/json to every path, also to the build triggers.
+		String path = exchange.getRequestURI().getPath();
+		if (path.endsWith("/api/json"))
+			path = path.substring(0, path.length() - "api/json".length());
+		if (!path.endsWith("/"))
+			path += "/";
+
+		exchange.getResponseHeaders().add("X-Jenkins", VERSION);
+		if (path.startsWith("/crumbIssuer/")) {
+			respond(exchange, 404, null);
+		} else if ("POST".equals(exchange.getRequestMethod())
+				&& (path.endsWith("/build/") || path.endsWith("/buildWithParameters/"))) {
+			exchange.getResponseHeaders().add("Location", getUrl() + "queue/item/" + queueIds.incrementAndGet() + "/");
+			respond(exchange, 201, null);
+		} else if (path.startsWith("/queue/item/")) {
+			respond(exchange, 200, String.format(
+					"{\"id\":%s,\"cancelled\":false,\"blocked\":false,\"buildable\":false,\"why\":null,"
+							+ "\"inQueueSince\":%s,\"executable\":{\"number\":1,\"url\":\"%sjob/A/1/\"}",
+					path.split("/")[3], System.currentTimeMillis(), getUrl()));
+		} else if (path.startsWith("/queue/")) {
+			respond(exchange, 200, "{\"items\":[]");
+		} else if (path.startsWith("/computer/")) {
+			respond(exchange, 200, "{\"computer\":[{\"displayName\":\"master\",\"offline\":false,\"numExecutors\":4,"
+					+ "\"assignedLabels\":[{\"name\":\"master\"},{\"name\":\"linux\"}],"
+					+ "\"executors\":[{\"idle\":true},{\"idle\":true},{\"idle\":false},{\"idle\":true}]}]");
+		} else if (path.startsWith("/label/")) {
+			respond(exchange, 200, String.format("{\"name\":\"%s\",\"totalExecutors\":4,\"idleExecutors\":3,"
+					+ "\"busyExecutors\":1,\"offline\":false", path.split("/")[2]));
+		} else if (path.matches("/job/.*/\\d+/")) {
+			String[] segments = path.split("/");
+			respond(exchange, 200, String.format("{\"number\":%s,\"result\":\"SUCCESS\",\"building\":false,"
+					+ "\"duration\":1000,\"timestamp\":%s", segments[segments.length - 1], System.currentTimeMillis()));
+		} else if (path.startsWith("/job/")) {
+			respond(exchange, 200, String.format("{\"name\":\"A\",\"url\":\"%s\",\"buildable\":true,"
+					+ "\"nextBuildNumber\":2,\"property\":[{\"parameterDefinitions\":[{\"name\":\"BRANCH\"}]}],"
+					+ "\"actions\":[]", getUrl() + path.substring(1)));
+		} else {
+			respond(exchange, 200, "{\"mode\":\"NORMAL\"");
+		}
+	}
+
+	/**
+	 * @param json
+	 *            an unterminated JSON object, closed after the padding
+	 */
+	private void respond(HttpExchange exchange, int status, String json) throws IOException {
+		if (json == null) {
+			exchange.sendResponseHeaders(status, -1);
+			exchange.close();
+			return;
+		}
+		byte[] body = (json + ",\"description\":\"" + padding + "\"}").getBytes(StandardCharsets.UTF_8);
+		exchange.getResponseHeaders().add("Content-Type", "application/json;charset=utf-8");
+		exchange.sendResponseHeaders(status, body.length);
+		try (OutputStream out = exchange.getResponseBody()) {
+			out.write(body);
+		}
+	}
+
+	public void close() {
+		server.stop(0);
+		executor.shutdownNow();
+	}
+}
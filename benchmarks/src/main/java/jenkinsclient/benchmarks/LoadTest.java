@@ -0,0 +1,153 @@
+package jenkinsclient.benchmarks;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+import com.offbytwo.jenkins.model.BuildResult;
+
+import jenkinsclient.JenkinsClient;
+import jenkinsclient.JenkinsClientConfig;
+import jenkinsclient.model.ClientMetricsSnapshot;
+import jenkinsclient.model.OperationStats;
+import jenkinsclient.model.QueueItemStatus;
+
+/**
+ * Runs many concurrent trigger-and-track workflows against a
+ * {@link JenkinsSimulator}: each workflow triggers a build, waits for the queue
+ * item to become executable and polls the build until it finished. Prints the
+ * throughput, the end-to-end latency distribution and the metrics of the
+ * client.
+ *
+ * Usage: java -cp target/benchmarks.jar jenkinsclient.benchmarks.LoadTest
+ * [workflows] [executors] [buildDurationMillis] [latencyMillis] [errorRate]
+ */
+public class LoadTest {
+	private static final String JOB_PATH = "/LoadTest/Job";
+	private static final Map<String, String> PARAMS = Collections.singletonMap("BRANCH", "master");
+	private static final String JOB_XML = "<project><properties><hudson.model.ParametersDefinitionProperty>"
+			+ "<parameterDefinitions><hudson.model.StringParameterDefinition><name>BRANCH</name>"
+			+ "</hudson.model.StringParameterDefinition></parameterDefinitions>"
+			+ "</hudson.model.ParametersDefinitionProperty></properties></project>";
+
+	public static void main(String[] args) throws Exception {
+		int workflows = args.length > 0 ? Integer.parseInt(args[0]) : 2000;
+		int executors = args.length > 1 ? Integer.parseInt(args[1]) : 200;
+		long buildDurationMillis = args.length > 2 ? Long.parseLong(args[2]) : 1000;
+		long latencyMillis = args.length > 3 ? Long.parseLong(args[3]) : 2;
+		double errorRate = args.length > 4 ? Double.parseDouble(args[4]) : 0;
+		long pollMillis = Math.max(50, buildDurationMillis / 4);
+
+		SimulatorConfig simulatorConfig = new SimulatorConfig();
+		simulatorConfig.setNodes(Math.max(1, executors / 8));
+		simulatorConfig.setExecutorsPerNode(Math.min(8, executors));
+		simulatorConfig.setBuildDurationMillis(buildDurationMillis);
+		simulatorConfig.setLatencyMillis(latencyMillis);
+		simulatorConfig.setLatencyJitterMillis(latencyMillis);
+		simulatorConfig.setErrorRate(errorRate);
+		simulatorConfig.setFailureRate(0.05);
+
+		JenkinsClientConfig clientConfig = new JenkinsClientConfig();
+		clientConfig.setMaxOperations(64);
+		clientConfig.setMaxQueuedOperations(workflows * 2);
+		clientConfig.setMaxConnectionsPerRoute(64);
+		clientConfig.setMaxConnectionsTotal(64);
+		clientConfig.setQueuePollIntervalMillis(pollMillis);
+		clientConfig.setJmxEnabled(false);
+
+		ScheduledExecutorService scheduler = Executors.newScheduledThreadPool(4);
+		try (JenkinsSimulator simulator = new JenkinsSimulator(simulatorConfig)) {
+			String jenkinsId = JenkinsClient.createClient(simulator.getUrl(), "user", "token", clientConfig);
+			JenkinsClient client = JenkinsClient.getClient(jenkinsId);
+			try {
+				client.jobOps().createFolder("/LoadTest");
+				client.jobOps().createJob("/LoadTest", "Job", JOB_XML);
+
+				AtomicLongArray latencies = new AtomicLongArray(workflows);
+				Map<String, LongAdder> outcomes = new ConcurrentHashMap<String, LongAdder>();
+				CompletableFuture<?>[] runs = new CompletableFuture<?>[workflows];
+				long start = System.nanoTime();
+				for (int i = 0; i < workflows; i++) {
+					final int workflow = i;
+					final long began = System.nanoTime();
+					runs[i] = client.jobOps().async().triggerJob(JOB_PATH, PARAMS)
+							.thenCompose(url -> client.queueWatcher().watch(url))
+							.thenCompose(status -> status.getState() == QueueItemStatus.State.EXECUTABLE
+									? track(client, scheduler, status.getBuildNumber(), pollMillis)
+									: CompletableFuture.completedFuture(status.getState().name()))
+							.handle((outcome, e) -> {
+								latencies.set(workflow, System.nanoTime() - began);
+								String key = e != null ? rootCause(e).getClass().getSimpleName() : outcome.toString();
+								outcomes.computeIfAbsent(key, k -> new LongAdder()).increment();
+								return null;
+							});
+				}
+				CompletableFuture.allOf(runs).join();
+				long elapsed = System.nanoTime() - start;
+
+				long[] sorted = new long[workflows];
+				for (int i = 0; i < workflows; i++)
+					sorted[i] = latencies.get(i);
+				Arrays.sort(sorted);
+				System.out.printf("%s workflows in %.1fs, %.1f workflows/s%n", workflows, elapsed / 1e9,
+						workflows / (elapsed / 1e9));
+				System.out.printf("end-to-end ms: p50=%.0f p90=%.0f p99=%.0f max=%.0f%n", percentile(sorted, 0.5),
+						percentile(sorted, 0.9), percentile(sorted, 0.99), sorted[workflows - 1] / 1e6);
+				System.out.printf("outcomes: %s%n", outcomes);
+				System.out.printf("simulator: %s requests, %s injected errors, %s builds%n", simulator.getRequests(),
+						simulator.getInjectedErrors(), simulator.getFinishedBuilds());
+
+				ClientMetricsSnapshot snapshot = client.getMetricsSnapshot();
+				System.out.printf("client: limit %s of %s, %s rejected, %s bytes sent, %s bytes received%n",
+						snapshot.getOperationLimit(), snapshot.getMaxOperations(), snapshot.getRejected(),
+						snapshot.getBytesSent(), snapshot.getBytesReceived());
+				for (OperationStats stats : snapshot.getOperations().values())
+					System.out.println("  " + stats);
+			} finally {
+				client.close();
+			}
+		} finally {
+			scheduler.shutdownNow();
+		}
+	}
+
+	/**
+	 * Polls the build until it finished, without holding a thread in between.
+	 */
+	private static CompletableFuture<String> track(JenkinsClient client, ScheduledExecutorService scheduler,
+			int buildNumber, long pollMillis) {
+		CompletableFuture<String> done = new CompletableFuture<String>();
+		poll(client, scheduler, buildNumber, pollMillis, done);
+		return done;
+	}
+
+	private static void poll(JenkinsClient client, ScheduledExecutorService scheduler, int buildNumber,
+			long pollMillis, CompletableFuture<String> done) {
+		client.buildOps().async().getBuildResult(JOB_PATH, buildNumber).whenComplete((result, e) -> {
+			if (e != null)
+				done.completeExceptionally(e);
+			else if (result == BuildResult.BUILDING || result == BuildResult.REBUILDING)
+				scheduler.schedule(() -> poll(client, scheduler, buildNumber, pollMillis, done), pollMillis,
+						TimeUnit.MILLISECONDS);
+			else
+				done.complete(result.name());
+		});
+	}
+
+	private static Throwable rootCause(Throwable e) {
+		while (e.getCause() != null && e.getCause() != e)
+			e = e.getCause();
+		return e;
+	}
+
+	private static double percentile(long[] sorted, double quantile) {
+		return sorted[Math.min(sorted.length - 1, (int) (sorted.length * quantile))] / 1e6;
+	}
+}
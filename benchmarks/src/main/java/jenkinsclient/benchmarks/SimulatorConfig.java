@@ -0,0 +1,210 @@
+package jenkinsclient.benchmarks;
+
+/**
+ * Behaviour of a {@link JenkinsSimulator}. A config is read once when the
+ * simulator is started.
+ */
+public class SimulatorConfig {
+	private int nodes = 2;
+	private int executorsPerNode = 8;
+	private String[] labels = { "linux" };
+	private long quietPeriodMillis = 0;
+	private long buildDurationMillis = 1000;
+	private double buildDurationJitter = 0.2;
+	private double failureRate = 0;
+	private long latencyMillis = 0;
+	private long latencyJitterMillis = 0;
+	private double errorRate = 0;
+	private int errorStatus = 503;
+	private boolean crumbRequired = true;
+	private long crumbRotationMillis = 0;
+	private boolean getCancelAllowed = false;
+	private long queueItemRetentionMillis = 300000;
+	private long tickMillis = 10;
+	private int threads = 64;
+
+	public int getNodes() {
+		return nodes;
+	}
+
+	/**
+	 * Number of online nodes, all with the same executors and labels.
+	 */
+	public void setNodes(int nodes) {
+		this.nodes = nodes;
+	}
+
+	public int getExecutorsPerNode() {
+		return executorsPerNode;
+	}
+
+	public void setExecutorsPerNode(int executorsPerNode) {
+		this.executorsPerNode = executorsPerNode;
+	}
+
+	public String[] getLabels() {
+		return labels;
+	}
+
+	/**
+	 * Labels of every node, besides the node name.
+	 */
+	public void setLabels(String... labels) {
+		this.labels = labels;
+	}
+
+	public long getQuietPeriodMillis() {
+		return quietPeriodMillis;
+	}
+
+	/**
+	 * Minimum time an item waits in the queue before it may start.
+	 */
+	public void setQuietPeriodMillis(long quietPeriodMillis) {
+		this.quietPeriodMillis = quietPeriodMillis;
+	}
+
+	public long getBuildDurationMillis() {
+		return buildDurationMillis;
+	}
+
+	/**
+	 * Mean duration of a build, once it started on an executor.
+	 */
+	public void setBuildDurationMillis(long buildDurationMillis) {
+		this.buildDurationMillis = buildDurationMillis;
+	}
+
+	public double getBuildDurationJitter() {
+		return buildDurationJitter;
+	}
+
+	/**
+	 * Fraction by which each build duration randomly differs from the mean,
+	 * between 0 and 1.
+	 */
+	public void setBuildDurationJitter(double buildDurationJitter) {
+		this.buildDurationJitter = buildDurationJitter;
+	}
+
+	public double getFailureRate() {
+		return failureRate;
+	}
+
+	/**
+	 * Fraction of builds finishing with FAILURE instead of SUCCESS.
+	 */
+	public void setFailureRate(double failureRate) {
+		this.failureRate = failureRate;
+	}
+
+	public long getLatencyMillis() {
+		return latencyMillis;
+	}
+
+	/**
+	 * Delay of every answer.
+	 */
+	public void setLatencyMillis(long latencyMillis) {
+		this.latencyMillis = latencyMillis;
+	}
+
+	public long getLatencyJitterMillis() {
+		return latencyJitterMillis;
+	}
+
+	/**
+	 * Random extra delay of every answer, up to this value.
+	 */
+	public void setLatencyJitterMillis(long latencyJitterMillis) {
+		this.latencyJitterMillis = latencyJitterMillis;
+	}
+
+	public double getErrorRate() {
+		return errorRate;
+	}
+
+	/**
+	 * Fraction of requests answered with the error status instead of being
+	 * handled.
+	 */
+	public void setErrorRate(double errorRate) {
+		this.errorRate = errorRate;
+	}
+
+	public int getErrorStatus() {
+		return errorStatus;
+	}
+
+	public void setErrorStatus(int errorStatus) {
+		this.errorStatus = errorStatus;
+	}
+
+	public boolean isCrumbRequired() {
+		return crumbRequired;
+	}
+
+	/**
+	 * If set, POST requests without the current crumb are rejected with 403.
+	 */
+	public void setCrumbRequired(boolean crumbRequired) {
+		this.crumbRequired = crumbRequired;
+	}
+
+	public long getCrumbRotationMillis() {
+		return crumbRotationMillis;
+	}
+
+	/**
+	 * Interval at which a new crumb is issued, invalidating the previous one,
+	 * like a session expiry. Zero keeps one crumb.
+	 */
+	public void setCrumbRotationMillis(long crumbRotationMillis) {
+		this.crumbRotationMillis = crumbRotationMillis;
+	}
+
+	public boolean isGetCancelAllowed() {
+		return getCancelAllowed;
+	}
+
+	/**
+	 * If set, queue items can be cancelled with GET like on old Jenkins versions,
+	 * otherwise GET is answered with 405.
+	 */
+	public void setGetCancelAllowed(boolean getCancelAllowed) {
+		this.getCancelAllowed = getCancelAllowed;
+	}
+
+	public long getQueueItemRetentionMillis() {
+		return queueItemRetentionMillis;
+	}
+
+	/**
+	 * How long a queue item can still be looked up after it left the queue.
+	 */
+	public void setQueueItemRetentionMillis(long queueItemRetentionMillis) {
+		this.queueItemRetentionMillis = queueItemRetentionMillis;
+	}
+
+	public long getTickMillis() {
+		return tickMillis;
+	}
+
+	/**
+	 * Interval at which queued items are started and running builds finished.
+	 */
+	public void setTickMillis(long tickMillis) {
+		this.tickMillis = tickMillis;
+	}
+
+	public int getThreads() {
+		return threads;
+	}
+
+	/**
+	 * Requests handled at the same time.
+	 */
+	public void setThreads(int threads) {
+		this.threads = threads;
+	}
+}
@@ -0,0 +1,159 @@
+package jenkinsclient.benchmarks;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.math.BigInteger;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.util.Collections;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import jenkinsclient.JenkinsClient;
+import jenkinsclient.JenkinsClientConfig;
+import jenkinsclient.exceptions.JenkinsExecutionException;
+import jenkinsclient.model.ArtifactDownload;
+import jenkinsclient.model.ArtifactInfo;
+
+/**
+ * Artifact downloads, resumed from a part file, against the simulator.
+ */
+public class ArtifactSimulatorTest {
+	private static final String JOB = "/Folder/A";
+	private static final String ARTIFACT = "target/app.bin";
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private JenkinsSimulator simulator;
+	private JenkinsClient client;
+	private Path target;
+
+	@Before
+	public void start() throws Exception {
+		SimulatorConfig simulatorConfig = new SimulatorConfig();
+		simulatorConfig.setBuildDurationMillis(10);
+		simulator = new JenkinsSimulator(simulatorConfig);
+		simulator.createJob(JOB, "PARAM");
+		JenkinsClientConfig config = new JenkinsClientConfig();
+		config.setJmxEnabled(false);
+		config.setQueuePollIntervalMillis(50);
+		config.setCompletionPollMinMillis(50);
+		client = JenkinsClient.getClient(JenkinsClient.createClient(simulator.getUrl(), "user", "token", config));
+		String queueReferenceUrl = client.jobOps().triggerJob(JOB, Collections.singletonMap("PARAM", "0"));
+		client.buildWatcher().awaitCompletion(queueReferenceUrl).get(10, TimeUnit.SECONDS);
+		target = folder.getRoot().toPath().resolve("app.bin");
+	}
+
+	@After
+	public void stop() {
+		if (client != null)
+			client.close();
+		if (simulator != null)
+			simulator.close();
+	}
+
+	private static byte[] content(int size, long seed) {
+		byte[] content = new byte[size];
+		new Random(seed).nextBytes(content);
+		return content;
+	}
+
+	private static String sha256(byte[] content) throws Exception {
+		return String.format("%064x", new BigInteger(1, MessageDigest.getInstance("SHA-256").digest(content)));
+	}
+
+	private Path part() {
+		return target.resolveSibling("app.bin.part");
+	}
+
+	private void breakDownload(long afterBytes) throws Exception {
+		simulator.breakNextArtifactDownload(afterBytes);
+		try {
+			client.buildOps().downloadArtifact(JOB, 1, ARTIFACT, target);
+			fail("Expected the download to break off");
+		} catch (JenkinsExecutionException e) {
+			// The part file is kept for resuming.
+		}
+	}
+
+	@Test
+	public void downloadIsListedAndHashed() throws Exception {
+		byte[] content = content(300000, 1);
+		simulator.putArtifact(JOB, ARTIFACT, content);
+
+		ArtifactInfo artifact = client.buildOps().getArtifacts(JOB, 1).get(0);
+		assertEquals(ARTIFACT, artifact.getRelativePath());
+		ArtifactDownload download = client.buildOps().downloadArtifact(JOB, 1, ARTIFACT, target);
+		assertArrayEquals(content, Files.readAllBytes(target));
+		assertEquals(sha256(content), download.getSha256());
+		assertEquals(0, download.getResumedFrom());
+		assertEquals(content.length, download.getSize());
+		assertFalse(Files.exists(part()));
+	}
+
+	@Test
+	public void brokenDownloadIsResumed() throws Exception {
+		byte[] content = content(400000, 2);
+		simulator.putArtifact(JOB, ARTIFACT, content);
+		breakDownload(100000);
+		assertEquals(100000, Files.size(part()));
+		assertFalse(Files.exists(target));
+
+		ArtifactDownload download = client.buildOps().downloadArtifact(JOB, 1, ARTIFACT, target);
+		assertEquals(100000, download.getResumedFrom());
+		assertEquals(content.length - 100000, download.getTransferred());
+		assertArrayEquals(content, Files.readAllBytes(target));
+		// The hash covers the bytes of the part file too.
+		assertEquals(sha256(content), download.getSha256());
+		assertFalse(Files.exists(part()));
+	}
+
+	@Test
+	public void changedArtifactIsDownloadedAgain() throws Exception {
+		simulator.putArtifact(JOB, ARTIFACT, content(400000, 3));
+		breakDownload(50000);
+		// A new ETag, If-Range makes the server send the whole artifact.
+		byte[] changed = content(200000, 4);
+		simulator.putArtifact(JOB, ARTIFACT, changed);
+
+		ArtifactDownload download = client.buildOps().downloadArtifact(JOB, 1, ARTIFACT, target);
+		assertEquals(0, download.getResumedFrom());
+		assertArrayEquals(changed, Files.readAllBytes(target));
+		assertEquals(sha256(changed), download.getSha256());
+	}
+
+	@Test
+	public void existingTargetIsReplacedOnlyWhenComplete() throws Exception {
+		byte[] content = content(300000, 5);
+		simulator.putArtifact(JOB, ARTIFACT, content);
+		Files.write(target, content(1000, 6));
+		breakDownload(1000);
+		assertEquals(1000, Files.size(target));
+
+		client.buildOps().downloadArtifact(JOB, 1, ARTIFACT, target);
+		assertArrayEquals(content, Files.readAllBytes(target));
+	}
+
+	@Test
+	public void missingArtifactIsNotFound() throws Exception {
+		try {
+			client.buildOps().downloadArtifact(JOB, 1, "target/missing.bin", target);
+			fail("Expected the artifact to be missing");
+		} catch (JenkinsExecutionException e) {
+			assertTrue(e.getMessage().contains("not found"));
+		}
+		assertFalse(Files.exists(part()));
+	}
+}
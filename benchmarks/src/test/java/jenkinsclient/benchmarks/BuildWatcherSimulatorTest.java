@@ -0,0 +1,117 @@
+package jenkinsclient.benchmarks;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import org.junit.After;
+import org.junit.Test;
+
+import com.offbytwo.jenkins.model.BuildResult;
+
+import jenkinsclient.JenkinsClient;
+import jenkinsclient.JenkinsClientConfig;
+
+/**
+ * Waiting for build results against the simulator.
+ */
+public class BuildWatcherSimulatorTest {
+	private JenkinsSimulator simulator;
+	private JenkinsClient client;
+
+	private void start(SimulatorConfig simulatorConfig) throws Exception {
+		simulator = new JenkinsSimulator(simulatorConfig);
+		simulator.createJob("/Folder/A", "PARAM");
+		JenkinsClientConfig config = new JenkinsClientConfig();
+		config.setJmxEnabled(false);
+		config.setQueuePollIntervalMillis(50);
+		config.setCompletionPollMinMillis(50);
+		config.setCompletionPollMaxMillis(200);
+		client = JenkinsClient.getClient(JenkinsClient.createClient(simulator.getUrl(), "user", "token", config));
+	}
+
+	@After
+	public void stop() {
+		if (client != null)
+			client.close();
+		if (simulator != null)
+			simulator.close();
+	}
+
+	private String trigger(int i) throws Exception {
+		return client.jobOps().triggerJob("/Folder/A", Collections.singletonMap("PARAM", String.valueOf(i)));
+	}
+
+	@Test
+	public void awaitCompletionReturnsResults() throws Exception {
+		SimulatorConfig config = new SimulatorConfig();
+		config.setBuildDurationMillis(100);
+		config.setFailureRate(1);
+		start(config);
+
+		List<CompletableFuture<BuildResult>> results = new ArrayList<CompletableFuture<BuildResult>>();
+		for (int i = 0; i < 20; i++)
+			results.add(client.buildWatcher().awaitCompletion(trigger(i)));
+		for (CompletableFuture<BuildResult> result : results)
+			assertEquals(BuildResult.FAILURE, result.get(10, TimeUnit.SECONDS));
+		assertEquals(0, client.buildWatcher().getTrackedCount());
+		assertEquals(0, client.queueWatcher().getWatchedCount());
+	}
+
+	@Test
+	public void cancelledInQueueCompletesCancelled() throws Exception {
+		SimulatorConfig config = new SimulatorConfig();
+		config.setQuietPeriodMillis(60000);
+		start(config);
+
+		String queueReferenceUrl = trigger(0);
+		CompletableFuture<BuildResult> result = client.buildWatcher().awaitCompletion(queueReferenceUrl);
+		client.queueOps().stopQueuedBuild(queueReferenceUrl);
+		assertEquals(BuildResult.CANCELLED, result.get(10, TimeUnit.SECONDS));
+	}
+
+	@Test
+	public void timeoutReleasesQueueWatch() throws Exception {
+		SimulatorConfig config = new SimulatorConfig();
+		config.setQuietPeriodMillis(60000);
+		start(config);
+
+		CompletableFuture<BuildResult> result = client.buildWatcher().awaitCompletion(trigger(0), 100,
+				TimeUnit.MILLISECONDS);
+		try {
+			result.get(10, TimeUnit.SECONDS);
+			fail("Expected a timeout");
+		} catch (ExecutionException e) {
+			assertTrue(e.getCause() instanceof TimeoutException);
+		}
+		// The watch is released on the scheduler thread after the future failed.
+		long deadline = System.currentTimeMillis() + 1000;
+		while (client.queueWatcher().getWatchedCount() > 0 && System.currentTimeMillis() < deadline)
+			Thread.sleep(10);
+		assertEquals(0, client.queueWatcher().getWatchedCount());
+	}
+
+	@Test
+	public void cancelKeepsOtherAwaiters() throws Exception {
+		SimulatorConfig config = new SimulatorConfig();
+		config.setQuietPeriodMillis(500);
+		config.setBuildDurationMillis(100);
+		start(config);
+
+		String queueReferenceUrl = trigger(0);
+		CompletableFuture<BuildResult> cancelled = client.buildWatcher().awaitCompletion(queueReferenceUrl);
+		CompletableFuture<BuildResult> kept = client.buildWatcher().awaitCompletion(queueReferenceUrl);
+		cancelled.cancel(false);
+		assertEquals(1, client.queueWatcher().getWatchedCount());
+		assertEquals(BuildResult.SUCCESS, kept.get(10, TimeUnit.SECONDS));
+		assertEquals(0, client.buildWatcher().getTrackedCount());
+	}
+}
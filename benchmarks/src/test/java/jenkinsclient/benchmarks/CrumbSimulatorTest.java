@@ -0,0 +1,81 @@
+package jenkinsclient.benchmarks;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Collections;
+
+import org.junit.After;
+import org.junit.Test;
+
+import jenkinsclient.JenkinsClient;
+import jenkinsclient.JenkinsClientConfig;
+
+/**
+ * CSRF crumb handling of mutating requests against the simulator.
+ */
+public class CrumbSimulatorTest {
+	private JenkinsSimulator simulator;
+	private JenkinsClient client;
+
+	private void start(SimulatorConfig simulatorConfig) throws Exception {
+		simulator = new JenkinsSimulator(simulatorConfig);
+		simulator.createJob("/Folder/A", "PARAM");
+		JenkinsClientConfig config = new JenkinsClientConfig();
+		config.setJmxEnabled(false);
+		client = JenkinsClient.getClient(JenkinsClient.createClient(simulator.getUrl(), "user", "token", config));
+	}
+
+	@After
+	public void stop() {
+		if (client != null)
+			client.close();
+		if (simulator != null)
+			simulator.close();
+	}
+
+	private String trigger(int i) throws Exception {
+		return client.jobOps().triggerJob("/Folder/A", Collections.singletonMap("PARAM", String.valueOf(i)));
+	}
+
+	@Test
+	public void crumbIsFetchedOnce() throws Exception {
+		SimulatorConfig config = new SimulatorConfig();
+		config.setQuietPeriodMillis(60000);
+		start(config);
+
+		assertNotNull(trigger(-1));
+		assertTrue(client.isCrumbRequired());
+		long requests = simulator.getRequests();
+		for (int i = 0; i < 20; i++)
+			assertNotNull(trigger(i));
+		assertEquals(20, simulator.getRequests() - requests);
+	}
+
+	@Test
+	public void rotatedCrumbIsRefetched() throws Exception {
+		SimulatorConfig config = new SimulatorConfig();
+		config.setQuietPeriodMillis(60000);
+		config.setCrumbRotationMillis(100);
+		start(config);
+
+		for (int i = 0; i < 10; i++) {
+			assertNotNull(trigger(i));
+			Thread.sleep(60);
+		}
+		assertEquals(10, simulator.getQueueLength());
+	}
+
+	@Test
+	public void noCrumbWithoutIssuer() throws Exception {
+		SimulatorConfig config = new SimulatorConfig();
+		config.setQuietPeriodMillis(60000);
+		config.setCrumbRequired(false);
+		start(config);
+
+		assertNotNull(trigger(0));
+		assertFalse(client.isCrumbRequired());
+	}
+}
@@ -0,0 +1,91 @@
+package jenkinsclient.benchmarks;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Test;
+
+import jenkinsclient.JenkinsClient;
+import jenkinsclient.JenkinsClientConfig;
+import jenkinsclient.exceptions.JenkinsExecutionException;
+import jenkinsclient.model.BatchResult;
+import jenkinsclient.model.CancelOutcome;
+
+/**
+ * Batch cancellation of queue items against the simulator.
+ */
+public class QueueCancelSimulatorTest {
+	private JenkinsSimulator simulator;
+	private JenkinsClient client;
+
+	private void start(SimulatorConfig simulatorConfig) throws Exception {
+		simulator = new JenkinsSimulator(simulatorConfig);
+		simulator.createJob("/Folder/A", "PARAM");
+		simulator.createJob("/Folder/B", "PARAM");
+		JenkinsClientConfig config = new JenkinsClientConfig();
+		config.setJmxEnabled(false);
+		client = JenkinsClient.getClient(JenkinsClient.createClient(simulator.getUrl(), "user", "token", config));
+	}
+
+	@After
+	public void stop() {
+		if (client != null)
+			client.close();
+		if (simulator != null)
+			simulator.close();
+	}
+
+	private String trigger(String jobPath, int i) throws Exception {
+		return client.jobOps().triggerJob(jobPath, Collections.singletonMap("PARAM", String.valueOf(i)));
+	}
+
+	@Test
+	public void cancelQueuedSendsOneRequestPerItem() throws Exception {
+		SimulatorConfig config = new SimulatorConfig();
+		config.setQuietPeriodMillis(60000);
+		config.setGetCancelAllowed(false);
+		start(config);
+
+		// The first cancel learns that GET is refused.
+		client.queueOps().stopQueuedBuild(trigger("/Folder/A", -1));
+		List<String> queueReferenceUrls = new ArrayList<String>();
+		for (int i = 0; i < 50; i++)
+			queueReferenceUrls.add(trigger("/Folder/A", i));
+		queueReferenceUrls.add(simulator.getUrl() + "queue/item/999999/");
+
+		long requests = simulator.getRequests();
+		BatchResult<CancelOutcome> result = client.queueOps().cancelQueued(queueReferenceUrls);
+		assertEquals(51, simulator.getRequests() - requests);
+		assertEquals(50, result.getSucceeded());
+		assertTrue(result.getOutcomes().get(50).getError() instanceof JenkinsExecutionException);
+		for (int i = 0; i < 50; i++)
+			assertTrue(client.queueOps().isCancelledInQueue(queueReferenceUrls.get(i)));
+	}
+
+	@Test
+	public void cancelQueuedByFilter() throws Exception {
+		SimulatorConfig config = new SimulatorConfig();
+		config.setQuietPeriodMillis(60000);
+		start(config);
+
+		List<String> a = new ArrayList<String>();
+		List<String> b = new ArrayList<String>();
+		for (int i = 0; i < 10; i++) {
+			a.add(trigger("/Folder/A", i));
+			b.add(trigger("/Folder/B", i));
+		}
+		BatchResult<CancelOutcome> result = client.queueOps()
+				.cancelQueued(item -> item.getTaskUrl() != null && item.getTaskUrl().endsWith("/job/B/"));
+		assertEquals(10, result.getSucceeded());
+		for (int i = 0; i < 10; i++) {
+			assertFalse(client.queueOps().isCancelledInQueue(a.get(i)));
+			assertTrue(client.queueOps().isCancelledInQueue(b.get(i)));
+		}
+	}
+}
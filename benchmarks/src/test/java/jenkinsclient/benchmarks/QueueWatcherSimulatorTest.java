@@ -0,0 +1,79 @@
+package jenkinsclient.benchmarks;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Test;
+
+import jenkinsclient.JenkinsClient;
+import jenkinsclient.JenkinsClientConfig;
+import jenkinsclient.model.QueueItemStatus;
+import jenkinsclient.model.QueueItemStatus.State;
+
+/**
+ * Queue watching against the simulator.
+ */
+public class QueueWatcherSimulatorTest {
+	private JenkinsSimulator simulator;
+	private JenkinsClient client;
+
+	private void start(SimulatorConfig simulatorConfig) throws Exception {
+		simulator = new JenkinsSimulator(simulatorConfig);
+		simulator.createJob("/Folder/A", "PARAM");
+		JenkinsClientConfig config = new JenkinsClientConfig();
+		config.setJmxEnabled(false);
+		config.setQueuePollIntervalMillis(50);
+		client = JenkinsClient.getClient(JenkinsClient.createClient(simulator.getUrl(), "user", "token", config));
+	}
+
+	@After
+	public void stop() {
+		if (client != null)
+			client.close();
+		if (simulator != null)
+			simulator.close();
+	}
+
+	private String trigger(String jobPath, int i) throws Exception {
+		return client.jobOps().triggerJob(jobPath, Collections.singletonMap("PARAM", String.valueOf(i)));
+	}
+
+	@Test
+	public void watchResolvesStartedBuilds() throws Exception {
+		SimulatorConfig config = new SimulatorConfig();
+		config.setQuietPeriodMillis(100);
+		start(config);
+
+		List<String> queueReferenceUrls = new ArrayList<String>();
+		for (int i = 0; i < 20; i++)
+			queueReferenceUrls.add(trigger("/Folder/A", i));
+		for (String queueReferenceUrl : queueReferenceUrls) {
+			QueueItemStatus status = client.queueWatcher().watch(queueReferenceUrl).get(10, TimeUnit.SECONDS);
+			assertEquals(State.EXECUTABLE, status.getState());
+			assertTrue(status.getBuildNumber() > 0);
+			assertNotNull(status.getBuildUrl());
+		}
+		assertEquals(0, client.queueWatcher().getWatchedCount());
+	}
+
+	@Test
+	public void cancelledItemsResolveCancelled() throws Exception {
+		SimulatorConfig config = new SimulatorConfig();
+		config.setQuietPeriodMillis(60000);
+		config.setGetCancelAllowed(false);
+		start(config);
+
+		String queueReferenceUrl = trigger("/Folder/A", 0);
+		client.queueOps().stopQueuedBuild(queueReferenceUrl);
+		assertEquals(State.CANCELLED,
+				client.queueWatcher().watch(queueReferenceUrl).get(10, TimeUnit.SECONDS).getState());
+		assertTrue(client.queueOps().isCancelledInQueue(queueReferenceUrl));
+	}
+}
@@ -1,5 +1,11 @@
 package jenkinsclient;
 
+import java.io.IOException;
+
+import org.apache.http.client.HttpResponseException;
+
+import jenkinsclient.exceptions.JenkinsExecutionException;
+
 public abstract class AbstractOps {
 	protected JenkinsClient client;
 
@@ -17,4 +23,58 @@ public abstract class AbstractOps {
 		}
 		return folderUrl.toString();
 	}
+
+	/**
+	 * Url of the job relative to the Jenkins url, for example "/job/Project/job/JobA/"
+	 * for the job path "/Project/JobA".
+	 */
+	protected String jobUrl(String jobPath) {
+		return generateUrl(jobPath.split("/"));
+	}
+
+	/**
+	 * Returns the cached handle of the job or fetches it with a minimal tree
+	 * request. The caller must hold an operation slot.
+	 */
+	JobHandle resolveJob(String jobPath) throws JenkinsExecutionException {
+		JobHandle handle = client.getJobCache().get(jobPath);
+		if (handle != null)
+			return handle;
+
+		try {
+			handle = client.fetch(jobUrl(jobPath), Projections.JOB_HANDLE);
+		} catch (HttpResponseException e) {
+			if (e.getStatusCode() == 404)
+				throw new JenkinsExecutionException(String.format("Job %s not found.", jobPath));
+			throw new JenkinsExecutionException(String.format("Error getting job %s", jobPath), e);
+		} catch (IOException e) {
+			throw new JenkinsExecutionException(String.format("Error getting job %s", jobPath), e);
+		}
+		client.getJobCache().put(jobPath, handle);
+		return handle;
+	}
+
+	/**
+	 * Checks whether a job or folder exists at the url, fetching nothing but its
+	 * name. The caller must hold an operation slot.
+	 */
+	boolean exists(String url) throws IOException {
+		try {
+			client.fetch(url, Projections.NAME);
+			return true;
+		} catch (HttpResponseException e) {
+			if (e.getStatusCode() == 404)
+				return false;
+			throw e;
+		}
+	}
+
+	/**
+	 * The error of a failed future as the Exception it completed with.
+	 */
+	static Exception asException(Throwable error) {
+		if (error == null || error instanceof Exception)
+			return (Exception) error;
+		return new RuntimeException(error);
+	}
 }
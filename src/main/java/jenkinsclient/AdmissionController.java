@@ -0,0 +1,282 @@
+package jenkinsclient;
+
+import java.io.InterruptedIOException;
+import java.net.ConnectException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.IntConsumer;
+
+import org.apache.http.NoHttpResponseException;
+
+import jenkinsclient.exceptions.MaximumOperationsReachedException;
+
+/**
+ * Limits the simultaneous operations of a {@link JenkinsClient}. Callers over
+ * the limit wait in FIFO order, up to a bounded number of waiters and a bounded
+ * time, instead of being rejected straight away.
+ *
+ * Unless disabled in the config the limit adapts to the server, between the
+ * configured floor and ceiling. Responses are sampled, and once per round trip
+ * the limit grows while the latency stays near the lowest latency seen and the
+ * limit is used, or shrinks in proportion when the latency rises above it. It
+ * is cut back when the server answers with an overload status or stops
+ * answering in time.
+ */
+class AdmissionController {
+	/** Latency above the baseline accepted before the limit shrinks. */
+	private static final double LATENCY_TOLERANCE = 1.5;
+	/** Weight of a new limit against the current one. */
+	private static final double SMOOTHING = 0.2;
+	/** Factor the limit is cut by on an overload. */
+	private static final double BACKOFF = 0.9;
+	/** Samples averaged by the short-term latency. */
+	private static final double SHORT_WINDOW = 10;
+	/** Time constant with which the baseline rises, in nanoseconds. */
+	private static final double BASELINE_WINDOW = TimeUnit.SECONDS.toNanos(60);
+
+	private final ReentrantLock lock = new ReentrantLock();
+	private final Condition slotFreed = lock.newCondition();
+	private final LongAdder rejected = new LongAdder();
+
+	private final int minOperations;
+	private final int maxOperations;
+	private final int maxQueuedOperations;
+	private final long acquireTimeoutMillis;
+	private final boolean nonBlocking;
+	private final boolean adaptive;
+
+	// Written under the lock, read without it by the getters.
+	private volatile int inFlight;
+	private volatile int queued;
+	private volatile double limit;
+	private volatile IntConsumer limitListener;
+
+	// Guarded by the lock.
+	private long samples;
+	private double shortRtt;
+	private double baselineRtt;
+	private long lastSample;
+	private long lastUpdate;
+	private long lastBackoff;
+
+	AdmissionController(JenkinsClientConfig config) {
+		this.maxOperations = Math.max(1, config.getMaxOperations());
+		this.minOperations = Math.max(1, Math.min(config.getMinOperations(), maxOperations));
+		this.maxQueuedOperations = config.getMaxQueuedOperations();
+		this.acquireTimeoutMillis = config.getAcquireTimeoutMillis();
+		this.nonBlocking = config.isNonBlockingAdmission();
+		this.adaptive = config.isAdaptiveConcurrency();
+		this.limit = adaptive ? clamp(config.getInitialOperations()) : maxOperations;
+	}
+
+	/**
+	 * Takes an operation slot, waiting if none is free.
+	 *
+	 * @throws MaximumOperationsReachedException
+	 *             if the wait queue is full, the wait timed out or the
+	 *             controller is non-blocking and no slot is free.
+	 */
+	void acquire() throws MaximumOperationsReachedException {
+		lock.lock();
+		try {
+			// Callers already waiting go first, a free slot is theirs.
+			if (queued == 0 && inFlight < getLimit()) {
+				inFlight++;
+				return;
+			}
+			if (nonBlocking)
+				throw rejected("no free slot");
+			if (queued >= maxQueuedOperations)
+				throw rejected(String.format("%s operations already waiting", maxQueuedOperations));
+
+			queued++;
+			try {
+				long nanos = TimeUnit.MILLISECONDS.toNanos(acquireTimeoutMillis);
+				while (inFlight >= getLimit()) {
+					if (nanos <= 0)
+						throw rejected(String.format("no free slot after %sms", acquireTimeoutMillis));
+					nanos = slotFreed.awaitNanos(nanos);
+				}
+				inFlight++;
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw rejected("interrupted while waiting");
+			} finally {
+				queued--;
+				// Pass on a wake-up this caller did not use, or a slot the limit added.
+				if (queued > 0 && inFlight < getLimit())
+					slotFreed.signal();
+			}
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Takes an operation slot only if one is free and nobody is waiting, without
+	 * counting a rejection otherwise.
+	 *
+	 * @return whether a slot was taken
+	 */
+	boolean tryAcquire() {
+		lock.lock();
+		try {
+			if (queued == 0 && inFlight < getLimit()) {
+				inFlight++;
+				return true;
+			}
+			return false;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	void release() {
+		lock.lock();
+		try {
+			inFlight--;
+			slotFreed.signal();
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Adapts the limit to the latency of one response.
+	 *
+	 * @param rttNanos
+	 *            time from sending the request to receiving the response
+	 *            headers
+	 * @param overloaded
+	 *            whether the server answered that it is overloaded
+	 */
+	void onResponse(long rttNanos, boolean overloaded) {
+		if (!adaptive)
+			return;
+		if (overloaded) {
+			backoff();
+			return;
+		}
+		int before = getLimit();
+		lock.lock();
+		try {
+			double rtt = rttNanos;
+			long now = System.nanoTime();
+			samples++;
+			shortRtt += (rtt - shortRtt) / Math.min(samples, SHORT_WINDOW);
+			// The baseline is the lowest short-term latency seen. While the client hardly
+			// loads the server it slowly rises towards the current latency, so that a
+			// server that got slower for good is learned.
+			boolean unloaded = inFlight < limit / 2 || getLimit() <= minOperations;
+			if (samples == 1)
+				baselineRtt = shortRtt;
+			else if (unloaded)
+				baselineRtt += (rtt - baselineRtt) * Math.min(1, (now - lastSample) / BASELINE_WINDOW);
+			baselineRtt = Math.min(baselineRtt, shortRtt);
+			lastSample = now;
+
+			// Once per round trip, earlier samples do not show the last change yet. An
+			// unused limit says nothing about what the server can take.
+			if (now - lastUpdate < shortRtt || inFlight < limit / 2)
+				return;
+			lastUpdate = now;
+			double gradient = Math.max(0.5, Math.min(1.0, LATENCY_TOLERANCE * baselineRtt / shortRtt));
+			double target = limit * gradient + Math.sqrt(limit);
+			limit = clamp(limit * (1 - SMOOTHING) + target * SMOOTHING);
+			if (getLimit() > before && queued > 0)
+				slotFreed.signal();
+		} finally {
+			lock.unlock();
+		}
+		notifyIfChanged(before);
+	}
+
+	/**
+	 * Cuts the limit back if the operation failed because the server did not
+	 * answer in time or refused connections.
+	 */
+	void onFailure(Throwable error) {
+		if (!adaptive)
+			return;
+		for (Throwable cause = error; cause != null; cause = cause.getCause()) {
+			if (cause instanceof InterruptedIOException || cause instanceof NoHttpResponseException
+					|| cause instanceof ConnectException) {
+				backoff();
+				return;
+			}
+		}
+	}
+
+	/**
+	 * Cuts the limit, at most once per average latency so that the many
+	 * operations failing in the same overload count once.
+	 */
+	private void backoff() {
+		int before = getLimit();
+		lock.lock();
+		try {
+			long now = System.nanoTime();
+			if (lastBackoff != 0 && now - lastBackoff < shortRtt)
+				return;
+			lastBackoff = now;
+			limit = clamp(limit * BACKOFF);
+		} finally {
+			lock.unlock();
+		}
+		notifyIfChanged(before);
+	}
+
+	/**
+	 * Sets the listener told the new limit each time it changes, called outside
+	 * of the lock.
+	 */
+	void setLimitListener(IntConsumer limitListener) {
+		this.limitListener = limitListener;
+	}
+
+	private void notifyIfChanged(int before) {
+		IntConsumer listener = limitListener;
+		int after = getLimit();
+		if (listener != null && after != before)
+			listener.accept(after);
+	}
+
+	private double clamp(double value) {
+		return Math.max(minOperations, Math.min(maxOperations, value));
+	}
+
+	/**
+	 * Current limit of simultaneous operations, fixed to the maximum if the
+	 * limit is not adaptive.
+	 */
+	int getLimit() {
+		return (int) limit;
+	}
+
+	int getMaxOperations() {
+		return maxOperations;
+	}
+
+	int getInFlight() {
+		return inFlight;
+	}
+
+	int getQueued() {
+		return queued;
+	}
+
+	/**
+	 * Operations rejected since the controller was created.
+	 */
+	long getRejected() {
+		return rejected.sum();
+	}
+
+	private MaximumOperationsReachedException rejected(String reason) {
+		rejected.increment();
+		return new MaximumOperationsReachedException(
+				String.format("Maximum simultaneous operation %s limit reached, %s", getLimit(), reason));
+	}
+}
@@ -0,0 +1,307 @@
+package jenkinsclient;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.apache.http.Header;
+import org.apache.http.HttpEntity;
+import org.apache.http.HttpHeaders;
+import org.apache.http.HttpResponse;
+import org.apache.http.client.HttpResponseException;
+import org.apache.http.client.methods.CloseableHttpResponse;
+import org.apache.http.client.methods.HttpGet;
+
+import com.offbytwo.jenkins.client.util.EncodingUtils;
+
+import jenkinsclient.model.ArtifactDownload;
+
+/**
+ * Downloads artifacts straight from the pooled connection into a file channel
+ * through a small transfer buffer, so the heap use of a download does not
+ * depend on the artifact size.
+ *
+ * The artifact is written to a "name.part" file next to the target and only
+ * renamed to the target once complete, so an existing target is never mixed
+ * with a new download. The url and the validator (ETag or Last-Modified) of
+ * the artifact are kept in a "name.part.meta" file: a partial file is only
+ * continued with a Range request for the same url, and If-Range makes the
+ * server send the whole artifact instead if it changed meanwhile.
+ */
+class ArtifactDownloader {
+	private static final int BUFFER_SIZE = 64 * 1024;
+	private static final long TRANSFER_CHUNK = 8 * 1024 * 1024;
+	private static final String PART_SUFFIX = ".part";
+	private static final String META_SUFFIX = ".part.meta";
+	private static final Pattern CONTENT_RANGE = Pattern.compile("bytes (?:(\\d+)-\\d+|\\*)/(?:(\\d+)|\\*)");
+
+	private final JenkinsClient client;
+
+	ArtifactDownloader(JenkinsClient client) {
+		this.client = client;
+	}
+
+	/**
+	 * Url of the artifact relative to the Jenkins url, each path segment encoded.
+	 */
+	static String artifactUrl(String buildUrl, String relativePath) {
+		StringBuilder url = new StringBuilder(buildUrl).append("artifact");
+		for (String segment : relativePath.split("/")) {
+			if (!segment.isEmpty())
+				url.append('/').append(EncodingUtils.encode(segment));
+		}
+		return url.toString();
+	}
+
+	/**
+	 * Downloads the artifact to the target, continuing the partial file of an
+	 * earlier download of the same artifact. The caller must hold an operation
+	 * slot.
+	 */
+	ArtifactDownload download(String buildUrl, String relativePath, Path target) throws IOException {
+		long started = System.nanoTime();
+		if (target.getParent() != null)
+			Files.createDirectories(target.getParent());
+		Path part = target.resolveSibling(target.getFileName() + PART_SUFFIX);
+		Path meta = target.resolveSibling(target.getFileName() + META_SUFFIX);
+		String url = client.absoluteUrl(artifactUrl(buildUrl, relativePath));
+		try {
+			ArtifactDownload download = download(url, relativePath, target, part, meta, readValidator(meta, url),
+					started);
+			if (download == null) {
+				// The partial file does not match the artifact on the server, start over.
+				download = download(url, relativePath, target, part, meta, null, started);
+			}
+			return download;
+		} catch (IOException | RuntimeException e) {
+			// Keep partial downloads for resuming, but no empty file of a failed request.
+			if (Files.exists(part) && Files.size(part) == 0) {
+				Files.deleteIfExists(part);
+				Files.deleteIfExists(meta);
+			}
+			throw e;
+		}
+	}
+
+	/**
+	 * Downloads the artifact into the part file, continuing it if the validator
+	 * is known, then moves it to the target.
+	 *
+	 * @return null if the server answered a range that does not continue the
+	 *         part file, which is left to be discarded
+	 */
+	private ArtifactDownload download(String url, String relativePath, Path target, Path part, Path meta,
+			String validator, long started) throws IOException {
+		long existing = validator != null && Files.exists(part) ? Files.size(part) : 0;
+		if (existing == 0)
+			Files.deleteIfExists(meta);
+
+		long resumedFrom;
+		long size;
+		MessageDigest digest = sha256();
+		try (FileChannel file = FileChannel.open(part, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+				StandardOpenOption.READ)) {
+			if (existing == 0)
+				file.truncate(0);
+			HttpGet get = new HttpGet(url);
+			if (existing > 0) {
+				get.setHeader(HttpHeaders.RANGE, "bytes=" + existing + "-");
+				get.setHeader(HttpHeaders.IF_RANGE, validator);
+			}
+
+			long expectedSize = -1;
+			try (CloseableHttpResponse response = client.execute(get)) {
+				int status = response.getStatusLine().getStatusCode();
+				if (status == 416 && existing > 0) {
+					// Complete only if the server confirms that the artifact has exactly this size.
+					if (contentRange(response)[1] != existing)
+						return null;
+					resumedFrom = existing;
+					hash(file, existing, digest);
+				} else if (status == 206 && existing > 0 || status == 200) {
+					if (status == 206) {
+						long[] range = contentRange(response);
+						if (range[0] != existing)
+							return null;
+						resumedFrom = existing;
+						expectedSize = range[1];
+						hash(file, existing, digest);
+					} else {
+						// Either a new download or the artifact changed since the part file was written.
+						resumedFrom = 0;
+						file.truncate(0);
+						writeValidator(meta, url, response);
+					}
+					HttpEntity entity = response.getEntity();
+					if (entity != null) {
+						try (InputStream in = entity.getContent()) {
+							long written = transfer(new DigestChannel(Channels.newChannel(in), digest), file,
+									resumedFrom);
+							long expected = entity.getContentLength();
+							if (expected >= 0 && written < expected)
+								throw new IOException(String.format("Download of %s ended after %s of %s bytes",
+										relativePath, written, expected));
+						}
+					}
+				} else {
+					throw new HttpResponseException(status, response.getStatusLine().getReasonPhrase());
+				}
+			}
+			size = file.size();
+			if (expectedSize >= 0 && size != expectedSize)
+				throw new IOException(
+						String.format("Download of %s has %s bytes, the server has %s", relativePath, size, expectedSize));
+		}
+
+		try {
+			Files.move(part, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		} catch (AtomicMoveNotSupportedException e) {
+			Files.move(part, target, StandardCopyOption.REPLACE_EXISTING);
+		}
+		Files.deleteIfExists(meta);
+		return new ArtifactDownload(relativePath, target, size, resumedFrom, hex(digest.digest()),
+				TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started));
+	}
+
+	/**
+	 * The validator stored for the part file, null if there is none or it was
+	 * stored for another url.
+	 */
+	private static String readValidator(Path meta, String url) throws IOException {
+		if (!Files.exists(meta))
+			return null;
+		List<String> lines = Files.readAllLines(meta, StandardCharsets.UTF_8);
+		if (lines.size() < 2 || !lines.get(0).equals(url) || lines.get(1).isEmpty())
+			return null;
+		return lines.get(1);
+	}
+
+	/**
+	 * Stores the validator of a full response so that the part file can be
+	 * continued if the transfer breaks. Weak ETags are not accepted by If-Range,
+	 * Last-Modified is used instead. Without either the part file is not
+	 * continued.
+	 */
+	private static void writeValidator(Path meta, String url, HttpResponse response) throws IOException {
+		Header etag = response.getFirstHeader(HttpHeaders.ETAG);
+		Header lastModified = response.getFirstHeader(HttpHeaders.LAST_MODIFIED);
+		String validator = etag != null && !etag.getValue().startsWith("W/") ? etag.getValue()
+				: lastModified != null ? lastModified.getValue() : null;
+		if (validator == null)
+			Files.deleteIfExists(meta);
+		else
+			Files.write(meta, Arrays.asList(url, validator), StandardCharsets.UTF_8);
+	}
+
+	/**
+	 * First byte and total size from the Content-Range header, an asterisk
+	 * replaces the range of a 416. Unknown values are -1.
+	 */
+	private static long[] contentRange(HttpResponse response) {
+		long[] range = { -1, -1 };
+		Header header = response.getFirstHeader(HttpHeaders.CONTENT_RANGE);
+		if (header == null)
+			return range;
+		Matcher matcher = CONTENT_RANGE.matcher(header.getValue().trim());
+		if (matcher.matches()) {
+			if (matcher.group(1) != null)
+				range[0] = Long.parseLong(matcher.group(1));
+			if (matcher.group(2) != null)
+				range[1] = Long.parseLong(matcher.group(2));
+		}
+		return range;
+	}
+
+	private static long transfer(ReadableByteChannel in, FileChannel file, long position) throws IOException {
+		long written = 0;
+		long transferred;
+		while ((transferred = file.transferFrom(in, position + written, TRANSFER_CHUNK)) > 0)
+			written += transferred;
+		return written;
+	}
+
+	/**
+	 * Adds the first length bytes of the file to the digest. Buffer positions are
+	 * moved through Buffer so the bytecode also links on Java 8.
+	 */
+	private static void hash(FileChannel file, long length, MessageDigest digest) throws IOException {
+		ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+		long position = 0;
+		while (position < length) {
+			((Buffer) buffer).limit((int) Math.min(buffer.capacity(), length - position));
+			int read = file.read(buffer, position);
+			if (read <= 0)
+				break;
+			((Buffer) buffer).flip();
+			digest.update(buffer);
+			((Buffer) buffer).clear();
+			position += read;
+		}
+	}
+
+	/**
+	 * Adds every byte read from the channel to the digest, so the download is
+	 * hashed while it is written instead of reading the file again.
+	 */
+	private static class DigestChannel implements ReadableByteChannel {
+		private final ReadableByteChannel in;
+		private final MessageDigest digest;
+
+		DigestChannel(ReadableByteChannel in, MessageDigest digest) {
+			this.in = in;
+			this.digest = digest;
+		}
+
+		public int read(ByteBuffer dst) throws IOException {
+			int start = dst.position();
+			int read = in.read(dst);
+			if (read > 0) {
+				ByteBuffer view = dst.duplicate();
+				((Buffer) view).position(start);
+				((Buffer) view).limit(start + read);
+				digest.update(view);
+			}
+			return read;
+		}
+
+		public boolean isOpen() {
+			return in.isOpen();
+		}
+
+		public void close() throws IOException {
+			in.close();
+		}
+	}
+
+	private static MessageDigest sha256() {
+		try {
+			return MessageDigest.getInstance("SHA-256");
+		} catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	private static String hex(byte[] bytes) {
+		StringBuilder hex = new StringBuilder(bytes.length * 2);
+		for (byte b : bytes)
+			hex.append(String.format("%02x", b));
+		return hex.toString();
+	}
+}
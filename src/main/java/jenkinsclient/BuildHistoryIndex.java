@@ -0,0 +1,166 @@
+package jenkinsclient;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Memory-mapped hash index of a {@link BuildHistoryStore}, from (job id, build
+ * number) to the position of the record in the segment file. Open addressing
+ * with linear probing, the table doubles once it is half full.
+ * 
+ * The header records how many records of the segment the index covers, so
+ * records appended before a crash are indexed again on the next open.
+ */
+class BuildHistoryIndex implements Closeable {
+	private static final int MAGIC = 0x4A424849;
+	private static final int HEADER_SIZE = 32;
+	private static final int SLOT_SIZE = 16;
+	private static final int MIN_CAPACITY = 1 << 16;
+	/** Largest table a single mapping can hold. */
+	private static final int MAX_CAPACITY = 1 << 26;
+
+	private final Path file;
+	private FileChannel channel;
+	private MappedByteBuffer map;
+	private int capacity;
+	private long size;
+
+	private BuildHistoryIndex(Path file) {
+		this.file = file;
+	}
+
+	/**
+	 * Opens the index file, an empty index covering no records is created if the
+	 * file is missing or not an index.
+	 */
+	static BuildHistoryIndex open(Path file) throws IOException {
+		BuildHistoryIndex index = new BuildHistoryIndex(file);
+		index.map(file);
+		if (index.map.getInt(0) != MAGIC || index.map.getInt(4) != index.capacity)
+			index.reset();
+		return index;
+	}
+
+	private void map(Path path) throws IOException {
+		channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+		long length = channel.size();
+		if (length < HEADER_SIZE + (long) MIN_CAPACITY * SLOT_SIZE)
+			length = HEADER_SIZE + (long) MIN_CAPACITY * SLOT_SIZE;
+		map = channel.map(FileChannel.MapMode.READ_WRITE, 0, length);
+		capacity = (int) ((length - HEADER_SIZE) / SLOT_SIZE);
+		size = map.getLong(8);
+	}
+
+	/**
+	 * Empties the index, it covers no records afterwards.
+	 */
+	void reset() {
+		for (int position = 0; position < map.capacity(); position += 8)
+			map.putLong(position, 0);
+		map.putInt(0, MAGIC);
+		map.putInt(4, capacity);
+		size = 0;
+	}
+
+	long size() {
+		return size;
+	}
+
+	/**
+	 * Number of records of the segment, from the start, that are in the index.
+	 */
+	long getCoveredRecords() {
+		return map.getLong(16);
+	}
+
+	void setCoveredRecords(long records) {
+		map.putLong(16, records);
+	}
+
+	private int slot(int jobId, int number) {
+		long hash = jobId * 0x9E3779B97F4A7C15L ^ number * 0xC2B2AE3D27D4EB4FL;
+		hash ^= hash >>> 29;
+		return (int) hash & (capacity - 1);
+	}
+
+	/**
+	 * @return the record position, -1 if the build is not in the index
+	 */
+	long get(int jobId, int number) {
+		for (int slot = slot(jobId, number);; slot = (slot + 1) & (capacity - 1)) {
+			int position = HEADER_SIZE + slot * SLOT_SIZE;
+			int key = map.getInt(position);
+			if (key == 0)
+				return -1;
+			if (key == jobId + 1 && map.getInt(position + 4) == number)
+				return map.getLong(position + 8);
+		}
+	}
+
+	/**
+	 * @return false if the build was already in the index
+	 */
+	boolean put(int jobId, int number, long record) throws IOException {
+		if ((size + 1) * 2 > capacity)
+			grow();
+		for (int slot = slot(jobId, number);; slot = (slot + 1) & (capacity - 1)) {
+			int position = HEADER_SIZE + slot * SLOT_SIZE;
+			int key = map.getInt(position);
+			if (key == jobId + 1 && map.getInt(position + 4) == number)
+				return false;
+			if (key == 0) {
+				map.putInt(position + 4, number);
+				map.putLong(position + 8, record);
+				map.putInt(position, jobId + 1);
+				map.putLong(8, ++size);
+				return true;
+			}
+		}
+	}
+
+	/**
+	 * Rehashes into a table of twice the size, written next to the index and
+	 * moved over it once complete.
+	 */
+	private void grow() throws IOException {
+		if (capacity >= MAX_CAPACITY)
+			throw new IOException(String.format("Build history index %s is full", file));
+		Path grown = file.resolveSibling(file.getFileName() + ".tmp");
+		Files.deleteIfExists(grown);
+		BuildHistoryIndex target = new BuildHistoryIndex(grown);
+		try (FileChannel created = FileChannel.open(grown, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE)) {
+			created.position(HEADER_SIZE + (long) capacity * 2 * SLOT_SIZE - 1);
+			created.write(ByteBuffer.wrap(new byte[1]));
+		}
+		target.map(grown);
+		target.reset();
+		for (int slot = 0; slot < capacity; slot++) {
+			int position = HEADER_SIZE + slot * SLOT_SIZE;
+			int key = map.getInt(position);
+			if (key != 0)
+				target.put(key - 1, map.getInt(position + 4), map.getLong(position + 8));
+		}
+		target.setCoveredRecords(getCoveredRecords());
+		target.force();
+		target.channel.close();
+		channel.close();
+		Files.move(grown, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		map(file);
+	}
+
+	void force() {
+		map.force();
+	}
+
+	public void close() throws IOException {
+		force();
+		channel.close();
+	}
+}
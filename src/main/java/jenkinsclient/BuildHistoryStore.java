@@ -0,0 +1,536 @@
+package jenkinsclient;
+
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+
+import org.apache.http.client.HttpResponseException;
+
+import com.offbytwo.jenkins.JenkinsServer;
+import com.offbytwo.jenkins.model.BuildResult;
+
+import jenkinsclient.exceptions.JenkinsExecutionException;
+import jenkinsclient.exceptions.MaximumOperationsReachedException;
+import jenkinsclient.model.BuildRecord;
+import jenkinsclient.model.BuildStats;
+
+/**
+ * Local, file-backed history of finished builds, answering range and aggregate
+ * queries without requests to the Jenkins. It lives in a directory of its own:
+ * 
+ * <ul>
+ * <li>records.dat: append-only segment of fixed-size build records</li>
+ * <li>index.dat: memory-mapped hash index by job and build number</li>
+ * <li>jobs.dat: the job paths, a record refers to its job by line number,
+ * with the build number each job is synced from</li>
+ * </ul>
+ * 
+ * Only the job dictionary is held in memory, so the heap use does not grow
+ * with the number of records. Records are never updated, a build is stored
+ * once it finished.
+ */
+public class BuildHistoryStore implements Closeable {
+	// job id, build number, timestamp, duration, queue wait, result code, reserved
+	private static final int RECORD_SIZE = 40;
+	private static final int SCAN_RECORDS = 1638;
+	/** Result codes of the records, only ever appended to. */
+	private static final BuildResult[] RESULT_CODES = { BuildResult.UNKNOWN, BuildResult.SUCCESS,
+			BuildResult.UNSTABLE, BuildResult.FAILURE, BuildResult.NOT_BUILT, BuildResult.ABORTED,
+			BuildResult.CANCELLED, BuildResult.BUILDING, BuildResult.REBUILDING };
+
+	private final Path directory;
+	private final FileChannel records;
+	private final BuildHistoryIndex index;
+	private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+	private final List<String> jobPaths = new ArrayList<String>();
+	private final Map<String, Integer> jobIds = new HashMap<String, Integer>();
+	private final List<Integer> syncFrom = new ArrayList<Integer>();
+	private final List<Integer> lastBuildNumbers = new ArrayList<Integer>();
+	private long recordCount;
+
+	private BuildHistoryStore(Path directory, FileChannel records, BuildHistoryIndex index) {
+		this.directory = directory;
+		this.records = records;
+		this.index = index;
+	}
+
+	/**
+	 * Opens the store in the directory, creating it if it does not exist. A
+	 * partial record left by a crash is dropped and records missing from the
+	 * index are indexed again.
+	 */
+	public static BuildHistoryStore open(Path directory) throws IOException {
+		Files.createDirectories(directory);
+		FileChannel records = FileChannel.open(directory.resolve("records.dat"), StandardOpenOption.CREATE,
+				StandardOpenOption.READ, StandardOpenOption.WRITE);
+		BuildHistoryIndex index;
+		try {
+			index = BuildHistoryIndex.open(directory.resolve("index.dat"));
+		} catch (IOException e) {
+			records.close();
+			throw e;
+		}
+		BuildHistoryStore store = new BuildHistoryStore(directory, records, index);
+		try {
+			store.load();
+		} catch (IOException | RuntimeException e) {
+			store.close();
+			throw e;
+		}
+		return store;
+	}
+
+	private void load() throws IOException {
+		Path jobsFile = directory.resolve("jobs.dat");
+		if (Files.exists(jobsFile)) {
+			for (String line : Files.readAllLines(jobsFile, StandardCharsets.UTF_8)) {
+				int tab = line.indexOf('\t');
+				if (tab < 0)
+					continue;
+				registerJob(line.substring(tab + 1), Integer.parseInt(line.substring(0, tab)));
+			}
+		}
+
+		long complete = records.size() / RECORD_SIZE;
+		if (records.size() != complete * RECORD_SIZE)
+			records.truncate(complete * RECORD_SIZE);
+		recordCount = complete;
+		if (index.getCoveredRecords() > recordCount)
+			index.reset();
+
+		final long covered = index.getCoveredRecords();
+		scan(record -> {
+			int jobId = record.getInt(0);
+			int number = record.getInt(4);
+			if (jobId >= jobPaths.size())
+				return;
+			lastBuildNumbers.set(jobId, Math.max(lastBuildNumbers.get(jobId), number));
+		}, (position, record) -> {
+			if (position >= covered)
+				index.put(record.getInt(0), record.getInt(4), position);
+		});
+		index.setCoveredRecords(recordCount);
+		index.force();
+	}
+
+	private int registerJob(String jobPath, int from) {
+		int jobId = jobPaths.size();
+		jobPaths.add(jobPath);
+		jobIds.put(jobPath, jobId);
+		syncFrom.add(from);
+		lastBuildNumbers.add(0);
+		return jobId;
+	}
+
+	private void writeJobs() throws IOException {
+		Path jobsFile = directory.resolve("jobs.dat");
+		Path written = directory.resolve("jobs.dat.tmp");
+		try (BufferedWriter writer = Files.newBufferedWriter(written, StandardCharsets.UTF_8)) {
+			for (int jobId = 0; jobId < jobPaths.size(); jobId++) {
+				writer.write(syncFrom.get(jobId) + "\t" + jobPaths.get(jobId));
+				writer.newLine();
+			}
+		}
+		Files.move(written, jobsFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+	}
+
+	// Sync -----------------------------------------------
+
+	/**
+	 * Fetches the builds of the job that finished since the last sync and adds
+	 * them to the store. The first sync of a job fetches all its builds. Builds
+	 * still running are fetched again by the next sync.
+	 * 
+	 * @param jobPath
+	 *            Path of the job, for example "/Project/JobA"
+	 * @return number of builds added
+	 * @throws MaximumOperationsReachedException
+	 * @throws JenkinsExecutionException
+	 * @throws IOException
+	 *             if the store could not be written
+	 */
+	public int sync(JenkinsClient client, String jobPath)
+			throws MaximumOperationsReachedException, JenkinsExecutionException, IOException {
+		String key = JobCache.key(jobPath);
+		int from = getSyncFrom(key);
+		List<BuildRecord> builds;
+		JenkinsServer jenkinsServer = null;
+		try {
+			jenkinsServer = client.getJenkinsConnection();
+			builds = client.buildOps().fetchBuilds(key, from, Integer.MAX_VALUE,
+					(low, high) -> Projections.allBuildRecords(key, low, high), BuildRecord::getNumber);
+		} catch (HttpResponseException e) {
+			if (e.getStatusCode() == 404)
+				throw new JenkinsExecutionException(String.format("Job %s not found.", jobPath));
+			throw new JenkinsExecutionException(String.format("Error getting build history of job %s", jobPath), e);
+		} catch (IOException e) {
+			throw new JenkinsExecutionException(String.format("Error getting build history of job %s", jobPath), e);
+		} finally {
+			client.closeJenkinsConnection(jenkinsServer);
+		}
+		return append(key, from, builds);
+	}
+
+	/**
+	 * Syncs several jobs, fetching their builds in parallel.
+	 * 
+	 * @see #sync(JenkinsClient, String)
+	 * @return number of builds added per job path, in the order of jobPaths
+	 * @throws JenkinsExecutionException
+	 *             if the sync of any of the jobs failed, after all of them
+	 *             finished
+	 */
+	public Map<String, Integer> sync(JenkinsClient client, Collection<String> jobPaths)
+			throws MaximumOperationsReachedException, JenkinsExecutionException, IOException {
+		Map<String, CompletableFuture<Integer>> pending = new LinkedHashMap<String, CompletableFuture<Integer>>();
+		for (String jobPath : jobPaths)
+			pending.put(jobPath, client.fanOut(() -> sync(client, jobPath)));
+
+		Map<String, Integer> added = new LinkedHashMap<String, Integer>();
+		Throwable failure = null;
+		for (Map.Entry<String, CompletableFuture<Integer>> entry : pending.entrySet()) {
+			try {
+				added.put(entry.getKey(), entry.getValue().join());
+			} catch (CompletionException e) {
+				if (failure == null)
+					failure = e.getCause();
+			}
+		}
+		if (failure instanceof MaximumOperationsReachedException)
+			throw (MaximumOperationsReachedException) failure;
+		if (failure instanceof JenkinsExecutionException)
+			throw (JenkinsExecutionException) failure;
+		if (failure instanceof IOException)
+			throw (IOException) failure;
+		if (failure != null)
+			throw new JenkinsExecutionException("Error syncing build history", failure);
+		return added;
+	}
+
+	private int getSyncFrom(String key) {
+		lock.readLock().lock();
+		try {
+			Integer jobId = jobIds.get(key);
+			return jobId == null ? 1 : syncFrom.get(jobId);
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	/**
+	 * Stores the finished builds of the job that are not in the store yet, a
+	 * build already stored keeps its record. The job is synced from the build
+	 * after the newest finished one that no running build precedes.
+	 *
+	 * @return number of builds added
+	 */
+	int append(String key, int from, List<BuildRecord> builds) throws IOException {
+		lock.writeLock().lock();
+		try {
+			Integer jobId = jobIds.get(key);
+			if (jobId == null) {
+				// The job must be on disk before records refer to it.
+				jobId = registerJob(key, from);
+				writeJobs();
+			}
+
+			int nextFrom = syncFrom.get(jobId);
+			boolean running = false;
+			List<BuildRecord> added = new ArrayList<BuildRecord>();
+			for (BuildRecord build : builds) {
+				if (build.getResult() == BuildResult.BUILDING || build.getResult() == BuildResult.REBUILDING) {
+					running = true;
+					continue;
+				}
+				if (!running)
+					nextFrom = Math.max(nextFrom, build.getNumber() + 1);
+				if (index.get(jobId, build.getNumber()) < 0)
+					added.add(build);
+			}
+
+			ByteBuffer buffer = ByteBuffer.allocate(RECORD_SIZE * SCAN_RECORDS);
+			long position = recordCount;
+			for (int i = 0; i < added.size(); i++) {
+				encode(jobId, added.get(i), buffer);
+				if (!buffer.hasRemaining() || i == added.size() - 1) {
+					((Buffer) buffer).flip();
+					long offset = position * RECORD_SIZE;
+					while (buffer.hasRemaining())
+						offset += records.write(buffer, offset);
+					position = offset / RECORD_SIZE;
+					((Buffer) buffer).clear();
+				}
+			}
+			records.force(false);
+			for (BuildRecord build : added) {
+				index.put(jobId, build.getNumber(), recordCount++);
+				lastBuildNumbers.set(jobId, Math.max(lastBuildNumbers.get(jobId), build.getNumber()));
+			}
+			index.setCoveredRecords(recordCount);
+			index.force();
+
+			if (nextFrom != syncFrom.get(jobId)) {
+				syncFrom.set(jobId, nextFrom);
+				writeJobs();
+			}
+			return added.size();
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	private static void encode(int jobId, BuildRecord build, ByteBuffer buffer) {
+		int start = buffer.position();
+		buffer.putInt(jobId).putInt(build.getNumber()).putLong(build.getTimestamp()).putLong(build.getDuration())
+				.putLong(build.getQueueWaitMillis()).put((byte) resultCode(build.getResult()));
+		while (buffer.position() < start + RECORD_SIZE)
+			buffer.put((byte) 0);
+	}
+
+	private static int resultCode(BuildResult result) {
+		int code = Arrays.asList(RESULT_CODES).indexOf(result);
+		return code < 0 ? 0 : code;
+	}
+
+	private BuildRecord decode(ByteBuffer record) {
+		int code = record.get(32);
+		return new BuildRecord(jobPaths.get(record.getInt(0)), record.getInt(4),
+				code >= 0 && code < RESULT_CODES.length ? RESULT_CODES[code] : BuildResult.UNKNOWN, record.getLong(8),
+				record.getLong(16), record.getLong(24));
+	}
+
+	// Queries --------------------------------------------
+
+	/**
+	 * @return the build, null if it is not in the store
+	 */
+	public BuildRecord get(String jobPath, int buildNumber) throws IOException {
+		lock.readLock().lock();
+		try {
+			Integer jobId = jobIds.get(JobCache.key(jobPath));
+			if (jobId == null)
+				return null;
+			long position = index.get(jobId, buildNumber);
+			return position < 0 ? null : read(position);
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	/**
+	 * Builds of the job with a number between fromBuild and toBuild, both
+	 * inclusive, ordered by build number.
+	 */
+	public List<BuildRecord> getBuilds(String jobPath, int fromBuild, int toBuild) throws IOException {
+		lock.readLock().lock();
+		try {
+			List<BuildRecord> builds = new ArrayList<BuildRecord>();
+			Integer jobId = jobIds.get(JobCache.key(jobPath));
+			if (jobId == null)
+				return builds;
+			int last = Math.min(toBuild, lastBuildNumbers.get(jobId));
+			for (int number = Math.max(1, fromBuild); number <= last; number++) {
+				long position = index.get(jobId, number);
+				if (position >= 0)
+					builds.add(read(position));
+			}
+			return builds;
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	/**
+	 * Number of the newest build of the job in the store, 0 if there is none.
+	 */
+	public int getLastBuildNumber(String jobPath) {
+		lock.readLock().lock();
+		try {
+			Integer jobId = jobIds.get(JobCache.key(jobPath));
+			return jobId == null ? 0 : lastBuildNumbers.get(jobId);
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	/**
+	 * Passes every build of the job, or of all jobs below the folder, that
+	 * started between fromTimestamp and toTimestamp to the consumer, in the
+	 * order they were stored. The records are streamed from disk, the time of a
+	 * call grows with the number of builds in the whole store.
+	 * 
+	 * @param path
+	 *            Path of a job or folder, "/" for all jobs
+	 */
+	public void forEach(String path, long fromTimestamp, long toTimestamp, Consumer<BuildRecord> consumer)
+			throws IOException {
+		lock.readLock().lock();
+		try {
+			final boolean[] jobs = matchingJobs(path);
+			scan(record -> {
+				int jobId = record.getInt(0);
+				long timestamp = record.getLong(8);
+				if (jobId < jobs.length && jobs[jobId] && timestamp >= fromTimestamp && timestamp <= toTimestamp)
+					consumer.accept(decode(record));
+			}, null);
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	/**
+	 * Counts, failure rate and duration and queue wait percentiles of the builds
+	 * of the job, or of all jobs below the folder, that started between
+	 * fromTimestamp and toTimestamp. The index is by build number, not time, so
+	 * every call reads all records of the store, O(n) in its size.
+	 * 
+	 * @param path
+	 *            Path of a job or folder, "/" for all jobs
+	 */
+	public BuildStats getStats(String path, long fromTimestamp, long toTimestamp) throws IOException {
+		lock.readLock().lock();
+		try {
+			final boolean[] jobs = matchingJobs(path);
+			final Map<BuildResult, Integer> counts = new EnumMap<BuildResult, Integer>(BuildResult.class);
+			final LongList durations = new LongList();
+			final LongList queueWaits = new LongList();
+			scan(record -> {
+				int jobId = record.getInt(0);
+				long timestamp = record.getLong(8);
+				if (jobId >= jobs.length || !jobs[jobId] || timestamp < fromTimestamp || timestamp > toTimestamp)
+					return;
+				int code = record.get(32);
+				BuildResult result = code >= 0 && code < RESULT_CODES.length ? RESULT_CODES[code] : BuildResult.UNKNOWN;
+				Integer count = counts.get(result);
+				counts.put(result, count == null ? 1 : count + 1);
+				durations.add(record.getLong(16));
+				if (record.getLong(24) >= 0)
+					queueWaits.add(record.getLong(24));
+			}, null);
+			return new BuildStats(counts, durations.sorted(), queueWaits.sorted());
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	/**
+	 * Number of builds in the store.
+	 */
+	public long size() {
+		lock.readLock().lock();
+		try {
+			return recordCount;
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	private boolean[] matchingJobs(String path) {
+		String key = JobCache.key(path);
+		boolean[] jobs = new boolean[jobPaths.size()];
+		for (int jobId = 0; jobId < jobs.length; jobId++) {
+			String jobPath = jobPaths.get(jobId);
+			jobs[jobId] = key.isEmpty() || jobPath.equals(key) || jobPath.startsWith(key + "/");
+		}
+		return jobs;
+	}
+
+	private BuildRecord read(long position) throws IOException {
+		ByteBuffer record = ByteBuffer.allocate(RECORD_SIZE);
+		long offset = position * RECORD_SIZE;
+		while (record.hasRemaining()) {
+			if (records.read(record, offset + record.position()) < 0)
+				throw new IOException(String.format("Build history record %s is missing", position));
+		}
+		return decode(record);
+	}
+
+	private interface RecordVisitor {
+		void visit(long position, ByteBuffer record) throws IOException;
+	}
+
+	/**
+	 * Reads all records in order through one direct buffer, passing each as a
+	 * slice of RECORD_SIZE bytes. Buffer positions are moved through Buffer, the
+	 * covariant ByteBuffer overrides of Java 9 do not exist on Java 8.
+	 */
+	private void scan(Consumer<ByteBuffer> consumer, RecordVisitor visitor) throws IOException {
+		ByteBuffer buffer = ByteBuffer.allocateDirect(RECORD_SIZE * SCAN_RECORDS);
+		long position = 0;
+		long total = records.size() / RECORD_SIZE;
+		while (position < total) {
+			((Buffer) buffer).clear();
+			((Buffer) buffer).limit((int) Math.min(buffer.capacity(), (total - position) * RECORD_SIZE));
+			long offset = position * RECORD_SIZE;
+			while (buffer.hasRemaining()) {
+				if (records.read(buffer, offset + buffer.position()) < 0)
+					break;
+			}
+			((Buffer) buffer).flip();
+			while (buffer.remaining() >= RECORD_SIZE) {
+				ByteBuffer record = buffer.slice();
+				((Buffer) record).limit(RECORD_SIZE);
+				consumer.accept(record);
+				if (visitor != null)
+					visitor.visit(position, record);
+				((Buffer) buffer).position(buffer.position() + RECORD_SIZE);
+				position++;
+			}
+		}
+	}
+
+	/**
+	 * Growable array of primitive longs, so aggregates over millions of builds do
+	 * not box every value.
+	 */
+	private static class LongList {
+		private long[] values = new long[1024];
+		private int size;
+
+		void add(long value) {
+			if (size == values.length)
+				values = Arrays.copyOf(values, size * 2);
+			values[size++] = value;
+		}
+
+		long[] sorted() {
+			long[] sorted = Arrays.copyOf(values, size);
+			Arrays.sort(sorted);
+			return sorted;
+		}
+	}
+
+	public void close() throws IOException {
+		lock.writeLock().lock();
+		try {
+			try {
+				index.close();
+			} finally {
+				records.close();
+			}
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
+}
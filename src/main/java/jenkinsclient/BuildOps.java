@@ -1,47 +1,66 @@
 package jenkinsclient;
 
 import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.function.BiFunction;
+import java.util.function.ToIntFunction;
+
+import org.apache.http.client.HttpResponseException;
 
 import com.offbytwo.jenkins.JenkinsServer;
 import com.offbytwo.jenkins.model.Build;
 import com.offbytwo.jenkins.model.BuildResult;
-import com.offbytwo.jenkins.model.BuildWithDetails;
-import com.offbytwo.jenkins.model.FolderJob;
-import com.offbytwo.jenkins.model.JobWithDetails;
 
 import jenkinsclient.exceptions.JenkinsExecutionException;
 import jenkinsclient.exceptions.MaximumOperationsReachedException;
+import jenkinsclient.model.ArtifactDownload;
+import jenkinsclient.model.ArtifactInfo;
+import jenkinsclient.model.BuildSummary;
 
 public class BuildOps extends AbstractOps {
+	// Newest builds read together with nextBuildNumber by fetchBuilds.
+	private static final int FIRST_WINDOW = 100;
 
 	public BuildOps(JenkinsClient client) {
 		super(client);
 	}
 
 	/**
-	 * Returns Build object for the job specified by jobPath and buildNumber.
+	 * Asynchronous variants of the operations of this class.
+	 */
+	public BuildOpsAsync async() {
+		return new BuildOpsAsync(client, this);
+	}
+
+	/**
+	 * Returns Build object for the job specified by jobPath and buildNumber. The
+	 * build url is derived from the job path, nothing is fetched; a missing job or
+	 * build fails the request made through the Build.
 	 * 
 	 * @param jobPath
 	 *            Path of the job, for example "/Project/JobA"
 	 *            implies for the job "JobA".
 	 */
-	private Build getBuild(JenkinsServer jenkinsServer, String jobPath, int buildNumber)
-			throws JenkinsExecutionException {
-		String[] folders = jobPath.split("/");
-		String jobName = folders[folders.length - 1];
-		folders[folders.length - 1] = "";
-		FolderJob folderJob = new FolderJob("", generateUrl(folders));
-		JobWithDetails job;
-		try {
-			job = jenkinsServer.getJob(folderJob, jobName);
-		} catch (IOException e) {
-			throw new JenkinsExecutionException(
-					String.format("Error getting build with build number %s and job path %s", buildNumber, jobPath), e);
-		}
-		if (job != null) {
-			return job.getBuildByNumber(buildNumber);
-		} else
-			throw new JenkinsExecutionException(String.format("Job %s not found.", jobName));
+	private Build getBuild(String jobPath, int buildNumber) {
+		Build build = new Build(buildNumber, jobUrl(jobPath) + buildNumber + "/");
+		build.setClient(client.getJenkinsHttpConnection());
+		return build;
+	}
+
+	/**
+	 * Key of a coalesced read of a build.
+	 */
+	private static String buildKey(String read, String jobPath, int buildNumber) {
+		return String.format("%s %s#%s", read, JobCache.key(jobPath), buildNumber);
 	}
 
 	/**
@@ -56,24 +75,28 @@ public class BuildOps extends AbstractOps {
 	 */
 	public BuildResult getBuildResult(String jobPath, int buildNumber)
 			throws MaximumOperationsReachedException, JenkinsExecutionException {
-		JenkinsServer jenkinsServer = null;
+		OperationTimer timer = client.startOperation("BuildOps.getBuildResult");
 		try {
-			jenkinsServer = client.getJenkinsConnection();
-			BuildWithDetails b;
-			try {
-				b = getBuild(jenkinsServer, jobPath, buildNumber).details();
-			} catch (IOException e) {
-				throw new JenkinsExecutionException(
-						String.format("Error getting build status for build with build number %s and job path %s",
-								buildNumber, jobPath),
-						e);
-			}
-			if (b.getResult() == null) {
-				return b.isBuilding() ? BuildResult.BUILDING : BuildResult.UNKNOWN;
-			} else
-				return b.getResult();
+			return client.getSingleFlight().execute(buildKey("result", jobPath, buildNumber), () -> {
+				JenkinsServer jenkinsServer = null;
+				try {
+					jenkinsServer = client.getJenkinsConnection();
+					Build b = getBuild(jobPath, buildNumber);
+					return client.fetch(b.getUrl(), Projections.BUILD_SUMMARY).getResult();
+				} catch (IOException e) {
+					throw new JenkinsExecutionException(
+							String.format("Error getting build status for build with build number %s and job path %s",
+									buildNumber, jobPath),
+							e);
+				} finally {
+					client.closeJenkinsConnection(jenkinsServer);
+				}
+			});
+		} catch (Exception e) {
+			timer.failed(e);
+			throw e;
 		} finally {
-			client.closeJenkinsConnection(jenkinsServer);
+			timer.stop();
 		}
 	}
 
@@ -90,18 +113,388 @@ public class BuildOps extends AbstractOps {
 	 */
 	public void stopRunningBuild(String jobPath, int buildNumber)
 			throws MaximumOperationsReachedException, JenkinsExecutionException {
+		OperationTimer timer = client.startOperation("BuildOps.stopRunningBuild");
 		JenkinsServer jenkinsServer = null;
 		try {
 			jenkinsServer = client.getJenkinsConnection();
-			Build b = getBuild(jenkinsServer, jobPath, buildNumber);
+			Build b = getBuild(jobPath, buildNumber);
 			try {
 				b.Stop(client.getCrumbFlag());
 			} catch (IOException e) {
 				throw new JenkinsExecutionException(String
 						.format("Error stopping build with build number %s and job path %s", buildNumber, jobPath), e);
 			}
+		} catch (Exception e) {
+			timer.failed(e);
+			throw e;
 		} finally {
 			client.closeJenkinsConnection(jenkinsServer);
+			timer.stop();
+		}
+	}
+
+	/**
+	 * Streams the console log of the build to out until the build finished. Only
+	 * the bytes written since the previous poll are transferred and copied
+	 * through a fixed buffer, so memory use does not depend on the log length.
+	 * Polls back off while the build writes nothing.
+	 * 
+	 * @param jobPath
+	 *            Path of the job, for example "/Project/JobA" implies for the job
+	 *            "JobA"
+	 * @param buildNumber
+	 * @param out
+	 *            receives the log bytes, it is flushed after each poll and not
+	 *            closed
+	 * @return length of the log in bytes
+	 * @throws MaximumOperationsReachedException
+	 * @throws JenkinsExecutionException
+	 */
+	public long streamConsole(String jobPath, int buildNumber, OutputStream out)
+			throws MaximumOperationsReachedException, JenkinsExecutionException {
+		return streamConsole(jobPath, buildNumber, 0, out);
+	}
+
+	/**
+	 * Same as {@link #streamConsole(String, int, OutputStream)} starting at a byte
+	 * offset of the log, for example the length returned by an earlier call that
+	 * was interrupted.
+	 */
+	public long streamConsole(String jobPath, int buildNumber, long start, OutputStream out)
+			throws MaximumOperationsReachedException, JenkinsExecutionException {
+		OperationTimer timer = client.startOperation("BuildOps.streamConsole");
+		try {
+			try {
+				return client.getConsoleStreamer().stream(jobUrl(jobPath) + buildNumber + "/", start, out);
+			} catch (HttpResponseException e) {
+				if (e.getStatusCode() == 404)
+					throw new JenkinsExecutionException(
+							String.format("Build with build number %s and job path %s not found.", buildNumber, jobPath));
+				throw new JenkinsExecutionException(String.format(
+						"Error streaming console of build with build number %s and job path %s", buildNumber, jobPath), e);
+			} catch (IOException e) {
+				throw new JenkinsExecutionException(String.format(
+						"Error streaming console of build with build number %s and job path %s", buildNumber, jobPath), e);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new JenkinsExecutionException(String.format(
+						"Interrupted streaming console of build with build number %s and job path %s", buildNumber,
+						jobPath), e);
+			}
+		} catch (Exception e) {
+			timer.failed(e);
+			throw e;
+		} finally {
+			timer.stop();
+		}
+	}
+
+	/**
+	 * Lists the artifacts archived by the build.
+	 * 
+	 * @param jobPath
+	 *            Path of the job, for example "/Project/JobA" implies for the job
+	 *            "JobA"
+	 * @param buildNumber
+	 * @throws MaximumOperationsReachedException
+	 * @throws JenkinsExecutionException
+	 */
+	public List<ArtifactInfo> getArtifacts(String jobPath, int buildNumber)
+			throws MaximumOperationsReachedException, JenkinsExecutionException {
+		OperationTimer timer = client.startOperation("BuildOps.getArtifacts");
+		try {
+			String key = buildKey("artifacts", jobPath, buildNumber);
+			List<ArtifactInfo> artifacts = client.getSingleFlight().execute(key, () -> {
+				JenkinsServer jenkinsServer = null;
+				try {
+					jenkinsServer = client.getJenkinsConnection();
+					return client.fetch(jobUrl(jobPath) + buildNumber + "/", Projections.ARTIFACTS);
+				} catch (HttpResponseException e) {
+					if (e.getStatusCode() == 404)
+						throw new JenkinsExecutionException(String
+								.format("Build with build number %s and job path %s not found.", buildNumber, jobPath));
+					throw new JenkinsExecutionException(
+							String.format("Error getting artifacts of build with build number %s and job path %s",
+									buildNumber, jobPath),
+							e);
+				} catch (IOException e) {
+					throw new JenkinsExecutionException(
+							String.format("Error getting artifacts of build with build number %s and job path %s",
+									buildNumber, jobPath),
+							e);
+				} finally {
+					client.closeJenkinsConnection(jenkinsServer);
+				}
+			});
+			// Callers sharing the read get their own list.
+			return new ArrayList<ArtifactInfo>(artifacts);
+		} catch (Exception e) {
+			timer.failed(e);
+			throw e;
+		} finally {
+			timer.stop();
+		}
+	}
+
+	/**
+	 * Downloads an artifact of the build to the target file. The artifact is
+	 * streamed from the connection into the file without being held in memory.
+	 * The artifact is written to "target.part" and renamed to the target once
+	 * complete. If an earlier download of the same artifact failed, only the
+	 * rest is requested, unless the artifact changed on the server meanwhile.
+	 * 
+	 * @param jobPath
+	 *            Path of the job, for example "/Project/JobA" implies for the job
+	 *            "JobA"
+	 * @param buildNumber
+	 * @param relativePath
+	 *            relative path of the artifact as listed by getArtifacts
+	 * @param target
+	 *            file to write, missing parent directories are created
+	 * @return size, SHA-256 and throughput of the download
+	 * @throws MaximumOperationsReachedException
+	 * @throws JenkinsExecutionException
+	 */
+	public ArtifactDownload downloadArtifact(String jobPath, int buildNumber, String relativePath, Path target)
+			throws MaximumOperationsReachedException, JenkinsExecutionException {
+		OperationTimer timer = client.startOperation("BuildOps.downloadArtifact");
+		try {
+			JenkinsServer jenkinsServer = null;
+			try {
+				jenkinsServer = client.getJenkinsConnection();
+				return new ArtifactDownloader(client).download(jobUrl(jobPath) + buildNumber + "/", relativePath,
+						target);
+			} catch (HttpResponseException e) {
+				if (e.getStatusCode() == 404)
+					throw new JenkinsExecutionException(String.format(
+							"Artifact %s of build with build number %s and job path %s not found.", relativePath,
+							buildNumber, jobPath));
+				throw new JenkinsExecutionException(String.format(
+						"Error downloading artifact %s of build with build number %s and job path %s", relativePath,
+						buildNumber, jobPath), e);
+			} catch (IOException e) {
+				throw new JenkinsExecutionException(String.format(
+						"Error downloading artifact %s of build with build number %s and job path %s", relativePath,
+						buildNumber, jobPath), e);
+			} finally {
+				client.closeJenkinsConnection(jenkinsServer);
+			}
+		} catch (Exception e) {
+			timer.failed(e);
+			throw e;
+		} finally {
+			timer.stop();
+		}
+	}
+
+	/**
+	 * Downloads all artifacts of the build into the directory, keeping their
+	 * relative paths. The artifacts are downloaded in parallel, as many at a time
+	 * as the client allows operations. Calling it again after a failure resumes
+	 * the partial files.
+	 * 
+	 * @see #downloadArtifact(String, int, String, Path)
+	 * @return downloads by relative path, in the order of getArtifacts
+	 * @throws MaximumOperationsReachedException
+	 * @throws JenkinsExecutionException
+	 *             if any of the downloads failed, after all of them finished
+	 */
+	public Map<String, ArtifactDownload> downloadArtifacts(String jobPath, int buildNumber, Path directory)
+			throws MaximumOperationsReachedException, JenkinsExecutionException {
+		OperationTimer timer = client.startOperation("BuildOps.downloadArtifacts");
+		try {
+			Path root = directory.toAbsolutePath().normalize();
+			Map<String, CompletableFuture<ArtifactDownload>> pending = new LinkedHashMap<String, CompletableFuture<ArtifactDownload>>();
+			for (ArtifactInfo artifact : getArtifacts(jobPath, buildNumber)) {
+				final String relativePath = artifact.getRelativePath();
+				final Path target = root.resolve(relativePath).normalize();
+				if (!target.startsWith(root))
+					throw new JenkinsExecutionException(
+							String.format("Artifact %s is outside of directory %s", relativePath, root));
+				pending.put(relativePath,
+						client.fanOut(() -> downloadArtifact(jobPath, buildNumber, relativePath, target)));
+			}
+
+			Map<String, ArtifactDownload> downloads = new LinkedHashMap<String, ArtifactDownload>();
+			Exception failure = null;
+			for (Map.Entry<String, CompletableFuture<ArtifactDownload>> entry : pending.entrySet()) {
+				try {
+					downloads.put(entry.getKey(), entry.getValue().join());
+				} catch (CompletionException e) {
+					if (failure == null)
+						failure = e.getCause() instanceof Exception ? (Exception) e.getCause() : e;
+				}
+			}
+			if (failure instanceof MaximumOperationsReachedException)
+				throw (MaximumOperationsReachedException) failure;
+			if (failure instanceof JenkinsExecutionException)
+				throw (JenkinsExecutionException) failure;
+			if (failure != null)
+				throw new JenkinsExecutionException(String.format(
+						"Error downloading artifacts of build with build number %s and job path %s", buildNumber,
+						jobPath), failure);
+			return downloads;
+		} catch (Exception e) {
+			timer.failed(e);
+			throw e;
+		} finally {
+			timer.stop();
+		}
+	}
+
+	/**
+	 * Get the status of all builds of the job with a build number between
+	 * fromBuild and toBuild, both inclusive. Builds are fetched with a projected
+	 * range query instead of one request per build.
+	 * 
+	 * @param jobPath
+	 *            Path of the job, for example "/Project/JobA" implies for the job
+	 *            "JobA"
+	 * @return summaries of the builds found, ordered by build number
+	 * @throws MaximumOperationsReachedException
+	 * @throws JenkinsExecutionException
+	 */
+	public BuildSummary[] getBuildResults(String jobPath, int fromBuild, int toBuild)
+			throws MaximumOperationsReachedException, JenkinsExecutionException {
+		OperationTimer timer = client.startOperation("BuildOps.getBuildResults");
+		try {
+			BuildSummary[] builds = client.getSingleFlight()
+					.execute(String.format("builds %s %s-%s", JobCache.key(jobPath), fromBuild, toBuild), () -> {
+						JenkinsServer jenkinsServer = null;
+						try {
+							jenkinsServer = client.getJenkinsConnection();
+							return fetchBuildSummaries(jobPath, fromBuild, toBuild);
+						} catch (HttpResponseException e) {
+							if (e.getStatusCode() == 404)
+								throw new JenkinsExecutionException(String.format("Job %s not found.", jobPath));
+							throw new JenkinsExecutionException(
+									String.format("Error getting build results of job %s", jobPath), e);
+						} catch (IOException e) {
+							throw new JenkinsExecutionException(
+									String.format("Error getting build results of job %s", jobPath), e);
+						} finally {
+							client.closeJenkinsConnection(jenkinsServer);
+						}
+					});
+			// Callers sharing the read get their own array.
+			return builds.clone();
+		} catch (Exception e) {
+			timer.failed(e);
+			throw e;
+		} finally {
+			timer.stop();
+		}
+	}
+
+	/**
+	 * Get the status of the builds between fromBuild and toBuild for several jobs.
+	 * The jobs are queried in parallel.
+	 * 
+	 * @see #getBuildResults(String, int, int)
+	 * @return summaries per job path, in the order of jobPaths
+	 * @throws MaximumOperationsReachedException
+	 * @throws JenkinsExecutionException
+	 *             if the query of any of the jobs failed
+	 */
+	public Map<String, BuildSummary[]> getBuildResults(Collection<String> jobPaths, int fromBuild, int toBuild)
+			throws MaximumOperationsReachedException, JenkinsExecutionException {
+		OperationTimer timer = client.startOperation("BuildOps.getBuildResultsOfJobs");
+		try {
+			Map<String, CompletableFuture<BuildSummary[]>> pending = new LinkedHashMap<String, CompletableFuture<BuildSummary[]>>();
+			for (String jobPath : jobPaths)
+				pending.put(jobPath, client.fanOut(() -> getBuildResults(jobPath, fromBuild, toBuild)));
+
+			Map<String, BuildSummary[]> results = new LinkedHashMap<String, BuildSummary[]>();
+			for (Map.Entry<String, CompletableFuture<BuildSummary[]>> entry : pending.entrySet()) {
+				try {
+					results.put(entry.getKey(), entry.getValue().join());
+				} catch (CompletionException e) {
+					if (e.getCause() instanceof MaximumOperationsReachedException)
+						throw (MaximumOperationsReachedException) e.getCause();
+					if (e.getCause() instanceof JenkinsExecutionException)
+						throw (JenkinsExecutionException) e.getCause();
+					throw new JenkinsExecutionException(
+							String.format("Error getting build results of job %s", entry.getKey()), e.getCause());
+				}
+			}
+			return results;
+		} catch (Exception e) {
+			timer.failed(e);
+			throw e;
+		} finally {
+			timer.stop();
+		}
+	}
+
+	private BuildSummary[] fetchBuildSummaries(String jobPath, int fromBuild, int toBuild) throws IOException {
+		List<BuildSummary> builds = fetchBuilds(jobPath, fromBuild, toBuild, Projections::allBuilds,
+				BuildSummary::getNumber);
+		return builds.toArray(new BuildSummary[builds.size()]);
+	}
+
+	/**
+	 * Fetches the builds of the job with a number between fromBuild and toBuild,
+	 * ordered by build number. The caller must hold an operation slot.
+	 * 
+	 * The first request reads nextBuildNumber together with the newest
+	 * FIRST_WINDOW builds, which covers the common case of a range of recent
+	 * builds in one request. Older builds are at index at most
+	 * nextBuildNumber - 1 - n, and smaller if newer builds were deleted, so the
+	 * next window assumes no deletions and is widened towards the first window
+	 * until toBuild is covered.
+	 * 
+	 * @param window
+	 *            projection of the builds at list indexes low (inclusive) to high
+	 *            (exclusive)
+	 */
+	<T> List<T> fetchBuilds(String jobPath, int fromBuild, int toBuild,
+			BiFunction<Integer, Integer, Projection<List<T>>> window, ToIntFunction<T> number) throws IOException {
+		String url = jobUrl(jobPath);
+		BuildWindow<T> first = client.fetch(url, Projections.withNextBuildNumber(window.apply(0, FIRST_WINDOW)));
+		int last = Math.min(toBuild, first.nextBuildNumber - 1);
+		List<T> builds = new ArrayList<T>();
+		if (last < fromBuild)
+			return builds;
+
+		for (T build : first.builds) {
+			if (number.applyAsInt(build) >= fromBuild && number.applyAsInt(build) <= toBuild)
+				builds.add(build);
+		}
+
+		// Builds older than the first window that are still missing.
+		if (first.builds.size() == FIRST_WINDOW
+				&& number.applyAsInt(first.builds.get(FIRST_WINDOW - 1)) > fromBuild) {
+			last = Math.min(last, number.applyAsInt(first.builds.get(FIRST_WINDOW - 1)) - 1);
+			int high = first.nextBuildNumber - fromBuild;
+			int low = Math.max(FIRST_WINDOW, first.nextBuildNumber - 1 - last);
+			while (true) {
+				int newest = -1;
+				for (T build : client.fetch(url, window.apply(low, high))) {
+					newest = Math.max(newest, number.applyAsInt(build));
+					if (number.applyAsInt(build) >= fromBuild && number.applyAsInt(build) <= last)
+						builds.add(build);
+				}
+				if (low == FIRST_WINDOW || newest >= last)
+					break;
+				high = low;
+				low = Math.max(FIRST_WINDOW, low - (newest < 0 ? last - fromBuild + 1 : last - newest));
+			}
+		}
+
+		builds.sort(Comparator.comparingInt(number));
+		return builds;
+	}
+
+	/**
+	 * The next build number of a job and a window of its builds.
+	 */
+	static class BuildWindow<T> {
+		final int nextBuildNumber;
+		final List<T> builds;
+
+		BuildWindow(int nextBuildNumber, List<T> builds) {
+			this.nextBuildNumber = nextBuildNumber;
+			this.builds = builds;
 		}
 	}
-}
\ No newline at end of file
+}
@@ -0,0 +1,67 @@
+package jenkinsclient;
+
+import java.io.OutputStream;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import com.offbytwo.jenkins.model.BuildResult;
+
+import jenkinsclient.model.ArtifactDownload;
+import jenkinsclient.model.ArtifactInfo;
+
+/**
+ * Asynchronous variants of the {@link BuildOps} operations. Each call runs on
+ * the async executor of the client and is subject to its operation limit.
+ */
+public class BuildOpsAsync {
+	private final JenkinsClient client;
+	private final BuildOps buildOps;
+
+	BuildOpsAsync(JenkinsClient client, BuildOps buildOps) {
+		this.client = client;
+		this.buildOps = buildOps;
+	}
+
+	/**
+	 * @see BuildOps#getBuildResult(String, int)
+	 */
+	public CompletableFuture<BuildResult> getBuildResult(String jobPath, int buildNumber) {
+		return client.supplyAsync(() -> buildOps.getBuildResult(jobPath, buildNumber));
+	}
+
+	/**
+	 * Occupies a thread of the async executor until the build finished, but an
+	 * operation slot only during each poll.
+	 * 
+	 * @see BuildOps#streamConsole(String, int, OutputStream)
+	 */
+	public CompletableFuture<Long> streamConsole(String jobPath, int buildNumber, OutputStream out) {
+		return client.supplyAsync(() -> buildOps.streamConsole(jobPath, buildNumber, out));
+	}
+
+	/**
+	 * @see BuildOps#getArtifacts(String, int)
+	 */
+	public CompletableFuture<List<ArtifactInfo>> getArtifacts(String jobPath, int buildNumber) {
+		return client.supplyAsync(() -> buildOps.getArtifacts(jobPath, buildNumber));
+	}
+
+	/**
+	 * @see BuildOps#downloadArtifact(String, int, String, Path)
+	 */
+	public CompletableFuture<ArtifactDownload> downloadArtifact(String jobPath, int buildNumber, String relativePath,
+			Path target) {
+		return client.supplyAsync(() -> buildOps.downloadArtifact(jobPath, buildNumber, relativePath, target));
+	}
+
+	/**
+	 * @see BuildOps#stopRunningBuild(String, int)
+	 */
+	public CompletableFuture<Void> stopRunningBuild(String jobPath, int buildNumber) {
+		return client.supplyAsync(() -> {
+			buildOps.stopRunningBuild(jobPath, buildNumber);
+			return null;
+		});
+	}
+}
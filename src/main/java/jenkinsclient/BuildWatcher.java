@@ -0,0 +1,346 @@
+package jenkinsclient;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import org.apache.http.client.HttpResponseException;
+
+import com.offbytwo.jenkins.JenkinsServer;
+import com.offbytwo.jenkins.model.BuildResult;
+
+import jenkinsclient.exceptions.JenkinsExecutionException;
+import jenkinsclient.exceptions.MaximumOperationsReachedException;
+import jenkinsclient.model.BuildSummary;
+import jenkinsclient.model.QueueItemStatus;
+import jenkinsclient.model.QueueItemStatus.State;
+
+/**
+ * Waits for many triggered builds to finish without a thread per build. Queue
+ * items are resolved by the {@link QueueWatcher}, then the running builds are
+ * tracked per job: one projected request returns the state of all tracked
+ * builds of a job, so the cost of a poll grows with the number of jobs, not of
+ * builds.
+ *
+ * Each job is polled when its earliest build is expected to finish, estimated
+ * from the durations of its recent builds. A build running longer than
+ * expected is polled at the minimum interval, backing off to the maximum the
+ * longer it overruns.
+ *
+ * Obtained through {@link JenkinsClient#buildWatcher()}, polls are scheduled
+ * on the scheduler of the client and sent from its async executor.
+ */
+public class BuildWatcher {
+	/** Weight of the duration of a finished build in the estimate of its job. */
+	private static final double ESTIMATE_WEIGHT = 0.3;
+	/** Builds fetched besides the tracked ones, for builds started meanwhile. */
+	private static final int WINDOW_SLACK = 10;
+
+	/**
+	 * The next build number of a job and its newest builds.
+	 */
+	static class Window {
+		final int nextBuildNumber;
+		final List<BuildSummary> builds;
+
+		Window(int nextBuildNumber, List<BuildSummary> builds) {
+			this.nextBuildNumber = nextBuildNumber;
+			this.builds = builds;
+		}
+	}
+
+	private static class Tracked {
+		final int number;
+		final CompletableFuture<BuildResult> future;
+		volatile long startedAt;
+
+		Tracked(int number, CompletableFuture<BuildResult> future, long startedAt) {
+			this.number = number;
+			this.future = future;
+			this.startedAt = startedAt;
+		}
+	}
+
+	private static class JobWatch {
+		final String jobUrl;
+		final ConcurrentSkipListMap<Integer, List<Tracked>> builds = new ConcurrentSkipListMap<Integer, List<Tracked>>();
+		// Guarded by this.
+		long estimatedDuration = -1;
+		int nextBuildNumber = -1;
+		long nextPollAt;
+		ScheduledFuture<?> scheduled;
+		boolean polling;
+
+		JobWatch(String jobUrl) {
+			this.jobUrl = jobUrl;
+		}
+	}
+
+	private final JenkinsClient client;
+	private final long pollMinMillis;
+	private final long pollMaxMillis;
+	private final Map<String, JobWatch> jobs = new ConcurrentHashMap<String, JobWatch>();
+
+	BuildWatcher(JenkinsClient client, long pollMinMillis, long pollMaxMillis) {
+		this.client = client;
+		this.pollMinMillis = Math.max(1, pollMinMillis);
+		this.pollMaxMillis = Math.max(this.pollMinMillis, pollMaxMillis);
+	}
+
+	/**
+	 * Waits for the build of the queue item to finish.
+	 *
+	 * @param queueReferenceUrl
+	 *            (ex. "jenkinsUrl/queue/item/itemId/") was returned when the job
+	 *            was triggered.
+	 * @return future completed with the result of the build, CANCELLED if the
+	 *         item was cancelled in the queue. It completes exceptionally with a
+	 *         JenkinsExecutionException if the item or the build disappeared.
+	 *         Cancelling it stops watching the queue item or tracking the
+	 *         build, the build itself keeps running.
+	 */
+	public CompletableFuture<BuildResult> awaitCompletion(String queueReferenceUrl) {
+		final CompletableFuture<BuildResult> future = new CompletableFuture<BuildResult>();
+		final CompletableFuture<QueueItemStatus> queued = client.queueWatcher().watch(queueReferenceUrl);
+		queued.whenComplete((status, e) -> {
+			if (future.isDone())
+				return;
+			if (e != null)
+				future.completeExceptionally(e);
+			else if (status.getState() == State.CANCELLED)
+				future.complete(BuildResult.CANCELLED);
+			else if (status.getState() == State.DISAPPEARED)
+				future.completeExceptionally(new JenkinsExecutionException(
+						String.format("Queue item %s disappeared without a build", queueReferenceUrl)));
+			else
+				track(status, future);
+		});
+		// Timed out or cancelled while still queued.
+		future.whenComplete((result, e) -> {
+			if (!queued.isDone())
+				client.queueWatcher().release(queueReferenceUrl, queued);
+		});
+		return future;
+	}
+
+	/**
+	 * Same as {@link #awaitCompletion(String)}, the future completes
+	 * exceptionally with a TimeoutException if the build did not finish within
+	 * the timeout.
+	 */
+	public CompletableFuture<BuildResult> awaitCompletion(String queueReferenceUrl, long timeout, TimeUnit unit) {
+		final CompletableFuture<BuildResult> future = awaitCompletion(queueReferenceUrl);
+		try {
+			final ScheduledFuture<?> timer = client.getScheduler().schedule(
+					() -> future.completeExceptionally(new TimeoutException(String
+							.format("Build of %s did not finish within %s %s", queueReferenceUrl, timeout, unit))),
+					timeout, unit);
+			future.whenComplete((result, e) -> timer.cancel(false));
+		} catch (RejectedExecutionException e) {
+			future.completeExceptionally(e);
+		}
+		return future;
+	}
+
+	/**
+	 * Number of builds currently tracked, not counting those still in the queue.
+	 */
+	public int getTrackedCount() {
+		int count = 0;
+		for (JobWatch job : jobs.values()) {
+			for (List<Tracked> tracked : job.builds.values())
+				count += tracked.size();
+		}
+		return count;
+	}
+
+	private void track(QueueItemStatus status, CompletableFuture<BuildResult> future) {
+		String buildUrl = client.absoluteUrl(status.getBuildUrl());
+		String trimmed = buildUrl.endsWith("/") ? buildUrl.substring(0, buildUrl.length() - 1) : buildUrl;
+		String jobUrl = trimmed.substring(0, trimmed.lastIndexOf('/') + 1);
+
+		// The build left the queue just now, it started at most one queue poll ago.
+		Tracked tracked = new Tracked(status.getBuildNumber(), future, System.currentTimeMillis());
+		JobWatch job;
+		while (true) {
+			job = jobs.computeIfAbsent(jobUrl, JobWatch::new);
+			synchronized (job) {
+				// A job dropped by a poll that just finished its last build is replaced.
+				if (jobs.get(jobUrl) != job)
+					continue;
+				job.builds.computeIfAbsent(tracked.number, n -> new CopyOnWriteArrayList<Tracked>()).add(tracked);
+				// Only the new build can move the next poll earlier.
+				schedule(job, job.estimatedDuration < 0 ? pollMinMillis
+						: Math.max(pollMinMillis, Math.min(pollMaxMillis, job.estimatedDuration)));
+			}
+			break;
+		}
+
+		final JobWatch watched = job;
+		future.whenComplete((result, e) -> {
+			// Completed by a poll, a timeout or the caller cancelling it.
+			List<Tracked> same = watched.builds.get(tracked.number);
+			if (same != null) {
+				same.remove(tracked);
+				if (same.isEmpty())
+					watched.builds.remove(tracked.number, same);
+			}
+		});
+	}
+
+	/**
+	 * Milliseconds until the job should be polled again: when its earliest build
+	 * is expected to finish. Once a build overruns its estimate the delay grows
+	 * with the overrun, a quarter of it, backing off towards the maximum
+	 * interval.
+	 */
+	private long pollDelay(JobWatch job, long now) {
+		if (job.estimatedDuration < 0)
+			return pollMinMillis;
+		long delay = pollMaxMillis;
+		for (List<Tracked> tracked : job.builds.values()) {
+			for (Tracked build : tracked) {
+				long remaining = build.startedAt + job.estimatedDuration - now;
+				delay = Math.min(delay, remaining > 0 ? remaining : -remaining / 4);
+			}
+		}
+		return Math.max(pollMinMillis, Math.min(pollMaxMillis, delay));
+	}
+
+	/**
+	 * Moves the next poll of the job earlier if it is due in more than the delay.
+	 * Called with the lock of the job held.
+	 */
+	private void schedule(JobWatch job, long delayMillis) {
+		long at = System.currentTimeMillis() + delayMillis;
+		if (job.polling || job.scheduled != null && !job.scheduled.isDone() && job.nextPollAt <= at)
+			return;
+		if (job.scheduled != null)
+			job.scheduled.cancel(false);
+		job.nextPollAt = at;
+		try {
+			job.scheduled = client.getScheduler().schedule(() -> startPoll(job), delayMillis, TimeUnit.MILLISECONDS);
+		} catch (RejectedExecutionException e) {
+			// The client is closed.
+		}
+	}
+
+	private void startPoll(JobWatch job) {
+		synchronized (job) {
+			if (job.polling)
+				return;
+			job.polling = true;
+		}
+		// The request blocks, it is sent from the async executor to keep the
+		// scheduler free for other jobs.
+		client.supplyAsync(() -> {
+			poll(job);
+			return null;
+		}).whenComplete((result, e) -> {
+			synchronized (job) {
+				job.polling = false;
+				job.scheduled = null;
+				if (job.builds.isEmpty())
+					jobs.remove(job.jobUrl, job);
+				else
+					schedule(job, e != null ? pollMinMillis : pollDelay(job, System.currentTimeMillis()));
+			}
+		});
+	}
+
+	private void poll(JobWatch job) throws MaximumOperationsReachedException, IOException {
+		if (job.builds.isEmpty())
+			return;
+		int oldest = job.builds.firstKey();
+		int high;
+		synchronized (job) {
+			// Builds are listed newest first, the oldest tracked one is at index
+			// nextBuildNumber - 1 - oldest unless newer builds were deleted.
+			high = (job.nextBuildNumber < 0 ? job.builds.lastKey() + 1 : job.nextBuildNumber) - oldest + WINDOW_SLACK;
+		}
+
+		Window window;
+		JenkinsServer jenkinsServer = null;
+		try {
+			jenkinsServer = client.getJenkinsConnection();
+			window = client.fetch(job.jobUrl, Projections.recentBuilds(high));
+		} catch (HttpResponseException e) {
+			if (e.getStatusCode() != 404)
+				throw e;
+			failAll(job, String.format("Job %s not found.", job.jobUrl));
+			return;
+		} finally {
+			client.closeJenkinsConnection(jenkinsServer);
+		}
+
+		int oldestListed = Integer.MAX_VALUE;
+		long durations = 0;
+		int finished = 0;
+		synchronized (job) {
+			job.nextBuildNumber = window.nextBuildNumber;
+		}
+		for (BuildSummary build : window.builds) {
+			oldestListed = Math.min(oldestListed, build.getNumber());
+			List<Tracked> tracked = job.builds.get(build.getNumber());
+			if (tracked == null) {
+				if (!build.isBuilding() && job.estimatedDuration < 0) {
+					// Untracked builds only seed the first estimate.
+					durations += build.getDuration();
+					finished++;
+				}
+				continue;
+			}
+			if (build.isBuilding()) {
+				for (Tracked t : tracked)
+					t.startedAt = build.getTimestamp();
+				continue;
+			}
+			durations += build.getDuration();
+			finished++;
+			for (Tracked t : tracked)
+				t.future.complete(build.getResult());
+		}
+		if (finished > 0) {
+			synchronized (job) {
+				long mean = durations / finished;
+				job.estimatedDuration = job.estimatedDuration < 0 ? mean
+						: (long) (job.estimatedDuration * (1 - ESTIMATE_WEIGHT) + mean * ESTIMATE_WEIGHT);
+			}
+		}
+
+		// Tracked builds covered by the list but missing from it were deleted.
+		boolean complete = window.builds.size() < high;
+		for (Map.Entry<Integer, List<Tracked>> entry : job.builds.entrySet()) {
+			if (entry.getKey() >= window.nextBuildNumber || !complete && entry.getKey() < oldestListed)
+				continue;
+			if (!containsBuild(window, entry.getKey())) {
+				for (Tracked t : entry.getValue())
+					t.future.completeExceptionally(new JenkinsExecutionException(
+							String.format("Build %s of %s not found.", entry.getKey(), job.jobUrl)));
+			}
+		}
+	}
+
+	private static boolean containsBuild(Window window, int number) {
+		for (BuildSummary build : window.builds) {
+			if (build.getNumber() == number)
+				return true;
+		}
+		return false;
+	}
+
+	private void failAll(JobWatch job, String message) {
+		for (List<Tracked> tracked : job.builds.values()) {
+			for (Tracked t : tracked)
+				t.future.completeExceptionally(new JenkinsExecutionException(message));
+		}
+	}
+}
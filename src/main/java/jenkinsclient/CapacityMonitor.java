@@ -0,0 +1,220 @@
+package jenkinsclient;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.regex.Pattern;
+
+import com.offbytwo.jenkins.JenkinsServer;
+
+import jenkinsclient.exceptions.JenkinsExecutionException;
+import jenkinsclient.exceptions.MaximumOperationsReachedException;
+import jenkinsclient.model.CapacitySnapshot;
+import jenkinsclient.model.ComputerInfo;
+import jenkinsclient.model.LabelInfo;
+
+/**
+ * Keeps the capacity snapshot of a client. The first read fetches it, after
+ * that it is refreshed in the background, scheduled on the scheduler of the
+ * client and fetched from its async executor, and reads return the latest
+ * snapshot without a request.
+ * 
+ * The duration of each refresh feeds a moving average of the latency of the
+ * Jenkins, used to route triggers between controllers.
+ */
+class CapacityMonitor {
+	private static final Pattern LABEL_OPERATOR = Pattern.compile("&&|\\|\\||!|->|\\(|\\)|\"");
+	/** Labels answered by the server that are kept, the cache is cleared beyond. */
+	private static final int MAX_SERVER_LABELS = 256;
+
+	interface LabelFetch {
+		LabelInfo fetch() throws MaximumOperationsReachedException, JenkinsExecutionException;
+	}
+
+	private static class ServerLabel {
+		final LabelInfo label;
+		final long fetchedAt;
+
+		ServerLabel(LabelInfo label, long fetchedAt) {
+			this.label = label;
+			this.fetchedAt = fetchedAt;
+		}
+	}
+
+	private final JenkinsClient client;
+	private final long refreshMillis;
+	private final double jitter;
+	private final AtomicReference<CapacitySnapshot> snapshot = new AtomicReference<CapacitySnapshot>();
+	private final AtomicBoolean refreshing = new AtomicBoolean();
+	private final Map<String, ServerLabel> serverLabels = new ConcurrentHashMap<String, ServerLabel>();
+	/** Triggers routed to the controller that the snapshot does not count yet. */
+	private final AtomicInteger routed = new AtomicInteger();
+	/** Exponentially weighted moving average of the refresh time, -1 until the first one. */
+	private volatile double latencyMillis = -1;
+	private static final double LATENCY_WEIGHT = 0.3;
+
+	CapacityMonitor(JenkinsClient client, long refreshMillis, double jitter) {
+		this.client = client;
+		this.refreshMillis = refreshMillis;
+		this.jitter = Math.max(0, Math.min(1, jitter));
+	}
+
+	/**
+	 * Whether snapshots are kept at all, if not every read goes to the server.
+	 */
+	boolean isEnabled() {
+		return refreshMillis > 0;
+	}
+
+	/**
+	 * Whether the label is an expression rather than a single label atom, the
+	 * snapshot only has counts of atoms.
+	 */
+	static boolean isExpression(String labelName) {
+		return LABEL_OPERATOR.matcher(labelName).find();
+	}
+
+	/**
+	 * The latest snapshot, fetched now only if there is none yet or snapshots are
+	 * disabled.
+	 */
+	CapacitySnapshot get() throws MaximumOperationsReachedException, JenkinsExecutionException {
+		CapacitySnapshot current = snapshot.get();
+		return current != null && isEnabled() ? current : refresh();
+	}
+
+	/**
+	 * The counts of a label the snapshot cannot answer, an expression or a label
+	 * no node has, fetched from the server at most once per refresh interval.
+	 */
+	LabelInfo serverLabel(String labelName, LabelFetch fetch)
+			throws MaximumOperationsReachedException, JenkinsExecutionException {
+		ServerLabel cached = serverLabels.get(labelName);
+		long now = System.currentTimeMillis();
+		if (cached != null && now - cached.fetchedAt < refreshMillis)
+			return cached.label;
+		LabelInfo label = fetch.fetch();
+		if (serverLabels.size() >= MAX_SERVER_LABELS)
+			serverLabels.clear();
+		serverLabels.put(labelName, new ServerLabel(label, now));
+		return label;
+	}
+
+	/**
+	 * Counts triggers routed to the controller, or takes back those that were not
+	 * sent, until the next snapshot includes them in its queue.
+	 */
+	void routed(int triggers) {
+		routed.addAndGet(triggers);
+	}
+
+	/**
+	 * Triggers routed to the controller since the latest snapshot was fetched.
+	 */
+	int getRoutedSinceSnapshot() {
+		return Math.max(0, routed.get());
+	}
+
+	/**
+	 * Moving average of the time a refresh took, -1 if there was none yet.
+	 */
+	long getLatencyMillis() {
+		return Math.round(latencyMillis);
+	}
+
+	private synchronized void recordLatency(long millis) {
+		latencyMillis = latencyMillis < 0 ? millis : LATENCY_WEIGHT * millis + (1 - LATENCY_WEIGHT) * latencyMillis;
+	}
+
+	/**
+	 * Fetches a new snapshot and starts the background refresh if not running.
+	 */
+	CapacitySnapshot refresh() throws MaximumOperationsReachedException, JenkinsExecutionException {
+		CapacitySnapshot fetched = fetch();
+		if (isEnabled() && refreshing.compareAndSet(false, true))
+			scheduleRefresh();
+		return fetched;
+	}
+
+	private CapacitySnapshot fetch() throws MaximumOperationsReachedException, JenkinsExecutionException {
+		JenkinsServer jenkinsServer = null;
+		try {
+			jenkinsServer = client.getJenkinsConnection();
+			int routedBefore = routed.get();
+			long timestamp = System.currentTimeMillis();
+			long started = System.nanoTime();
+			// No single endpoint exports both, the root object has neither the
+			// computers nor the queue, so the queue is a second request of ids only.
+			List<ComputerInfo> computers = client.fetch("/computer/", Projections.COMPUTERS);
+			int queueLength = client.fetch("/queue/", Projections.QUEUE_ITEM_IDS).size();
+			recordLatency(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started) / 2);
+			final CapacitySnapshot fetched = new CapacitySnapshot(timestamp, computers, aggregate(computers),
+					queueLength);
+			// A slow fetch must not replace a newer snapshot.
+			if (snapshot.accumulateAndGet(fetched, (current, next) -> current == null
+					|| current.getTimestamp() <= next.getTimestamp() ? next : current) == fetched) {
+				// Triggers routed before the fetch are in its queue now.
+				routed.addAndGet(-routedBefore);
+			}
+			return fetched;
+		} catch (IOException e) {
+			throw new JenkinsExecutionException("Error getting executor capacity", e);
+		} finally {
+			client.closeJenkinsConnection(jenkinsServer);
+		}
+	}
+
+	private static Map<String, LabelInfo> aggregate(List<ComputerInfo> computers) {
+		Map<String, int[]> counts = new HashMap<String, int[]>();
+		for (ComputerInfo computer : computers) {
+			for (String label : computer.getLabels()) {
+				// total, idle, busy, online nodes
+				int[] count = counts.get(label);
+				if (count == null) {
+					count = new int[4];
+					counts.put(label, count);
+				}
+				if (!computer.isOffline()) {
+					count[0] += computer.getNumExecutors();
+					count[1] += computer.getIdleExecutors();
+					count[2] += Math.max(0, computer.getNumExecutors() - computer.getIdleExecutors());
+					count[3]++;
+				}
+			}
+		}
+		Map<String, LabelInfo> labels = new HashMap<String, LabelInfo>();
+		for (Map.Entry<String, int[]> entry : counts.entrySet()) {
+			int[] count = entry.getValue();
+			labels.put(entry.getKey(), new LabelInfo(entry.getKey(), count[0], count[1], count[2], count[3] == 0));
+		}
+		return labels;
+	}
+
+	private void scheduleRefresh() {
+		// Jitter keeps clients started together from refreshing in lockstep.
+		long delay = refreshMillis
+				+ (long) (refreshMillis * jitter * (2 * ThreadLocalRandom.current().nextDouble() - 1));
+		try {
+			client.getScheduler().schedule(() -> backgroundRefresh(), Math.max(1, delay), TimeUnit.MILLISECONDS);
+		} catch (RejectedExecutionException e) {
+			// The client was closed.
+		}
+	}
+
+	/**
+	 * The fetch blocks, it is sent from the async executor to keep the shared
+	 * scheduler free. Readers keep the previous snapshot until a refresh
+	 * succeeds.
+	 */
+	private void backgroundRefresh() {
+		client.supplyAsync(() -> fetch()).whenComplete((fetched, e) -> scheduleRefresh());
+	}
+}
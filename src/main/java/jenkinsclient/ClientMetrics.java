@@ -0,0 +1,173 @@
+package jenkinsclient;
+
+import java.io.FilterInputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.apache.http.HttpEntity;
+import org.apache.http.HttpEntityEnclosingRequest;
+import org.apache.http.HttpRequest;
+import org.apache.http.HttpRequestInterceptor;
+import org.apache.http.HttpResponse;
+import org.apache.http.HttpResponseInterceptor;
+import org.apache.http.entity.HttpEntityWrapper;
+import org.apache.http.protocol.HttpContext;
+
+import jenkinsclient.model.ClientMetricsSnapshot;
+import jenkinsclient.model.OperationStats;
+
+/**
+ * Instrumentation of a {@link JenkinsClient}: latency and errors per public
+ * operation, the state of its operation limit and the body bytes its transport
+ * sends and reads. The latency and status of every response also drive the
+ * adaptive operation limit. Counters are striped, so recording does not contend between
+ * threads and nothing is aggregated until a snapshot is taken.
+ */
+class ClientMetrics implements JenkinsClientMXBean, HttpRequestInterceptor, HttpResponseInterceptor {
+	private static final String REQUEST_STARTED = ClientMetrics.class.getName() + ".started";
+
+	private final String jenkinsUrl;
+	private final AdmissionController admissionController;
+	private final ConcurrentHashMap<String, OperationTimer.Metrics> operations = new ConcurrentHashMap<String, OperationTimer.Metrics>();
+	private final LongAdder bytesSent = new LongAdder();
+	private final LongAdder bytesReceived = new LongAdder();
+
+	ClientMetrics(String jenkinsUrl, AdmissionController admissionController) {
+		this.jenkinsUrl = jenkinsUrl;
+		this.admissionController = admissionController;
+	}
+
+	/**
+	 * Starts timing a call of the operation.
+	 * 
+	 * @param operation
+	 *            name of the operation, for example "JobOps.triggerJob"
+	 */
+	OperationTimer start(String operation) {
+		OperationTimer.Metrics metrics = operations.get(operation);
+		if (metrics == null)
+			metrics = operations.computeIfAbsent(operation, OperationTimer.Metrics::new);
+		return new OperationTimer(metrics, admissionController);
+	}
+
+	ClientMetricsSnapshot getSnapshot() {
+		return new ClientMetricsSnapshot(System.currentTimeMillis(), getInFlight(), getQueued(), getOperationLimit(),
+				getMaxOperations(), getRejected(), getBytesSent(), getBytesReceived(), getOperations());
+	}
+
+	public String getJenkinsUrl() {
+		return jenkinsUrl;
+	}
+
+	public int getInFlight() {
+		return admissionController.getInFlight();
+	}
+
+	public int getQueued() {
+		return admissionController.getQueued();
+	}
+
+	public int getOperationLimit() {
+		return admissionController.getLimit();
+	}
+
+	public int getMaxOperations() {
+		return admissionController.getMaxOperations();
+	}
+
+	public long getRejected() {
+		return admissionController.getRejected();
+	}
+
+	public long getBytesSent() {
+		return bytesSent.sum();
+	}
+
+	public long getBytesReceived() {
+		return bytesReceived.sum();
+	}
+
+	public Map<String, OperationStats> getOperations() {
+		Map<String, OperationStats> stats = new TreeMap<String, OperationStats>();
+		for (Map.Entry<String, OperationTimer.Metrics> entry : operations.entrySet())
+			stats.put(entry.getKey(), entry.getValue().getStats());
+		return stats;
+	}
+
+	// Transport ------------------------------------------
+
+	public void process(HttpRequest request, HttpContext context) {
+		context.setAttribute(REQUEST_STARTED, System.nanoTime());
+		if (request instanceof HttpEntityEnclosingRequest) {
+			HttpEntity entity = ((HttpEntityEnclosingRequest) request).getEntity();
+			if (entity != null && entity.getContentLength() > 0)
+				bytesSent.add(entity.getContentLength());
+		}
+	}
+
+	public void process(HttpResponse response, HttpContext context) {
+		Object started = context.getAttribute(REQUEST_STARTED);
+		if (started != null) {
+			int status = response.getStatusLine().getStatusCode();
+			admissionController.onResponse(System.nanoTime() - (Long) started,
+					status == 429 || status == 502 || status == 503 || status == 504);
+		}
+		if (response.getEntity() != null)
+			response.setEntity(new CountingEntity(response.getEntity()));
+	}
+
+	/**
+	 * Counts the bytes of a response body as they are read, however the body is
+	 * consumed.
+	 */
+	private class CountingEntity extends HttpEntityWrapper {
+
+		CountingEntity(HttpEntity entity) {
+			super(entity);
+		}
+
+		@Override
+		public InputStream getContent() throws IOException {
+			return new FilterInputStream(super.getContent()) {
+				@Override
+				public int read() throws IOException {
+					int b = super.read();
+					if (b >= 0)
+						bytesReceived.increment();
+					return b;
+				}
+
+				@Override
+				public int read(byte[] buffer, int offset, int length) throws IOException {
+					int read = super.read(buffer, offset, length);
+					if (read > 0)
+						bytesReceived.add(read);
+					return read;
+				}
+			};
+		}
+
+		@Override
+		public void writeTo(OutputStream out) throws IOException {
+			super.writeTo(new FilterOutputStream(out) {
+				@Override
+				public void write(int b) throws IOException {
+					out.write(b);
+					bytesReceived.increment();
+				}
+
+				@Override
+				public void write(byte[] buffer, int offset, int length) throws IOException {
+					out.write(buffer, offset, length);
+					bytesReceived.add(length);
+				}
+			});
+		}
+	}
+}
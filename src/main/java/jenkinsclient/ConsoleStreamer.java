@@ -0,0 +1,91 @@
+package jenkinsclient;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+import org.apache.http.Header;
+import org.apache.http.HttpEntity;
+import org.apache.http.client.HttpResponseException;
+import org.apache.http.client.methods.CloseableHttpResponse;
+import org.apache.http.client.methods.HttpGet;
+
+import com.offbytwo.jenkins.JenkinsServer;
+
+import jenkinsclient.exceptions.MaximumOperationsReachedException;
+
+/**
+ * Follows the console log of a build through its progressive text endpoint.
+ * Each poll asks for the bytes after the offset reached so far and copies them
+ * through a fixed buffer, so neither the transfer per poll nor the memory used
+ * grows with the length of the log.
+ */
+class ConsoleStreamer {
+	private static final int BUFFER_SIZE = 8192;
+
+	private final JenkinsClient client;
+	private final long pollMinMillis;
+	private final long pollMaxMillis;
+
+	ConsoleStreamer(JenkinsClient client, long pollMinMillis, long pollMaxMillis) {
+		this.client = client;
+		this.pollMinMillis = Math.max(1, pollMinMillis);
+		this.pollMaxMillis = Math.max(this.pollMinMillis, pollMaxMillis);
+	}
+
+	/**
+	 * Copies the log from offset start to the output until the build finished.
+	 * An operation slot is only held during each poll, not while waiting between
+	 * polls. The wait doubles up to the maximum while the build writes nothing
+	 * and drops back to the minimum once it writes again.
+	 * 
+	 * @param buildUrl
+	 *            url of the build relative to the Jenkins url
+	 * @return offset after the last byte of the log
+	 */
+	long stream(String buildUrl, long start, OutputStream out)
+			throws IOException, MaximumOperationsReachedException, InterruptedException {
+		String url = client.absoluteUrl(buildUrl + "logText/progressiveText?start=");
+		byte[] buffer = new byte[BUFFER_SIZE];
+		long offset = start;
+		long delay = pollMinMillis;
+		while (true) {
+			long previous = offset;
+			boolean moreData;
+			JenkinsServer jenkinsServer = null;
+			try {
+				jenkinsServer = client.getJenkinsConnection();
+				CloseableHttpResponse response = client.execute(new HttpGet(url + offset));
+				try {
+					int status = response.getStatusLine().getStatusCode();
+					if (status < 200 || status >= 300)
+						throw new HttpResponseException(status, response.getStatusLine().getReasonPhrase());
+					long copied = 0;
+					HttpEntity entity = response.getEntity();
+					if (entity != null) {
+						try (InputStream in = entity.getContent()) {
+							int read;
+							while ((read = in.read(buffer)) != -1) {
+								out.write(buffer, 0, read);
+								copied += read;
+							}
+						}
+					}
+					out.flush();
+					Header textSize = response.getFirstHeader("X-Text-Size");
+					offset = textSize != null ? Long.parseLong(textSize.getValue().trim()) : offset + copied;
+					Header more = response.getFirstHeader("X-More-Data");
+					moreData = more != null && Boolean.parseBoolean(more.getValue().trim());
+				} finally {
+					response.close();
+				}
+			} finally {
+				client.closeJenkinsConnection(jenkinsServer);
+			}
+			if (!moreData)
+				return offset;
+			delay = offset != previous ? pollMinMillis : Math.min(delay * 2, pollMaxMillis);
+			Thread.sleep(delay);
+		}
+	}
+}
@@ -0,0 +1,95 @@
+package jenkinsclient;
+
+import java.io.IOException;
+
+import org.apache.http.HttpException;
+import org.apache.http.HttpRequest;
+import org.apache.http.HttpRequestInterceptor;
+import org.apache.http.HttpResponse;
+import org.apache.http.HttpStatus;
+import org.apache.http.client.HttpResponseException;
+import org.apache.http.client.ServiceUnavailableRetryStrategy;
+import org.apache.http.protocol.HttpContext;
+import org.apache.http.protocol.HttpCoreContext;
+
+import com.offbytwo.jenkins.client.JenkinsHttpConnection;
+import com.offbytwo.jenkins.model.Crumb;
+
+/**
+ * CSRF crumb handling of a client. The crumb is fetched from the crumb issuer on
+ * the first mutating request and attached to every mutating request after
+ * that, for all operations of the client. A 403 answer to a mutating request
+ * drops the cached crumb and the request is retried once with a fresh one.
+ * 
+ * Jenkins binds crumbs to the web session, the cookie store of the pooled
+ * client keeps that session for as long as the crumb is cached.
+ */
+class CrumbManager implements HttpRequestInterceptor, ServiceUnavailableRetryStrategy {
+
+	private static final Object NO_CRUMB = new Object();
+
+	private volatile JenkinsHttpConnection connection;
+	/** A Crumb, NO_CRUMB if the Jenkins issues none, null if not fetched yet. */
+	private volatile Object crumb;
+
+	void setConnection(JenkinsHttpConnection connection) {
+		this.connection = connection;
+	}
+
+	private static boolean isMutating(HttpRequest request) {
+		String method = request.getRequestLine().getMethod();
+		return !method.equals("GET") && !method.equals("HEAD") && !method.equals("OPTIONS");
+	}
+
+	private Object getCrumb() throws IOException {
+		Object current = crumb;
+		if (current != null)
+			return current;
+		synchronized (this) {
+			if (crumb == null) {
+				try {
+					crumb = connection.get("/crumbIssuer", Crumb.class);
+				} catch (HttpResponseException e) {
+					if (e.getStatusCode() != HttpStatus.SC_NOT_FOUND)
+						throw e;
+					crumb = NO_CRUMB;
+				}
+			}
+			return crumb;
+		}
+	}
+
+	/**
+	 * Whether the Jenkins is known to require crumbs, false until the first
+	 * mutating request.
+	 */
+	boolean isCrumbRequired() {
+		return crumb instanceof Crumb;
+	}
+
+	public void process(HttpRequest request, HttpContext context) throws HttpException, IOException {
+		if (!isMutating(request))
+			return;
+		Object current = getCrumb();
+		if (current instanceof Crumb) {
+			Crumb c = (Crumb) current;
+			request.setHeader(c.getCrumbRequestField(), c.getCrumb());
+		}
+	}
+
+	public boolean retryRequest(HttpResponse response, int executionCount, HttpContext context) {
+		if (executionCount > 1 || response.getStatusLine().getStatusCode() != HttpStatus.SC_FORBIDDEN)
+			return false;
+		HttpRequest request = (HttpRequest) context.getAttribute(HttpCoreContext.HTTP_REQUEST);
+		if (request == null || !isMutating(request))
+			return false;
+		// Either the crumb expired with its session or CSRF protection was enabled
+		// after the crumb issuer was last asked, fetch again on the retry.
+		crumb = null;
+		return true;
+	}
+
+	public long getRetryInterval() {
+		return 0;
+	}
+}
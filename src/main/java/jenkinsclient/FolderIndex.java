@@ -0,0 +1,61 @@
+package jenkinsclient;
+
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Folder paths of a client known to exist, so creating items below them does
+ * not check every ancestor again. Paths are added when a folder is created,
+ * found by a check or listed in its parent, and expire after a fixed time to
+ * live in case they are deleted by someone else.
+ */
+class FolderIndex {
+	private final long ttlMillis;
+	private final Map<String, Long> expiries = new ConcurrentHashMap<String, Long>();
+
+	FolderIndex(long ttlMillis) {
+		this.ttlMillis = ttlMillis;
+	}
+
+	boolean contains(String folderPath) {
+		String key = JobCache.key(folderPath);
+		if (key.isEmpty())
+			return true;
+		Long expiresAt = expiries.get(key);
+		if (expiresAt == null)
+			return false;
+		if (expiresAt < System.currentTimeMillis()) {
+			expiries.remove(key, expiresAt);
+			return false;
+		}
+		return true;
+	}
+
+	/**
+	 * Records the folder and, as they must exist too, its ancestors.
+	 */
+	void add(String folderPath) {
+		if (ttlMillis <= 0)
+			return;
+		long expiresAt = System.currentTimeMillis() + ttlMillis;
+		String key = JobCache.key(folderPath);
+		while (!key.isEmpty()) {
+			expiries.put(key, expiresAt);
+			key = key.substring(0, key.lastIndexOf('/'));
+		}
+	}
+
+	/**
+	 * Forgets the path and everything below it.
+	 */
+	void invalidate(String path) {
+		String key = JobCache.key(path);
+		Iterator<String> it = expiries.keySet().iterator();
+		while (it.hasNext()) {
+			String known = it.next();
+			if (known.equals(key) || known.startsWith(key + "/"))
+				it.remove();
+		}
+	}
+}
@@ -1,9 +1,19 @@
 package jenkinsclient;
 
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * Identity of a registered Jenkins: its url, the username and a hash of the
+ * password. Two instances are equal if all three match, so a Jenkins can be used
+ * as a hash key without keeping the password comparable in clear.
+ */
 public class Jenkins implements Comparable<Jenkins> {
 	private String url;
 	private String username;
 	private String password;
+	private final String credentialHash;
 
 	private String jenkinsId;
 
@@ -11,6 +21,30 @@ public class Jenkins implements Comparable<Jenkins> {
 		this.url = url;
 		this.username = username;
 		this.password = password;
+		this.credentialHash = hash(password == null ? "" : password);
+	}
+
+	private static String hash(String credential) {
+		try {
+			byte[] digest = MessageDigest.getInstance("SHA-256").digest(credential.getBytes(StandardCharsets.UTF_8));
+			StringBuilder hex = new StringBuilder();
+			for (byte b : digest)
+				hex.append(String.format("%02x", b));
+			return hex.toString();
+		} catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException("SHA-256 not available", e);
+		}
+	}
+
+	/**
+	 * The url without trailing slashes, "http://host/" and "http://host" denote
+	 * the same Jenkins.
+	 */
+	private String normalizedUrl() {
+		String normalized = url;
+		while (normalized.endsWith("/"))
+			normalized = normalized.substring(0, normalized.length() - 1);
+		return normalized;
 	}
 
 	public String getUrl() {
@@ -33,10 +67,29 @@ public class Jenkins implements Comparable<Jenkins> {
 		this.jenkinsId = jenkinsId;
 	}
 
+	@Override
+	public boolean equals(Object o) {
+		if (this == o)
+			return true;
+		if (!(o instanceof Jenkins))
+			return false;
+		Jenkins other = (Jenkins) o;
+		return normalizedUrl().equals(other.normalizedUrl())
+				&& (username == null ? "" : username).equals(other.username == null ? "" : other.username)
+				&& credentialHash.equals(other.credentialHash);
+	}
+
+	@Override
+	public int hashCode() {
+		int result = normalizedUrl().hashCode();
+		result = 31 * result + (username == null ? "" : username).hashCode();
+		return 31 * result + credentialHash.hashCode();
+	}
+
 	public int compareTo(Jenkins o) {
-		int ur = url.compareTo(o.getUrl());
+		int ur = normalizedUrl().compareTo(o.normalizedUrl());
 		int us = (username == null ? "" : username).compareTo(o.getUsername() == null ? "" : o.getUsername());
-		int pa = (password == null ? "" : password).compareTo(o.getPassword() == null ? "" : o.getPassword());
+		int pa = credentialHash.compareTo(o.credentialHash);
 
 		if (ur > 0)
 			return 1;
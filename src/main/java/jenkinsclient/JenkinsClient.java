@@ -1,47 +1,132 @@
 package jenkinsclient;
 
 import java.io.IOException;
+import java.lang.management.ManagementFactory;
 import java.net.URI;
 import java.net.URISyntaxException;
-import java.util.HashMap;
-import java.util.Map;
+import java.net.URLEncoder;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+import javax.management.StandardMBean;
 
 import org.apache.http.client.HttpResponseException;
+import org.apache.http.client.methods.CloseableHttpResponse;
+import org.apache.http.client.methods.HttpUriRequest;
+import org.apache.http.pool.PoolStats;
 
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import com.offbytwo.jenkins.JenkinsServer;
 import com.offbytwo.jenkins.client.JenkinsHttpConnection;
+import com.offbytwo.jenkins.client.util.EncodingUtils;
 
 import jenkinsclient.exceptions.InvalidJenkinsClientException;
-import jenkinsclient.exceptions.JenkinsConnectionFailedException;
 import jenkinsclient.exceptions.JenkinsExecutionException;
 import jenkinsclient.exceptions.MaximumOperationsReachedException;
+import jenkinsclient.model.CapacitySnapshot;
+import jenkinsclient.model.ClientMetricsSnapshot;
+import jenkinsclient.model.LabelInfo;
 
 public class JenkinsClient {
 
-	private static final int MAX_OPERATIONS = 20;
-	private int liveOperationCount = 0;
+	private final AdmissionController admissionController;
 
-	private synchronized int getLiveOperationCount() {
-		return liveOperationCount;
+	/**
+	 * Number of operations currently executing against the server.
+	 */
+	public int getLiveOperationCount() {
+		return admissionController.getInFlight();
+	}
+
+	/**
+	 * Number of operations waiting for a free slot.
+	 */
+	public int getQueuedOperationCount() {
+		return admissionController.getQueued();
 	}
 
-	private synchronized void incrementLiveOperationCount() {
-		++liveOperationCount;
+	/**
+	 * Current limit of simultaneous operations. It adapts to the latency and
+	 * overload signals of the server between the configured minimum and maximum,
+	 * unless adaptive concurrency is disabled in the config.
+	 */
+	public int getOperationLimit() {
+		return admissionController.getLimit();
+	}
+
+	public int getMaxOperations() {
+		return admissionController.getMaxOperations();
+	}
+
+	private final ClientMetrics metrics;
+	private final boolean jmxEnabled;
+	private ObjectName objectName;
+
+	/**
+	 * Latency percentiles, calls and errors of every operation called so far,
+	 * with the state of the operation limit and the bytes transferred. The same
+	 * figures are published over JMX unless disabled in the config.
+	 */
+	public ClientMetricsSnapshot getMetricsSnapshot() {
+		return metrics.getSnapshot();
 	}
 
-	private synchronized void decrementLiveOperationCount() {
-		--liveOperationCount;
+	/**
+	 * Starts timing a call of a public operation of the client.
+	 */
+	OperationTimer startOperation(String operation) {
+		return metrics.start(operation);
 	}
 
 	// ----------------------------------------------------
 
-	private static HashMap<String, Jenkins> jenkinsMap = new HashMap<String, Jenkins>();
-	private static HashMap<Jenkins, JenkinsClient> jenkinsClientMap = new HashMap<Jenkins, JenkinsClient>();
+	/**
+	 * Registration of a Jenkins, completed with its jenkinsId once the client is
+	 * created. Threads registering the same Jenkins wait on the one registration,
+	 * registrations of other Jenkins instances are not blocked.
+	 */
+	private static ConcurrentHashMap<Jenkins, CompletableFuture<String>> registrations = new ConcurrentHashMap<Jenkins, CompletableFuture<String>>();
+	private static ConcurrentHashMap<String, JenkinsClient> jenkinsClientMap = new ConcurrentHashMap<String, JenkinsClient>();
+	private static AtomicInteger registrationCount = new AtomicInteger();
+	private static final ExecutorService registrationExecutor = Executors
+			.newCachedThreadPool(new DaemonThreadFactory("jenkins-registration"));
+
+	private Jenkins jenkins;
 
 	private String jenkinsUrl;
 	private String username;
 	private String password;
 
+	private final JenkinsConnectionPool connectionPool;
+	private final ThreadPoolExecutor asyncExecutor;
+	// Set while a thread of the async executor runs an operation.
+	private final ThreadLocal<Boolean> onAsyncExecutor = new ThreadLocal<Boolean>();
+	private final ScheduledThreadPoolExecutor scheduler;
+	private final JobCache jobCache;
+	private final FolderIndex folderIndex;
+	private final QueueWatcher queueWatcher;
+	private final BuildWatcher buildWatcher;
+	private final CapacityMonitor capacityMonitor;
+	private final ConsoleStreamer consoleStreamer;
+	private final JobIndex jobIndex;
+	private final SingleFlight singleFlight;
+
+	private static final ObjectMapper JSON = new ObjectMapper();
+
 	public String getJenkinsUrl() {
 		return jenkinsUrl;
 	}
@@ -50,122 +135,402 @@ public class JenkinsClient {
 		return username;
 	}
 
-	private JenkinsHttpConnection jenkinsHttpConnection;
-	private boolean crumbFlag;
+	JenkinsHttpConnection getJenkinsHttpConnection() {
+		return connectionPool.getJenkinsHttpClient();
+	}
 
-	private void setJenkinsHttpConnection() throws InvalidJenkinsClientException {
-		JenkinsServer jenkinsServer = null;
-		try {
-			try {
-				jenkinsServer = getJenkinsConnection();
-				this.jenkinsHttpConnection = jenkinsServer.getQueue().getClient();
-			} catch (IOException | MaximumOperationsReachedException e) {
-				throw new InvalidJenkinsClientException(
-						String.format("Provided Jenkins client %s is invalid", jenkinsUrl));
-			}
-		} finally {
-			closeJenkinsConnection(jenkinsServer);
-		}
+	/**
+	 * Shared scheduler for the periodic background work of this client.
+	 */
+	ScheduledExecutorService getScheduler() {
+		return scheduler;
 	}
 
-	JenkinsHttpConnection getJenkinsHttpConnection() {
-		return jenkinsHttpConnection;
+	ConsoleStreamer getConsoleStreamer() {
+		return consoleStreamer;
 	}
 
-	private void setCrumbFlag() {
-		boolean flag = false;
-		JenkinsServer jenkinsServer = null;
-		try {
-			try {
-				jenkinsServer = getJenkinsConnection();
-				jenkinsServer.createFolder("CrumbTest403");
-				jenkinsServer.deleteJob("CrumbTest403");
-			} catch (IOException | MaximumOperationsReachedException ex) {
-				if (((HttpResponseException) ex).getStatusCode() == 403)
-					flag = true;
-			}
-			this.crumbFlag = flag;
-		} finally {
-			closeJenkinsConnection(jenkinsServer);
-		}
+	CapacityMonitor getCapacityMonitor() {
+		return capacityMonitor;
+	}
+
+	JobCache getJobCache() {
+		return jobCache;
 	}
 
+	AdmissionController getAdmissionController() {
+		return admissionController;
+	}
+
+	/**
+	 * Threads the async executor keeps, following the operation limit.
+	 */
+	int getAsyncPoolSize() {
+		return asyncExecutor.getCorePoolSize();
+	}
+
+	FolderIndex getFolderIndex() {
+		return folderIndex;
+	}
+
+	SingleFlight getSingleFlight() {
+		return singleFlight;
+	}
+
+	/**
+	 * Number of read operations that shared the request of an identical
+	 * concurrent or recent read instead of sending their own.
+	 */
+	public long getCoalescedReadCount() {
+		return singleFlight.getCoalesced();
+	}
+
+	/**
+	 * Fetches the JSON api of the path restricted to the fields of the projection
+	 * and decodes it. The caller must hold an operation slot.
+	 *
+	 * @param path
+	 *            Path relative to the Jenkins url, for example "/job/A/", or an
+	 *            absolute url of the Jenkins.
+	 */
+	<T> T fetch(String path, Projection<T> projection) throws IOException {
+		String query = path + "?tree=" + URLEncoder.encode(projection.getTree(), "UTF-8");
+		JsonNode node = JSON.readTree(connectionPool.getJenkinsHttpClient().get(query));
+		return projection.decode(node);
+	}
+
+	/**
+	 * Sends the request with the pooled client, for answers that are streamed
+	 * instead of read into a string. The caller must hold an operation slot and
+	 * close the response.
+	 */
+	CloseableHttpResponse execute(HttpUriRequest request) throws IOException {
+		return connectionPool.getHttpClient().execute(request);
+	}
+
+	/**
+	 * Absolute url of a path relative to the Jenkins url, absolute urls are
+	 * returned unchanged.
+	 */
+	String absoluteUrl(String path) {
+		if (path.startsWith("http://") || path.startsWith("https://"))
+			return path;
+		String base = jenkinsUrl.endsWith("/") ? jenkinsUrl.substring(0, jenkinsUrl.length() - 1) : jenkinsUrl;
+		return base + (path.startsWith("/") ? path : "/" + path);
+	}
+
+	/**
+	 * Always false: the pooled transport attaches the cached crumb to every
+	 * mutating request itself, so the library must not fetch one per request.
+	 */
 	boolean getCrumbFlag() {
-		return this.crumbFlag;
+		return false;
+	}
+
+	/**
+	 * Whether the Jenkins requires CSRF crumbs. Only known after the first
+	 * mutating operation of the client, false before.
+	 */
+	public boolean isCrumbRequired() {
+		return connectionPool.getCrumbManager().isCrumbRequired();
 	}
 
-	private JenkinsClient(String jenkinsUrl, String username, String password) throws InvalidJenkinsClientException {
+	private volatile boolean cancelByPost;
+
+	/**
+	 * Whether the Jenkins only cancels queue items on POST, learned from the first
+	 * GET it answered with 405. Later cancellations go straight to POST.
+	 */
+	boolean isCancelByPost() {
+		return cancelByPost;
+	}
+
+	void setCancelByPost() {
+		cancelByPost = true;
+	}
+
+	private final long startupMillis;
+
+	/**
+	 * Time it took to create this client, including the liveness request if the
+	 * client was validated on startup.
+	 */
+	public long getStartupMillis() {
+		return startupMillis;
+	}
+
+	private JenkinsClient(String jenkinsUrl, String username, String password, JenkinsClientConfig config)
+			throws InvalidJenkinsClientException {
+		long started = System.nanoTime();
 		this.jenkinsUrl = jenkinsUrl;
 		this.username = username;
 		this.password = password;
-		checkIfJenkinsServerIsValid();
-		setCrumbFlag();
-		setJenkinsHttpConnection();
+		this.admissionController = new AdmissionController(config);
+		this.metrics = new ClientMetrics(jenkinsUrl, admissionController);
+		this.jmxEnabled = config.isJmxEnabled();
+		this.jobCache = new JobCache(config.getJobCacheTtlMillis(), config.getJobCacheMaxSize());
+		this.folderIndex = new FolderIndex(config.getFolderIndexTtlMillis());
+		try {
+			this.connectionPool = new JenkinsConnectionPool(new URI(jenkinsUrl), username, password, config, metrics);
+		} catch (URISyntaxException e) {
+			throw new InvalidJenkinsClientException(String.format("Provided Jenkins client %s is invalid", jenkinsUrl));
+		}
+		// One thread per slot of the current operation limit, resized as the limit
+		// adapts: more threads would only block on admission, further async calls
+		// wait in the executor queue without holding a thread.
+		this.asyncExecutor = new ThreadPoolExecutor(admissionController.getLimit(),
+				admissionController.getMaxOperations(), 60, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(),
+				new DaemonThreadFactory("jenkins-async"));
+		this.asyncExecutor.allowCoreThreadTimeOut(true);
+		admissionController.setLimitListener(limit -> asyncExecutor.setCorePoolSize(limit));
+		this.scheduler = new ScheduledThreadPoolExecutor(1, new DaemonThreadFactory("jenkins-scheduler"));
+		this.scheduler.setRemoveOnCancelPolicy(true);
+		this.singleFlight = new SingleFlight(config.isCoalesceReads(), config.getReadReuseMillis(), scheduler);
+		this.queueWatcher = new QueueWatcher(this, config.getQueuePollIntervalMillis());
+		this.buildWatcher = new BuildWatcher(this, config.getCompletionPollMinMillis(),
+				config.getCompletionPollMaxMillis());
+		this.jobIndex = new JobIndex(this, config.getCrawlDepth());
+		this.consoleStreamer = new ConsoleStreamer(this, config.getConsolePollMinMillis(),
+				config.getConsolePollMaxMillis());
+		this.capacityMonitor = new CapacityMonitor(this, config.getCapacityRefreshMillis(),
+				config.getCapacityRefreshJitter());
+		try {
+			if (config.isValidateOnStartup())
+				checkIfJenkinsServerIsValid();
+		} catch (InvalidJenkinsClientException | RuntimeException e) {
+			close();
+			throw e;
+		}
+		this.startupMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started);
 	}
 
-	private boolean checkIfJenkinsServerIsValid() throws InvalidJenkinsClientException {
+	/**
+	 * One small request to the root api: it fails for an unreachable Jenkins or
+	 * rejected credentials, and its X-Jenkins header sets the version. Crumbs and
+	 * everything else are detected on first use.
+	 */
+	private void checkIfJenkinsServerIsValid() throws InvalidJenkinsClientException {
 		JenkinsServer jenkinsServer = null;
 		try {
 			jenkinsServer = getJenkinsConnection();
-			jenkinsServer.getComputers();
-			String jenkinsVersion = jenkinsServer.getVersion().toString();
-			return jenkinsVersion.equals("") ? false : true;
-		} catch (MaximumOperationsReachedException | JenkinsConnectionFailedException | IOException e) {
+			fetch("/", Projections.MODE);
+		} catch (MaximumOperationsReachedException | IOException e) {
 			throw new InvalidJenkinsClientException(String.format("Provided Jenkins client %s is invalid", jenkinsUrl));
 		} finally {
 			closeJenkinsConnection(jenkinsServer);
 		}
 	}
 
+	/**
+	 * Takes an operation slot, waiting for one to free up if the limit is reached,
+	 * and returns the shared server.
+	 */
 	JenkinsServer getJenkinsConnection() throws MaximumOperationsReachedException {
-		incrementLiveOperationCount();
-		if (getLiveOperationCount() > MAX_OPERATIONS)
-			throw new MaximumOperationsReachedException(
-					String.format("Maximum simultaneous operation %s limit reached", MAX_OPERATIONS));
-		try {
-			if (username == null || password == null || username.isEmpty() || password.isEmpty())
-				return new JenkinsServer(new URI(jenkinsUrl));
-			else
-				return new JenkinsServer(new URI(jenkinsUrl), username, password);
-		} catch (URISyntaxException e) {
-			throw new JenkinsConnectionFailedException("Jenkins connection failed", e);
-		}
+		admissionController.acquire();
+		return connectionPool.getJenkinsServer();
 	}
 
+	/**
+	 * Takes an operation slot only if one is free right now.
+	 *
+	 * @return the shared server, null if no slot is free
+	 */
+	JenkinsServer tryJenkinsConnection() {
+		return admissionController.tryAcquire() ? connectionPool.getJenkinsServer() : null;
+	}
+
+	/**
+	 * Releases an operation slot taken by {@link #getJenkinsConnection()}. The
+	 * server itself is shared and stays open, its connections return to the pool.
+	 * A null server means no slot was taken and nothing is released.
+	 */
 	void closeJenkinsConnection(JenkinsServer jenkinsServer) {
 		if (jenkinsServer != null)
-			try {
-				jenkinsServer.close();
-			} catch (Exception e) {
+			admissionController.release();
+	}
 
-			}
-		decrementLiveOperationCount();
+	/**
+	 * Connection pool statistics (leased, pending, available and max) of this
+	 * client.
+	 */
+	public PoolStats getPoolStats() {
+		return connectionPool.getTotalStats();
+	}
+
+	/**
+	 * Closes the pooled connections of this client and removes it from the
+	 * registry. The client is unusable afterwards, createClient will create a new
+	 * one.
+	 */
+	public void close() {
+		if (jenkins != null && jenkinsClientMap.remove(jenkins.getJenkinsId(), this)) {
+			CompletableFuture<String> registration = registrations.get(jenkins);
+			if (registration != null && registration.isDone() && !registration.isCompletedExceptionally()
+					&& jenkins.getJenkinsId().equals(registration.join()))
+				registrations.remove(jenkins, registration);
+		}
+		unregisterMBean();
+		scheduler.shutdownNow();
+		asyncExecutor.shutdownNow();
+		connectionPool.close();
+	}
+
+	/**
+	 * Publishes the metrics of this client. JMX is only a view, a failure to
+	 * register does not fail the client.
+	 */
+	private synchronized void registerMBean(String jenkinsId) {
+		if (!jmxEnabled || objectName != null)
+			return;
+		try {
+			ObjectName name = new ObjectName("jenkinsclient:type=JenkinsClient,id=" + ObjectName.quote(jenkinsId));
+			ManagementFactory.getPlatformMBeanServer().registerMBean(new StandardMBean(metrics,
+					JenkinsClientMXBean.class, true), name);
+			objectName = name;
+		} catch (JMException e) {
+
+		}
+	}
+
+	private synchronized void unregisterMBean() {
+		if (objectName == null)
+			return;
+		try {
+			ManagementFactory.getPlatformMBeanServer().unregisterMBean(objectName);
+		} catch (JMException e) {
+
+		}
+		objectName = null;
+	}
+
+	/**
+	 * Runs the operation on the async executor of this client. Exceptions thrown
+	 * by the operation complete the future exceptionally.
+	 */
+	<T> CompletableFuture<T> supplyAsync(final Callable<T> operation) {
+		final CompletableFuture<T> future = new CompletableFuture<T>();
+		try {
+			asyncExecutor.execute(() -> {
+				if (future.isDone())
+					return;
+				onAsyncExecutor.set(Boolean.TRUE);
+				try {
+					future.complete(operation.call());
+				} catch (Throwable e) {
+					future.completeExceptionally(e);
+				} finally {
+					onAsyncExecutor.remove();
+				}
+			});
+		} catch (RejectedExecutionException e) {
+			future.completeExceptionally(e);
+		}
+		return future;
+	}
+
+	/**
+	 * Runs one operation of a fan-out that the caller waits for. Called from an
+	 * operation or callback running on the async executor, the operation runs on
+	 * the calling thread instead: waiting on operations queued behind the caller
+	 * could otherwise take every thread of the executor and never finish.
+	 */
+	<T> CompletableFuture<T> fanOut(final Callable<T> operation) {
+		if (onAsyncExecutor.get() == null)
+			return supplyAsync(operation);
+		CompletableFuture<T> future = new CompletableFuture<T>();
+		try {
+			future.complete(operation.call());
+		} catch (Throwable e) {
+			future.completeExceptionally(e);
+		}
+		return future;
 	}
 
-	public synchronized static String createClient(String jenkinsUrl, String username, String password)
+	public static String createClient(String jenkinsUrl, String username, String password)
 			throws InvalidJenkinsClientException {
-		Jenkins jenkins = new Jenkins(jenkinsUrl, username, password);
-		for (Map.Entry<String, Jenkins> jenkinsMapEntry : jenkinsMap.entrySet()) {
-			if (jenkinsMapEntry.getValue().compareTo(jenkins) == 0)
-				return jenkinsMapEntry.getKey();
+		return createClient(jenkinsUrl, username, password, new JenkinsClientConfig());
+	}
+
+	/**
+	 * Same as {@link #createClient(String, String, String)} with transport
+	 * settings. The config is ignored if a client for the same Jenkins already
+	 * exists.
+	 */
+	public static String createClient(String jenkinsUrl, String username, String password,
+			JenkinsClientConfig config) throws InvalidJenkinsClientException {
+		try {
+			return registration(jenkinsUrl, username, password, config, false).join();
+		} catch (CompletionException e) {
+			if (e.getCause() instanceof InvalidJenkinsClientException)
+				throw (InvalidJenkinsClientException) e.getCause();
+			throw new InvalidJenkinsClientException(
+					String.format("Provided Jenkins client %s is invalid. %s", jenkinsUrl, e.getCause()));
 		}
+	}
 
-		String jenkinsId = jenkins.hashCode() + "ID" + jenkinsMap.size();
-		jenkins.setJenkinsId(jenkinsId);
-		JenkinsClient jenkinsClient = new JenkinsClient(jenkinsUrl, username, password);
+	public static CompletableFuture<String> createClientAsync(String jenkinsUrl, String username, String password) {
+		return createClientAsync(jenkinsUrl, username, password, new JenkinsClientConfig());
+	}
 
-		jenkinsMap.put(jenkinsId, jenkins);
-		jenkinsClientMap.put(jenkins, jenkinsClient);
+	/**
+	 * Same as {@link #createClient(String, String, String, JenkinsClientConfig)}
+	 * but the client is created on a background thread, so many Jenkins instances
+	 * can be registered at once. The future fails with
+	 * InvalidJenkinsClientException if the Jenkins is invalid.
+	 */
+	public static CompletableFuture<String> createClientAsync(String jenkinsUrl, String username, String password,
+			JenkinsClientConfig config) {
+		// A copy, so callers completing their future cannot touch the registration.
+		return registration(jenkinsUrl, username, password, config, true).thenApply(jenkinsId -> jenkinsId);
+	}
 
-		return jenkinsId;
+	private static CompletableFuture<String> registration(String jenkinsUrl, String username, String password,
+			final JenkinsClientConfig config, boolean async) {
+		final Jenkins jenkins = new Jenkins(jenkinsUrl, username, password);
+		CompletableFuture<String> registration = registrations.get(jenkins);
+		if (registration == null) {
+			final CompletableFuture<String> created = new CompletableFuture<String>();
+			registration = registrations.putIfAbsent(jenkins, created);
+			if (registration == null) {
+				registration = created;
+				if (!async) {
+					register(jenkins, config, created);
+				} else {
+					try {
+						registrationExecutor.execute(() -> register(jenkins, config, created));
+					} catch (RejectedExecutionException e) {
+						registrations.remove(jenkins, created);
+						created.completeExceptionally(e);
+					}
+				}
+			}
+		}
+		return registration;
+	}
+
+	private static void register(Jenkins jenkins, JenkinsClientConfig config, CompletableFuture<String> registration) {
+		try {
+			String jenkinsId = jenkins.hashCode() + "ID" + registrationCount.getAndIncrement();
+			jenkins.setJenkinsId(jenkinsId);
+			JenkinsClient jenkinsClient = new JenkinsClient(jenkins.getUrl(), jenkins.getUsername(),
+					jenkins.getPassword(), config);
+			jenkinsClient.jenkins = jenkins;
+			jenkinsClientMap.put(jenkinsId, jenkinsClient);
+			jenkinsClient.registerMBean(jenkinsId);
+			registration.complete(jenkinsId);
+		} catch (Throwable e) {
+			// Let a later call retry instead of caching the failure.
+			registrations.remove(jenkins, registration);
+			registration.completeExceptionally(e);
+		}
 	}
 
 	public static JenkinsClient getClient(String jenkinsId) throws InvalidJenkinsClientException {
-		Jenkins jenkins = jenkinsMap.get(jenkinsId);
-		if (jenkins == null) {
+		JenkinsClient jenkinsClient = jenkinsId == null ? null : jenkinsClientMap.get(jenkinsId);
+		if (jenkinsClient == null) {
 			throw new InvalidJenkinsClientException("Invalid jenkinsId : Found no Jenkins mapped to this id");
 		} else {
-			return jenkinsClientMap.get(jenkins);
+			return jenkinsClient;
 		}
 	}
 
@@ -178,12 +543,22 @@ public class JenkinsClient {
 	 * @throws MaximumOperationsReachedException
 	 */
 	public String getJenkinsVersion() throws MaximumOperationsReachedException {
-		JenkinsServer jenkinsServer = null;
+		OperationTimer timer = startOperation("JenkinsClient.getJenkinsVersion");
 		try {
-			jenkinsServer = getJenkinsConnection();
-			return jenkinsServer.getVersion().toString();
+			return singleFlight.execute("version", () -> {
+				JenkinsServer jenkinsServer = null;
+				try {
+					jenkinsServer = getJenkinsConnection();
+					return jenkinsServer.getVersion().toString();
+				} finally {
+					closeJenkinsConnection(jenkinsServer);
+				}
+			});
+		} catch (Exception e) {
+			timer.failed(e);
+			throw e;
 		} finally {
-			closeJenkinsConnection(jenkinsServer);
+			timer.stop();
 		}
 	}
 
@@ -198,42 +573,61 @@ public class JenkinsClient {
 	 * @throws JenkinsExecutionException
 	 */
 	public String runGroovyScript(String script) throws MaximumOperationsReachedException, JenkinsExecutionException {
+		OperationTimer timer = startOperation("JenkinsClient.runGroovyScript");
 		JenkinsServer jenkinsServer = null;
 		try {
 			jenkinsServer = getJenkinsConnection();
 			try {
-				return jenkinsServer.runScript(script, crumbFlag);
+				return jenkinsServer.runScript(script, getCrumbFlag());
 			} catch (IOException e) {
 				throw new JenkinsExecutionException("Error executing groovy script", e);
 			}
+		} catch (Exception e) {
+			timer.failed(e);
+			throw e;
 		} finally {
 			closeJenkinsConnection(jenkinsServer);
+			timer.stop();
 		}
 	}
 
 	/**
-	 * Get total executor count
+	 * Get total executor count, from the capacity snapshot of this client
 	 * 
 	 * @param labelName
 	 * @return
-	 * @throws URISyntaxException
 	 * @throws MaximumOperationsReachedException
 	 * @throws JenkinsExecutionException
 	 */
 	public int getTotalExecutors(String labelName) throws MaximumOperationsReachedException, JenkinsExecutionException {
-		JenkinsServer jenkinsServer = null;
+		return getTotalExecutors(labelName, false);
+	}
+
+	/**
+	 * Get total executor count
+	 * 
+	 * @param labelName
+	 * @param fresh
+	 *            if true the label is fetched from the server instead of read from
+	 *            the capacity snapshot
+	 * @throws MaximumOperationsReachedException
+	 * @throws JenkinsExecutionException
+	 */
+	public int getTotalExecutors(String labelName, boolean fresh)
+			throws MaximumOperationsReachedException, JenkinsExecutionException {
+		OperationTimer timer = startOperation("JenkinsClient.getTotalExecutors");
 		try {
-			jenkinsServer = getJenkinsConnection();
-			return jenkinsServer.getLabel(labelName).getTotalExecutors();
-		} catch (IOException e) {
-			throw new JenkinsExecutionException("Error getting total executors", e);
+			return labelInfo(labelName, fresh).getTotalExecutors();
+		} catch (Exception e) {
+			timer.failed(e);
+			throw e;
 		} finally {
-			closeJenkinsConnection(jenkinsServer);
+			timer.stop();
 		}
 	}
 
 	/**
-	 * Get idle executor count
+	 * Get idle executor count, from the capacity snapshot of this client
 	 * 
 	 * @param labelName
 	 * @return
@@ -243,17 +637,124 @@ public class JenkinsClient {
 	 */
 	public int getIdleExecutors(String labelName)
 			throws URISyntaxException, MaximumOperationsReachedException, JenkinsExecutionException {
-		JenkinsServer jenkinsServer = null;
+		return getIdleExecutors(labelName, false);
+	}
+
+	/**
+	 * Get idle executor count
+	 * 
+	 * @param labelName
+	 * @param fresh
+	 *            if true the label is fetched from the server instead of read from
+	 *            the capacity snapshot
+	 * @throws MaximumOperationsReachedException
+	 * @throws JenkinsExecutionException
+	 */
+	public int getIdleExecutors(String labelName, boolean fresh)
+			throws MaximumOperationsReachedException, JenkinsExecutionException {
+		OperationTimer timer = startOperation("JenkinsClient.getIdleExecutors");
 		try {
-			jenkinsServer = getJenkinsConnection();
-			return jenkinsServer.getLabel(labelName).getIdleExecutors();
-		} catch (IOException e) {
-			throw new JenkinsExecutionException("Error getting idle executors", e);
+			return labelInfo(labelName, fresh).getIdleExecutors();
+		} catch (Exception e) {
+			timer.failed(e);
+			throw e;
 		} finally {
-			closeJenkinsConnection(jenkinsServer);
+			timer.stop();
+		}
+	}
+
+	/**
+	 * Executor counts of all nodes and label atoms. Refreshed in the background,
+	 * only the first call after the client was created waits for the server.
+	 * 
+	 * @throws MaximumOperationsReachedException
+	 * @throws JenkinsExecutionException
+	 */
+	public CapacitySnapshot getCapacitySnapshot() throws MaximumOperationsReachedException, JenkinsExecutionException {
+		OperationTimer timer = startOperation("JenkinsClient.getCapacitySnapshot");
+		try {
+			return capacityMonitor.get();
+		} catch (Exception e) {
+			timer.failed(e);
+			throw e;
+		} finally {
+			timer.stop();
+		}
+	}
+
+	/**
+	 * Fetches a new capacity snapshot now, regardless of the last refresh.
+	 * 
+	 * @throws MaximumOperationsReachedException
+	 * @throws JenkinsExecutionException
+	 */
+	public CapacitySnapshot refreshCapacitySnapshot()
+			throws MaximumOperationsReachedException, JenkinsExecutionException {
+		OperationTimer timer = startOperation("JenkinsClient.refreshCapacitySnapshot");
+		try {
+			return capacityMonitor.refresh();
+		} catch (Exception e) {
+			timer.failed(e);
+			throw e;
+		} finally {
+			timer.stop();
+		}
+	}
+
+	LabelInfo labelInfo(String labelName, boolean fresh)
+			throws MaximumOperationsReachedException, JenkinsExecutionException {
+		// Label expressions are evaluated by the server, the snapshot only has atoms.
+		if (fresh || !capacityMonitor.isEnabled())
+			return getLabelInfo(labelName);
+		if (!CapacityMonitor.isExpression(labelName)) {
+			LabelInfo label = capacityMonitor.get().getLabels().get(labelName);
+			if (label != null)
+				return label;
+		}
+		// Expressions and labels no node has are evaluated by the server, its answer
+		// is kept as long as a snapshot.
+		return capacityMonitor.serverLabel(labelName, () -> getLabelInfo(labelName));
+	}
+
+	/**
+	 * Get the executor counts of a label or label expression, fetched from the
+	 * server
+	 * 
+	 * @param labelName
+	 * @throws MaximumOperationsReachedException
+	 * @throws JenkinsExecutionException
+	 */
+	public LabelInfo getLabelInfo(String labelName)
+			throws MaximumOperationsReachedException, JenkinsExecutionException {
+		OperationTimer timer = startOperation("JenkinsClient.getLabelInfo");
+		try {
+			return singleFlight.execute("label " + labelName, () -> {
+				JenkinsServer jenkinsServer = null;
+				try {
+					jenkinsServer = getJenkinsConnection();
+					return fetchLabel(labelName);
+				} catch (HttpResponseException e) {
+					if (e.getStatusCode() == 404)
+						throw new JenkinsExecutionException(String.format("Label %s not found.", labelName));
+					throw new JenkinsExecutionException(String.format("Error getting label %s", labelName), e);
+				} catch (IOException e) {
+					throw new JenkinsExecutionException(String.format("Error getting label %s", labelName), e);
+				} finally {
+					closeJenkinsConnection(jenkinsServer);
+				}
+			});
+		} catch (Exception e) {
+			timer.failed(e);
+			throw e;
+		} finally {
+			timer.stop();
 		}
 	}
 
+	private LabelInfo fetchLabel(String labelName) throws IOException {
+		return fetch("/label/" + EncodingUtils.encode(labelName) + "/", Projections.LABEL);
+	}
+
 	// Objects --------------------------------------------
 
 	public JobOps jobOps() {
@@ -268,4 +769,27 @@ public class JenkinsClient {
 		return new BuildOps(this);
 	}
 
+	/**
+	 * The queue watcher of this client, resolves many queue items with one poll
+	 * of the queue.
+	 */
+	public QueueWatcher queueWatcher() {
+		return queueWatcher;
+	}
+
+	/**
+	 * The build watcher of this client, waits for triggered builds to finish
+	 * with one poll per job instead of one per build.
+	 */
+	public BuildWatcher buildWatcher() {
+		return buildWatcher;
+	}
+
+	/**
+	 * The job index of this client, filled by crawling the job tree.
+	 */
+	public JobIndex jobIndex() {
+		return jobIndex;
+	}
+
 }
@@ -0,0 +1,362 @@
+package jenkinsclient;
+
+/**
+ * Tuning options for a {@link JenkinsClient}. A config is read once when the
+ * client is created, later changes have no effect on existing clients.
+ */
+public class JenkinsClientConfig {
+	private int maxConnectionsPerRoute = 200;
+	private int maxConnectionsTotal = 200;
+	private int connectTimeoutMillis = 10000;
+	private int socketTimeoutMillis = 60000;
+	private long keepAliveMillis = 30000;
+	private long idleEvictionMillis = 60000;
+	private int maxOperations = 200;
+	private int minOperations = 2;
+	private int initialOperations = 20;
+	private boolean adaptiveConcurrency = true;
+	private int maxQueuedOperations = 200;
+	private long acquireTimeoutMillis = 30000;
+	private boolean nonBlockingAdmission = false;
+	private long jobCacheTtlMillis = 60000;
+	private int jobCacheMaxSize = 1000;
+	private long queuePollIntervalMillis = 1000;
+	private boolean validateOnStartup = true;
+	private long capacityRefreshMillis = 5000;
+	private double capacityRefreshJitter = 0.1;
+	private long consolePollMinMillis = 500;
+	private long consolePollMaxMillis = 10000;
+	private long folderIndexTtlMillis = 300000;
+	private int crawlDepth = 3;
+	private boolean jmxEnabled = true;
+	private boolean coalesceReads = true;
+	private long readReuseMillis = 0;
+	private long completionPollMinMillis = 500;
+	private long completionPollMaxMillis = 30000;
+
+	public int getMaxConnectionsPerRoute() {
+		return maxConnectionsPerRoute;
+	}
+
+	/**
+	 * Maximum pooled connections to a single Jenkins host.
+	 */
+	public void setMaxConnectionsPerRoute(int maxConnectionsPerRoute) {
+		this.maxConnectionsPerRoute = maxConnectionsPerRoute;
+	}
+
+	public int getMaxConnectionsTotal() {
+		return maxConnectionsTotal;
+	}
+
+	/**
+	 * Maximum pooled connections across all routes of the client.
+	 */
+	public void setMaxConnectionsTotal(int maxConnectionsTotal) {
+		this.maxConnectionsTotal = maxConnectionsTotal;
+	}
+
+	public int getConnectTimeoutMillis() {
+		return connectTimeoutMillis;
+	}
+
+	public void setConnectTimeoutMillis(int connectTimeoutMillis) {
+		this.connectTimeoutMillis = connectTimeoutMillis;
+	}
+
+	public int getSocketTimeoutMillis() {
+		return socketTimeoutMillis;
+	}
+
+	public void setSocketTimeoutMillis(int socketTimeoutMillis) {
+		this.socketTimeoutMillis = socketTimeoutMillis;
+	}
+
+	public long getKeepAliveMillis() {
+		return keepAliveMillis;
+	}
+
+	/**
+	 * How long an idle connection is kept alive when the server does not send a
+	 * Keep-Alive timeout of its own.
+	 */
+	public void setKeepAliveMillis(long keepAliveMillis) {
+		this.keepAliveMillis = keepAliveMillis;
+	}
+
+	public long getIdleEvictionMillis() {
+		return idleEvictionMillis;
+	}
+
+	/**
+	 * Pooled connections idle for longer than this are closed in the background.
+	 */
+	public void setIdleEvictionMillis(long idleEvictionMillis) {
+		this.idleEvictionMillis = idleEvictionMillis;
+	}
+
+	public int getMaxOperations() {
+		return maxOperations;
+	}
+
+	/**
+	 * Maximum simultaneous operations of the client, the ceiling of the adaptive
+	 * limit or the fixed limit if it is not adaptive.
+	 */
+	public void setMaxOperations(int maxOperations) {
+		this.maxOperations = maxOperations;
+	}
+
+	public int getMinOperations() {
+		return minOperations;
+	}
+
+	/**
+	 * Floor of the adaptive limit, the client always allows this many
+	 * simultaneous operations.
+	 */
+	public void setMinOperations(int minOperations) {
+		this.minOperations = minOperations;
+	}
+
+	public int getInitialOperations() {
+		return initialOperations;
+	}
+
+	/**
+	 * Limit of simultaneous operations the adaptive limit starts from.
+	 */
+	public void setInitialOperations(int initialOperations) {
+		this.initialOperations = initialOperations;
+	}
+
+	public boolean isAdaptiveConcurrency() {
+		return adaptiveConcurrency;
+	}
+
+	/**
+	 * If set, the limit of simultaneous operations follows the server: it grows
+	 * while the response latency stays flat and shrinks when the latency rises,
+	 * the server answers 429, 502, 503 or 504, or requests time out. If not set,
+	 * maxOperations is a fixed limit.
+	 */
+	public void setAdaptiveConcurrency(boolean adaptiveConcurrency) {
+		this.adaptiveConcurrency = adaptiveConcurrency;
+	}
+
+	public int getMaxQueuedOperations() {
+		return maxQueuedOperations;
+	}
+
+	/**
+	 * Maximum operations waiting for a free slot, further ones are rejected with
+	 * MaximumOperationsReachedException.
+	 */
+	public void setMaxQueuedOperations(int maxQueuedOperations) {
+		this.maxQueuedOperations = maxQueuedOperations;
+	}
+
+	public long getAcquireTimeoutMillis() {
+		return acquireTimeoutMillis;
+	}
+
+	/**
+	 * How long an operation waits for a free slot before it is rejected.
+	 */
+	public void setAcquireTimeoutMillis(long acquireTimeoutMillis) {
+		this.acquireTimeoutMillis = acquireTimeoutMillis;
+	}
+
+	public boolean isNonBlockingAdmission() {
+		return nonBlockingAdmission;
+	}
+
+	/**
+	 * If set, operations never wait for a slot and are rejected as soon as the
+	 * limit is reached.
+	 */
+	public void setNonBlockingAdmission(boolean nonBlockingAdmission) {
+		this.nonBlockingAdmission = nonBlockingAdmission;
+	}
+
+	public long getJobCacheTtlMillis() {
+		return jobCacheTtlMillis;
+	}
+
+	/**
+	 * How long resolved jobs (url, parameters, buildable flag) are reused before
+	 * they are fetched again. Zero disables the cache.
+	 */
+	public void setJobCacheTtlMillis(long jobCacheTtlMillis) {
+		this.jobCacheTtlMillis = jobCacheTtlMillis;
+	}
+
+	public int getJobCacheMaxSize() {
+		return jobCacheMaxSize;
+	}
+
+	/**
+	 * Maximum number of resolved jobs kept in the cache.
+	 */
+	public void setJobCacheMaxSize(int jobCacheMaxSize) {
+		this.jobCacheMaxSize = jobCacheMaxSize;
+	}
+
+	public long getQueuePollIntervalMillis() {
+		return queuePollIntervalMillis;
+	}
+
+	/**
+	 * Interval between two polls of the queue by the queue watcher.
+	 */
+	public void setQueuePollIntervalMillis(long queuePollIntervalMillis) {
+		this.queuePollIntervalMillis = queuePollIntervalMillis;
+	}
+
+	public boolean isValidateOnStartup() {
+		return validateOnStartup;
+	}
+
+	/**
+	 * If set, creating the client sends one liveness request and fails for an
+	 * unreachable Jenkins or wrong credentials. If not set, the client is created
+	 * without any request and such errors surface on the first operation.
+	 */
+	public void setValidateOnStartup(boolean validateOnStartup) {
+		this.validateOnStartup = validateOnStartup;
+	}
+
+	public long getCapacityRefreshMillis() {
+		return capacityRefreshMillis;
+	}
+
+	/**
+	 * Interval between two background refreshes of the capacity snapshot used by
+	 * getTotalExecutors and getIdleExecutors. Zero disables the snapshot, every
+	 * call then asks the server.
+	 */
+	public void setCapacityRefreshMillis(long capacityRefreshMillis) {
+		this.capacityRefreshMillis = capacityRefreshMillis;
+	}
+
+	public double getCapacityRefreshJitter() {
+		return capacityRefreshJitter;
+	}
+
+	/**
+	 * Fraction of the refresh interval by which each refresh is randomly moved
+	 * earlier or later, between 0 and 1.
+	 */
+	public void setCapacityRefreshJitter(double capacityRefreshJitter) {
+		this.capacityRefreshJitter = capacityRefreshJitter;
+	}
+
+	public long getConsolePollMinMillis() {
+		return consolePollMinMillis;
+	}
+
+	/**
+	 * Interval between two polls of a streamed console log while the build keeps
+	 * writing to it.
+	 */
+	public void setConsolePollMinMillis(long consolePollMinMillis) {
+		this.consolePollMinMillis = consolePollMinMillis;
+	}
+
+	public long getConsolePollMaxMillis() {
+		return consolePollMaxMillis;
+	}
+
+	/**
+	 * Upper bound of the poll interval of a streamed console log, the interval
+	 * doubles up to it while the build writes nothing.
+	 */
+	public void setConsolePollMaxMillis(long consolePollMaxMillis) {
+		this.consolePollMaxMillis = consolePollMaxMillis;
+	}
+
+	public long getFolderIndexTtlMillis() {
+		return folderIndexTtlMillis;
+	}
+
+	/**
+	 * How long folders known to exist are trusted before createFolder checks them
+	 * again. Zero disables the index.
+	 */
+	public void setFolderIndexTtlMillis(long folderIndexTtlMillis) {
+		this.folderIndexTtlMillis = folderIndexTtlMillis;
+	}
+
+	public int getCrawlDepth() {
+		return crawlDepth;
+	}
+
+	/**
+	 * Folder levels the job index fetches with one request. Deeper requests need
+	 * fewer round trips but return more data per request.
+	 */
+	public void setCrawlDepth(int crawlDepth) {
+		this.crawlDepth = crawlDepth;
+	}
+
+	public boolean isJmxEnabled() {
+		return jmxEnabled;
+	}
+
+	/**
+	 * If set, the metrics of the client are registered as an MBean with the
+	 * platform MBean server while the client is registered.
+	 */
+	public void setJmxEnabled(boolean jmxEnabled) {
+		this.jmxEnabled = jmxEnabled;
+	}
+
+	public boolean isCoalesceReads() {
+		return coalesceReads;
+	}
+
+	/**
+	 * If set, identical reads called concurrently, for example getBuildResult of
+	 * the same build or isInQueue of the same queue item, share one request and
+	 * its result.
+	 */
+	public void setCoalesceReads(boolean coalesceReads) {
+		this.coalesceReads = coalesceReads;
+	}
+
+	public long getReadReuseMillis() {
+		return readReuseMillis;
+	}
+
+	/**
+	 * How long the result of a coalesced read is also returned to identical reads
+	 * called after it completed. Zero only shares reads that overlap.
+	 */
+	public void setReadReuseMillis(long readReuseMillis) {
+		this.readReuseMillis = readReuseMillis;
+	}
+
+	public long getCompletionPollMinMillis() {
+		return completionPollMinMillis;
+	}
+
+	/**
+	 * Shortest interval between two polls of a job by the build watcher, used
+	 * while one of its builds runs longer than expected.
+	 */
+	public void setCompletionPollMinMillis(long completionPollMinMillis) {
+		this.completionPollMinMillis = completionPollMinMillis;
+	}
+
+	public long getCompletionPollMaxMillis() {
+		return completionPollMaxMillis;
+	}
+
+	/**
+	 * Longest interval between two polls of a job by the build watcher, however
+	 * long its builds are expected to run.
+	 */
+	public void setCompletionPollMaxMillis(long completionPollMaxMillis) {
+		this.completionPollMaxMillis = completionPollMaxMillis;
+	}
+}
@@ -0,0 +1,30 @@
+package jenkinsclient;
+
+import java.util.Map;
+
+import jenkinsclient.model.OperationStats;
+
+/**
+ * JMX view of a registered {@link JenkinsClient}, under the object name
+ * "jenkinsclient:type=JenkinsClient,id=&lt;jenkinsId&gt;".
+ */
+public interface JenkinsClientMXBean {
+
+	String getJenkinsUrl();
+
+	int getInFlight();
+
+	int getQueued();
+
+	int getOperationLimit();
+
+	int getMaxOperations();
+
+	long getRejected();
+
+	long getBytesSent();
+
+	long getBytesReceived();
+
+	Map<String, OperationStats> getOperations();
+}
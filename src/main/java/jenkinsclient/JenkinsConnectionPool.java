@@ -0,0 +1,142 @@
+package jenkinsclient;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.codec.binary.Base64;
+import org.apache.http.Header;
+import org.apache.http.HeaderElement;
+import org.apache.http.HttpHeaders;
+import org.apache.http.HttpRequestInterceptor;
+import org.apache.http.HttpResponse;
+import org.apache.http.HttpResponseInterceptor;
+import org.apache.http.client.config.RequestConfig;
+import org.apache.http.conn.ConnectionKeepAliveStrategy;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.HttpClients;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.apache.http.message.BasicHeader;
+import org.apache.http.message.BasicHeaderElementIterator;
+import org.apache.http.pool.PoolStats;
+import org.apache.http.protocol.HTTP;
+import org.apache.http.protocol.HttpContext;
+
+import com.offbytwo.jenkins.JenkinsServer;
+import com.offbytwo.jenkins.client.JenkinsHttpClient;
+
+/**
+ * Long-lived HTTP transport of a {@link JenkinsClient}. All operations of a
+ * client share one keep-alive connection pool and one {@link JenkinsServer}
+ * instead of building a new one per call.
+ */
+class JenkinsConnectionPool implements Closeable {
+
+	private final PoolingHttpClientConnectionManager connectionManager;
+	private final CloseableHttpClient httpClient;
+	private final JenkinsHttpClient jenkinsHttpClient;
+	private final JenkinsServer jenkinsServer;
+	private final Thread idleConnectionEvictor;
+	private final CrumbManager crumbManager = new CrumbManager();
+
+	private volatile boolean closed;
+
+	JenkinsConnectionPool(URI jenkinsUri, String username, String password, final JenkinsClientConfig config,
+			ClientMetrics metrics) {
+		connectionManager = new PoolingHttpClientConnectionManager();
+		connectionManager.setDefaultMaxPerRoute(config.getMaxConnectionsPerRoute());
+		connectionManager.setMaxTotal(Math.max(config.getMaxConnectionsTotal(), config.getMaxConnectionsPerRoute()));
+
+		RequestConfig requestConfig = RequestConfig.custom().setConnectTimeout(config.getConnectTimeoutMillis())
+				.setConnectionRequestTimeout(config.getConnectTimeoutMillis())
+				.setSocketTimeout(config.getSocketTimeoutMillis()).build();
+
+		// Credentials are sent preemptively as a default header rather than through
+		// a shared HttpContext, so the one client can be used from many threads.
+		List<Header> defaultHeaders = new ArrayList<Header>();
+		if (username != null && password != null && !username.isEmpty() && !password.isEmpty()) {
+			byte[] token = (username + ":" + password).getBytes(StandardCharsets.UTF_8);
+			defaultHeaders.add(new BasicHeader(HttpHeaders.AUTHORIZATION,
+					"Basic " + new String(Base64.encodeBase64(token), StandardCharsets.US_ASCII)));
+		}
+
+		httpClient = HttpClients.custom().setConnectionManager(connectionManager)
+				.setDefaultRequestConfig(requestConfig).setDefaultHeaders(defaultHeaders)
+				.addInterceptorLast(crumbManager).setServiceUnavailableRetryStrategy(crumbManager)
+				.addInterceptorLast((HttpRequestInterceptor) metrics)
+				.addInterceptorLast((HttpResponseInterceptor) metrics)
+				.setKeepAliveStrategy(new ConnectionKeepAliveStrategy() {
+					public long getKeepAliveDuration(HttpResponse response, HttpContext context) {
+						BasicHeaderElementIterator it = new BasicHeaderElementIterator(
+								response.headerIterator(HTTP.CONN_KEEP_ALIVE));
+						while (it.hasNext()) {
+							HeaderElement he = it.nextElement();
+							if ("timeout".equalsIgnoreCase(he.getName()) && he.getValue() != null) {
+								try {
+									return Long.parseLong(he.getValue()) * 1000;
+								} catch (NumberFormatException e) {
+								}
+							}
+						}
+						return config.getKeepAliveMillis();
+					}
+				}).build();
+
+		jenkinsHttpClient = new JenkinsHttpClient(jenkinsUri, httpClient);
+		jenkinsServer = new JenkinsServer(jenkinsHttpClient);
+		crumbManager.setConnection(jenkinsHttpClient);
+
+		final long idleEvictionMillis = config.getIdleEvictionMillis();
+		idleConnectionEvictor = new Thread("jenkins-idle-connection-evictor-" + jenkinsUri.getHost()) {
+			@Override
+			public void run() {
+				while (!closed) {
+					try {
+						Thread.sleep(Math.max(1000, idleEvictionMillis / 2));
+					} catch (InterruptedException e) {
+						return;
+					}
+					connectionManager.closeExpiredConnections();
+					connectionManager.closeIdleConnections(idleEvictionMillis, TimeUnit.MILLISECONDS);
+				}
+			}
+		};
+		idleConnectionEvictor.setDaemon(true);
+		idleConnectionEvictor.start();
+	}
+
+	JenkinsServer getJenkinsServer() {
+		return jenkinsServer;
+	}
+
+	JenkinsHttpClient getJenkinsHttpClient() {
+		return jenkinsHttpClient;
+	}
+
+	CloseableHttpClient getHttpClient() {
+		return httpClient;
+	}
+
+	CrumbManager getCrumbManager() {
+		return crumbManager;
+	}
+
+	PoolStats getTotalStats() {
+		return connectionManager.getTotalStats();
+	}
+
+	public void close() {
+		closed = true;
+		idleConnectionEvictor.interrupt();
+		try {
+			httpClient.close();
+		} catch (IOException e) {
+
+		}
+		connectionManager.shutdown();
+	}
+}
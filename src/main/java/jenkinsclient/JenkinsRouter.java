@@ -0,0 +1,175 @@
+package jenkinsclient;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import jenkinsclient.exceptions.InvalidJenkinsClientException;
+import jenkinsclient.exceptions.JenkinsExecutionException;
+import jenkinsclient.exceptions.MaximumOperationsReachedException;
+import jenkinsclient.model.CapacitySnapshot;
+import jenkinsclient.model.ControllerLoad;
+import jenkinsclient.model.LabelInfo;
+import jenkinsclient.model.RoutedTrigger;
+
+/**
+ * Triggers jobs on one of several controllers that have the same jobs,
+ * registered through {@link JenkinsClient#createClient(String, String, String)}.
+ * The controller is chosen by a {@link RoutingStrategy} from the capacity
+ * snapshots of the clients, so routing does not add requests to a trigger.
+ * Label expressions are evaluated by each controller, at most once per
+ * snapshot refresh. Triggers routed to a controller since its snapshot count
+ * as queued, so a burst of triggers does not all go to the controller that
+ * was least loaded when the snapshot was taken.
+ */
+public class JenkinsRouter {
+	private final List<String> jenkinsIds;
+	private final RoutingStrategy strategy;
+
+	/**
+	 * Router using {@link RoutingStrategies#leastLoaded()}.
+	 */
+	public JenkinsRouter(Collection<String> jenkinsIds) throws InvalidJenkinsClientException {
+		this(jenkinsIds, RoutingStrategies.leastLoaded());
+	}
+
+	/**
+	 * @param jenkinsIds
+	 *            ids of the clients to route between
+	 * @throws InvalidJenkinsClientException
+	 *             if an id is not mapped to a client
+	 */
+	public JenkinsRouter(Collection<String> jenkinsIds, RoutingStrategy strategy)
+			throws InvalidJenkinsClientException {
+		for (String jenkinsId : jenkinsIds)
+			JenkinsClient.getClient(jenkinsId);
+		this.jenkinsIds = Collections.unmodifiableList(new ArrayList<String>(jenkinsIds));
+		this.strategy = strategy;
+	}
+
+	public List<String> getJenkinsIds() {
+		return jenkinsIds;
+	}
+
+	/**
+	 * Load of every reachable controller for the label. Controllers that are
+	 * closed or whose capacity could not be read are left out.
+	 * 
+	 * @param labelName
+	 *            label or label expression, null for all executors
+	 */
+	public List<ControllerLoad> getLoads(String labelName) {
+		List<ControllerLoad> loads = new ArrayList<ControllerLoad>();
+		for (String jenkinsId : jenkinsIds) {
+			try {
+				loads.add(load(jenkinsId, labelName));
+			} catch (InvalidJenkinsClientException | MaximumOperationsReachedException
+					| JenkinsExecutionException e) {
+				// Not a candidate.
+			}
+		}
+		return loads;
+	}
+
+	private ControllerLoad load(String jenkinsId, String labelName)
+			throws InvalidJenkinsClientException, MaximumOperationsReachedException, JenkinsExecutionException {
+		JenkinsClient client = JenkinsClient.getClient(jenkinsId);
+		CapacitySnapshot snapshot = client.getCapacitySnapshot();
+		long latencyMillis = client.getCapacityMonitor().getLatencyMillis();
+		int queueLength = snapshot.getQueueLength() + client.getCapacityMonitor().getRoutedSinceSnapshot();
+		if (labelName == null)
+			return new ControllerLoad(jenkinsId, snapshot.getTotalExecutors(), snapshot.getIdleExecutors(),
+					queueLength, latencyMillis);
+		LabelInfo label = client.labelInfo(labelName, false);
+		return new ControllerLoad(jenkinsId, label.getTotalExecutors(), label.getIdleExecutors(), queueLength,
+				latencyMillis);
+	}
+
+	public RoutedTrigger triggerJob(String jobPath, Map<String, String> params)
+			throws MaximumOperationsReachedException, JenkinsExecutionException {
+		return triggerJob(jobPath, null, params);
+	}
+
+	/**
+	 * Will trigger build for a job specified by jobPath on the controller chosen
+	 * by the strategy. Controllers without online executors for the label are
+	 * only chosen if no controller has any. If the chosen client has no free
+	 * operation slot right now the strategy chooses among the other controllers,
+	 * and only if none has a free slot the trigger waits for one on its first
+	 * choice. Other failures are thrown as the build may already have been
+	 * queued.
+	 * 
+	 * @param jobPath
+	 *            Path of the job, for example "/ProjectABC/JobA" will trigger job
+	 *            "JobA".
+	 * @param labelName
+	 *            label the job runs on, null to consider all executors
+	 * @return the controller that got the build and the queueReferenceUrl
+	 * @throws MaximumOperationsReachedException
+	 *             if all controllers are at their operation limit and no slot
+	 *             freed up on the first choice in time
+	 * @throws JenkinsExecutionException
+	 */
+	public RoutedTrigger triggerJob(String jobPath, String labelName, Map<String, String> params)
+			throws MaximumOperationsReachedException, JenkinsExecutionException {
+		List<ControllerLoad> candidates = getLoads(labelName);
+		List<ControllerLoad> online = new ArrayList<ControllerLoad>();
+		for (ControllerLoad candidate : candidates) {
+			if (candidate.getTotalExecutors() > 0)
+				online.add(candidate);
+		}
+		if (!online.isEmpty())
+			candidates = online;
+		if (candidates.isEmpty())
+			throw new JenkinsExecutionException(
+					String.format("No controller available to trigger job %s.", jobPath));
+
+		ControllerLoad first = null;
+		List<ControllerLoad> remaining = new ArrayList<ControllerLoad>(candidates);
+		while (!remaining.isEmpty()) {
+			ControllerLoad chosen = strategy.choose(Collections.unmodifiableList(remaining));
+			remaining.remove(chosen);
+			JenkinsClient client = client(chosen);
+			if (client == null)
+				continue;
+			if (first == null)
+				first = chosen;
+			// Counted before the request, so that concurrent triggers see it.
+			client.getCapacityMonitor().routed(1);
+			String queueReferenceUrl = null;
+			try {
+				queueReferenceUrl = client.jobOps().tryTriggerJob(jobPath, params);
+			} finally {
+				if (queueReferenceUrl == null)
+					client.getCapacityMonitor().routed(-1);
+			}
+			if (queueReferenceUrl != null)
+				return new RoutedTrigger(chosen.getJenkinsId(), client.getJenkinsUrl(), queueReferenceUrl);
+		}
+
+		// Every controller is at its operation limit, wait on the first choice.
+		JenkinsClient client = first == null ? null : client(first);
+		if (client == null)
+			throw new JenkinsExecutionException(String.format("No controller available to trigger job %s.", jobPath));
+		client.getCapacityMonitor().routed(1);
+		String queueReferenceUrl = null;
+		try {
+			queueReferenceUrl = client.jobOps().triggerJob(jobPath, params);
+			return new RoutedTrigger(first.getJenkinsId(), client.getJenkinsUrl(), queueReferenceUrl);
+		} finally {
+			if (queueReferenceUrl == null)
+				client.getCapacityMonitor().routed(-1);
+		}
+	}
+
+	private static JenkinsClient client(ControllerLoad load) {
+		try {
+			return JenkinsClient.getClient(load.getJenkinsId());
+		} catch (InvalidJenkinsClientException e) {
+			// Closed since its load was read.
+			return null;
+		}
+	}
+}
@@ -0,0 +1,77 @@
+package jenkinsclient;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Size-bounded cache of {@link JobHandle}s keyed by job path. Entries expire
+ * after a fixed time to live, the least recently used entry is dropped when the
+ * cache is full.
+ */
+class JobCache {
+
+	private static class CachedHandle {
+		final JobHandle handle;
+		final long expiresAt;
+
+		CachedHandle(JobHandle handle, long expiresAt) {
+			this.handle = handle;
+			this.expiresAt = expiresAt;
+		}
+	}
+
+	private final long ttlMillis;
+	private final LinkedHashMap<String, CachedHandle> entries;
+
+	JobCache(long ttlMillis, final int maxSize) {
+		this.ttlMillis = ttlMillis;
+		this.entries = new LinkedHashMap<String, CachedHandle>(16, 0.75f, true) {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<String, CachedHandle> eldest) {
+				return size() > maxSize;
+			}
+		};
+	}
+
+	static String key(String path) {
+		StringBuilder key = new StringBuilder();
+		for (String part : path.split("/")) {
+			if (!part.isEmpty())
+				key.append('/').append(part);
+		}
+		return key.toString();
+	}
+
+	synchronized JobHandle get(String jobPath) {
+		String key = key(jobPath);
+		CachedHandle entry = entries.get(key);
+		if (entry == null)
+			return null;
+		if (entry.expiresAt < System.currentTimeMillis()) {
+			entries.remove(key);
+			return null;
+		}
+		return entry.handle;
+	}
+
+	synchronized void put(String jobPath, JobHandle handle) {
+		if (ttlMillis > 0)
+			entries.put(key(jobPath), new CachedHandle(handle, System.currentTimeMillis() + ttlMillis));
+	}
+
+	/**
+	 * Drops the entry of the path and of everything below it.
+	 */
+	synchronized void invalidate(String path) {
+		String key = key(path);
+		Iterator<String> it = entries.keySet().iterator();
+		while (it.hasNext()) {
+			String cached = it.next();
+			if (cached.equals(key) || cached.startsWith(key + "/"))
+				it.remove();
+		}
+	}
+}
@@ -0,0 +1,36 @@
+package jenkinsclient;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The parts of a job needed to trigger it or to address its builds, without
+ * the build list and other details of a full job fetch.
+ */
+class JobHandle {
+	private final String url;
+	private final boolean buildable;
+	private final List<String> parameterNames;
+
+	JobHandle(String url, boolean buildable, List<String> parameterNames) {
+		this.url = url;
+		this.buildable = buildable;
+		this.parameterNames = Collections.unmodifiableList(parameterNames);
+	}
+
+	String getUrl() {
+		return url;
+	}
+
+	boolean isBuildable() {
+		return buildable;
+	}
+
+	List<String> getParameterNames() {
+		return parameterNames;
+	}
+
+	boolean isParameterized() {
+		return !parameterNames.isEmpty();
+	}
+}
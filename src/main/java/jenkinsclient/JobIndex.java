@@ -0,0 +1,219 @@
+package jenkinsclient;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+import org.apache.http.client.HttpResponseException;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.offbytwo.jenkins.JenkinsServer;
+
+import jenkinsclient.exceptions.JenkinsExecutionException;
+import jenkinsclient.exceptions.MaximumOperationsReachedException;
+import jenkinsclient.model.JobEntry;
+
+/**
+ * Local index of the jobs and folders of a Jenkins, filled by crawling the job
+ * tree. Each request pulls several levels of the tree, the folders below those
+ * levels are crawled in parallel on a fork-join pool with as many workers as
+ * the client allows operations.
+ * 
+ * Obtained through {@link JenkinsClient#jobIndex()}. Entries are keyed by path
+ * (ex. "/Project/JobA") and sorted, so all items below a folder are one range.
+ */
+public class JobIndex extends AbstractOps {
+	private final int depth;
+	private final ConcurrentSkipListMap<String, JobEntry> entries = new ConcurrentSkipListMap<String, JobEntry>();
+	/** Item names of folders at the deepest level of a request, by folder path. */
+	private final Map<String, Set<String>> fingerprints = new ConcurrentHashMap<String, Set<String>>();
+
+	JobIndex(JenkinsClient client, int depth) {
+		super(client);
+		this.depth = Math.max(1, depth);
+	}
+
+	/**
+	 * Crawls the whole tree below the folder and replaces its entries in the
+	 * index.
+	 * 
+	 * @param folderPath
+	 *            Path of the folder, for example "/Project", "/" for all jobs
+	 * @return number of requests made
+	 * @throws MaximumOperationsReachedException
+	 * @throws JenkinsExecutionException
+	 */
+	public int crawl(String folderPath) throws MaximumOperationsReachedException, JenkinsExecutionException {
+		return crawl(folderPath, false);
+	}
+
+	/**
+	 * Crawls the folder again, skipping folders that did not change since the
+	 * last crawl. A folder is skipped if it was at the deepest level of a request,
+	 * the names of its items are unchanged and none of them is a folder; the
+	 * colors and last builds of its jobs stay those of the last crawl. All other
+	 * folders are fetched as in {@link #crawl(String)}.
+	 * 
+	 * @return number of requests made
+	 * @throws MaximumOperationsReachedException
+	 * @throws JenkinsExecutionException
+	 */
+	public int recrawl(String folderPath) throws MaximumOperationsReachedException, JenkinsExecutionException {
+		return crawl(folderPath, true);
+	}
+
+	/**
+	 * @return the entry of the job or folder, null if it was not crawled
+	 */
+	public JobEntry get(String path) {
+		return entries.get(JobCache.key(path));
+	}
+
+	/**
+	 * All entries below the folder, sorted by path. The folder itself is not
+	 * included, "/" returns the whole index.
+	 */
+	public SortedMap<String, JobEntry> list(String folderPath) {
+		return Collections.unmodifiableSortedMap(below(JobCache.key(folderPath)));
+	}
+
+	/**
+	 * Number of jobs and folders in the index.
+	 */
+	public int size() {
+		return entries.size();
+	}
+
+	public void clear() {
+		entries.clear();
+		fingerprints.clear();
+	}
+
+	private NavigableMap<String, JobEntry> below(String key) {
+		// '0' follows '/', so the range holds exactly the paths starting with key + "/".
+		return key.isEmpty() ? entries : entries.subMap(key + "/", true, key + "0", false);
+	}
+
+	private int crawl(String folderPath, boolean incremental)
+			throws MaximumOperationsReachedException, JenkinsExecutionException {
+		ForkJoinPool pool = new ForkJoinPool(Math.max(1, client.getOperationLimit()));
+		try {
+			return pool.invoke(new CrawlTask(JobCache.key(folderPath), incremental));
+		} catch (RuntimeException e) {
+			for (Throwable cause = e; cause != null; cause = cause.getCause()) {
+				if (cause instanceof MaximumOperationsReachedException)
+					throw (MaximumOperationsReachedException) cause;
+				if (cause instanceof JenkinsExecutionException)
+					throw (JenkinsExecutionException) cause;
+			}
+			throw new JenkinsExecutionException(String.format("Error crawling folder %s", folderPath), e);
+		} finally {
+			pool.shutdown();
+		}
+	}
+
+	private class CrawlTask extends RecursiveTask<Integer> {
+		private static final long serialVersionUID = 1L;
+
+		private final String folderPath;
+		private final boolean incremental;
+
+		CrawlTask(String folderPath, boolean incremental) {
+			this.folderPath = folderPath;
+			this.incremental = incremental;
+		}
+
+		@Override
+		protected Integer compute() {
+			JsonNode folder;
+			try {
+				folder = fetchTree(folderPath);
+			} catch (MaximumOperationsReachedException | JenkinsExecutionException e) {
+				throw new IllegalStateException(e);
+			}
+			List<CrawlTask> next = new ArrayList<CrawlTask>();
+			index(folderPath, folder, 1, next);
+			int requests = 1;
+			for (CrawlTask task : invokeAll(next))
+				requests += task.join();
+			return requests;
+		}
+
+		private void index(String parentPath, JsonNode parent, int level, List<CrawlTask> next) {
+			Set<String> names = new HashSet<String>();
+			for (JsonNode job : parent.path("jobs")) {
+				String name = job.path("name").asText();
+				String path = parentPath + "/" + name;
+				names.add(name);
+				JobEntry entry = Projections.toJobEntry(path, job);
+				entries.put(path, entry);
+				if (!entry.isFolder())
+					continue;
+				client.getFolderIndex().add(path);
+				if (level < depth) {
+					index(path, job, level + 1, next);
+				} else {
+					// Only the item names of this folder came with the request.
+					Set<String> childNames = new HashSet<String>();
+					for (JsonNode child : job.path("jobs"))
+						childNames.add(child.path("name").asText());
+					Set<String> previous = fingerprints.put(path, childNames);
+					if (!incremental || !childNames.equals(previous) || hasFolders(path))
+						next.add(new CrawlTask(path, incremental));
+				}
+			}
+			removeMissing(parentPath, names);
+		}
+
+		private boolean hasFolders(String folderPath) {
+			for (JobEntry entry : below(folderPath).values()) {
+				if (entry.isFolder())
+					return true;
+			}
+			return false;
+		}
+
+		/**
+		 * Drops the items of the folder that are gone, with everything below them.
+		 */
+		private void removeMissing(String folderPath, Set<String> names) {
+			Iterator<String> it = below(folderPath).keySet().iterator();
+			while (it.hasNext()) {
+				String path = it.next();
+				String name = path.substring(folderPath.length() + 1);
+				int slash = name.indexOf('/');
+				if (!names.contains(slash < 0 ? name : name.substring(0, slash))) {
+					it.remove();
+					fingerprints.remove(path);
+				}
+			}
+		}
+	}
+
+	private JsonNode fetchTree(String folderPath) throws MaximumOperationsReachedException, JenkinsExecutionException {
+		JenkinsServer jenkinsServer = null;
+		try {
+			jenkinsServer = client.getJenkinsConnection();
+			return client.fetch(generateUrl(folderPath.split("/")), Projections.jobTree(depth));
+		} catch (HttpResponseException e) {
+			if (e.getStatusCode() == 404)
+				throw new JenkinsExecutionException(String.format("Folder %s not found.", folderPath));
+			throw new JenkinsExecutionException(String.format("Error crawling folder %s", folderPath), e);
+		} catch (IOException e) {
+			throw new JenkinsExecutionException(String.format("Error crawling folder %s", folderPath), e);
+		} finally {
+			client.closeJenkinsConnection(jenkinsServer);
+		}
+	}
+}
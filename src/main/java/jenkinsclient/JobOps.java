@@ -1,15 +1,30 @@
 package jenkinsclient;
 
 import java.io.IOException;
-import java.util.HashMap;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+
+import org.apache.http.client.HttpResponseException;
 
 import com.offbytwo.jenkins.JenkinsServer;
+import com.offbytwo.jenkins.client.util.EncodingUtils;
+import com.offbytwo.jenkins.model.ExtractHeader;
 import com.offbytwo.jenkins.model.FolderJob;
-import com.offbytwo.jenkins.model.JobWithDetails;
 
 import jenkinsclient.exceptions.JenkinsExecutionException;
 import jenkinsclient.exceptions.MaximumOperationsReachedException;
+import jenkinsclient.model.BatchResult;
+import jenkinsclient.model.TriggerOutcome;
+import jenkinsclient.model.TriggerRequest;
 
 public class JobOps extends AbstractOps {
 
@@ -18,7 +33,15 @@ public class JobOps extends AbstractOps {
 	}
 
 	/**
-	 * Will create folders and subfolders if not created.
+	 * Asynchronous variants of the operations of this class.
+	 */
+	public JobOpsAsync async() {
+		return new JobOpsAsync(client, this);
+	}
+
+	/**
+	 * Will create folders and subfolders if not created. Folders already known to
+	 * the folder index of the client are not checked again.
 	 * 
 	 * @param folderPath
 	 *            Path of the folder to be created , for example "/Project/A/B/C" or
@@ -27,29 +50,176 @@ public class JobOps extends AbstractOps {
 	 * @throws JenkinsExecutionException
 	 */
 	public void createFolder(String folderPath) throws MaximumOperationsReachedException, JenkinsExecutionException {
+		OperationTimer timer = client.startOperation("JobOps.createFolder");
 		JenkinsServer jenkinsServer = null;
 		try {
 			jenkinsServer = client.getJenkinsConnection();
 			String[] folders = folderPath.split("/");
+			StringBuilder path = new StringBuilder();
 			StringBuilder folderUrl = new StringBuilder("/");
-			FolderJob folderJob = null;
 			for (String folder : folders) {
 				if (folder.isEmpty())
 					continue;
-				folderJob = new FolderJob("", folderUrl.toString());
+				String parentUrl = folderUrl.toString();
+				path.append('/').append(folder);
+				folderUrl.append("job/").append(folder).append("/");
+				if (client.getFolderIndex().contains(path.toString()))
+					continue;
 				try {
-					if (jenkinsServer.getJob(folderJob, folder) == null)
-						jenkinsServer.createFolder(folderJob, folder, client.getCrumbFlag());
+					if (!exists(folderUrl.toString()))
+						jenkinsServer.createFolder(new FolderJob("", parentUrl), folder, client.getCrumbFlag());
 				} catch (IOException e) {
 					throw new JenkinsExecutionException("Error creating folder", e);
 				}
-				folderUrl.append("job/").append(folder).append("/");
+				client.getFolderIndex().add(path.toString());
 			}
+		} catch (Exception e) {
+			timer.failed(e);
+			throw e;
 		} finally {
 			client.closeJenkinsConnection(jenkinsServer);
+			timer.stop();
 		}
 	}
 
+	/**
+	 * Will create all the folders and their subfolders if not created. The paths
+	 * are merged into one tree that is created level by level: the items of each
+	 * parent folder are listed once and the missing folders of a level are
+	 * created in parallel, with at most as many requests in flight as the client
+	 * allows operations.
+	 * 
+	 * @param folderPaths
+	 *            Paths of the folders to be created, for example "/Project/A/B/C"
+	 *            and "/Project/A/D".
+	 * @throws MaximumOperationsReachedException
+	 * @throws JenkinsExecutionException
+	 *             if a level could not be created, deeper levels are not
+	 *             attempted
+	 */
+	public void createFolders(Collection<String> folderPaths)
+			throws MaximumOperationsReachedException, JenkinsExecutionException {
+		OperationTimer timer = client.startOperation("JobOps.createFolders");
+		try {
+			List<Set<String>> levels = new ArrayList<Set<String>>();
+			for (String folderPath : folderPaths) {
+				StringBuilder path = new StringBuilder();
+				int depth = 0;
+				for (String folder : folderPath.split("/")) {
+					if (folder.isEmpty())
+						continue;
+					path.append('/').append(folder);
+					if (levels.size() == depth)
+						levels.add(new LinkedHashSet<String>());
+					levels.get(depth++).add(path.toString());
+				}
+			}
+
+			// Known for this call even if the folder index of the client is disabled.
+			final Set<String> existing = ConcurrentHashMap.newKeySet();
+			for (Set<String> level : levels) {
+				Map<String, List<String>> missingByParent = new LinkedHashMap<String, List<String>>();
+				for (String path : level) {
+					if (!client.getFolderIndex().contains(path))
+						missingByParent.computeIfAbsent(parentOf(path), parent -> new ArrayList<String>()).add(path);
+				}
+
+				List<CompletableFuture<Void>> listings = new ArrayList<CompletableFuture<Void>>();
+				for (final String parent : missingByParent.keySet()) {
+					listings.add(client.fanOut(() -> {
+						for (String name : listFolder(parent)) {
+							String child = parent + "/" + name;
+							existing.add(child);
+							client.getFolderIndex().add(child);
+						}
+						return null;
+					}));
+				}
+				awaitAll(listings);
+
+				List<CompletableFuture<Void>> creations = new ArrayList<CompletableFuture<Void>>();
+				for (List<String> missing : missingByParent.values()) {
+					for (final String path : missing) {
+						if (!existing.contains(path))
+							creations.add(client.fanOut(() -> {
+								createChildFolder(path);
+								return null;
+							}));
+					}
+				}
+				awaitAll(creations);
+			}
+		} catch (Exception e) {
+			timer.failed(e);
+			throw e;
+		} finally {
+			timer.stop();
+		}
+	}
+
+	private static String parentOf(String path) {
+		return path.substring(0, path.lastIndexOf('/'));
+	}
+
+	/**
+	 * Names of the items of the folder, the Jenkins root for an empty path.
+	 */
+	private Set<String> listFolder(String folderPath)
+			throws MaximumOperationsReachedException, JenkinsExecutionException {
+		JenkinsServer jenkinsServer = null;
+		try {
+			jenkinsServer = client.getJenkinsConnection();
+			return client.fetch(generateUrl(folderPath.split("/")), Projections.CHILD_NAMES);
+		} catch (HttpResponseException e) {
+			if (e.getStatusCode() == 404)
+				throw new JenkinsExecutionException(String.format("Folder %s not found.", folderPath));
+			throw new JenkinsExecutionException(String.format("Error listing folder %s", folderPath), e);
+		} catch (IOException e) {
+			throw new JenkinsExecutionException(String.format("Error listing folder %s", folderPath), e);
+		} finally {
+			client.closeJenkinsConnection(jenkinsServer);
+		}
+	}
+
+	private void createChildFolder(String folderPath)
+			throws MaximumOperationsReachedException, JenkinsExecutionException {
+		JenkinsServer jenkinsServer = null;
+		try {
+			jenkinsServer = client.getJenkinsConnection();
+			String parent = parentOf(folderPath);
+			FolderJob folderJob = new FolderJob("", generateUrl(parent.split("/")));
+			jenkinsServer.createFolder(folderJob, folderPath.substring(parent.length() + 1), client.getCrumbFlag());
+			client.getFolderIndex().add(folderPath);
+		} catch (IOException e) {
+			throw new JenkinsExecutionException(String.format("Error creating folder %s", folderPath), e);
+		} finally {
+			client.closeJenkinsConnection(jenkinsServer);
+		}
+	}
+
+	/**
+	 * Waits for all the operations and throws the first failure once all of them
+	 * finished.
+	 */
+	private static void awaitAll(List<CompletableFuture<Void>> operations)
+			throws MaximumOperationsReachedException, JenkinsExecutionException {
+		Throwable failure = null;
+		for (CompletableFuture<Void> operation : operations) {
+			try {
+				operation.join();
+			} catch (CompletionException e) {
+				if (failure == null)
+					failure = e.getCause();
+			}
+		}
+		if (failure instanceof MaximumOperationsReachedException)
+			throw (MaximumOperationsReachedException) failure;
+		if (failure instanceof JenkinsExecutionException)
+			throw (JenkinsExecutionException) failure;
+		if (failure != null)
+			throw new JenkinsExecutionException("Error creating folders", failure);
+	}
+
 	/**
 	 * Will delete folder or job if present.
 	 * 
@@ -60,6 +230,7 @@ public class JobOps extends AbstractOps {
 	 * @throws JenkinsExecutionException
 	 */
 	public void deleteFolderOrJob(String path) throws MaximumOperationsReachedException, JenkinsExecutionException {
+		OperationTimer timer = client.startOperation("JobOps.deleteFolderOrJob");
 		JenkinsServer jenkinsServer = null;
 		try {
 			jenkinsServer = client.getJenkinsConnection();
@@ -68,13 +239,20 @@ public class JobOps extends AbstractOps {
 			folders[folders.length - 1] = "";
 			FolderJob folderJob = new FolderJob("", generateUrl(folders));
 			try {
-				if (jenkinsServer.getJob(folderJob, folderToDelete) != null)
+				if (exists(jobUrl(path)))
 					jenkinsServer.deleteJob(folderJob, folderToDelete, client.getCrumbFlag());
 			} catch (IOException e) {
 				throw new JenkinsExecutionException("Error deleting folder or job", e);
+			} finally {
+				client.getJobCache().invalidate(path);
+				client.getFolderIndex().invalidate(path);
 			}
+		} catch (Exception e) {
+			timer.failed(e);
+			throw e;
 		} finally {
 			client.closeJenkinsConnection(jenkinsServer);
+			timer.stop();
 		}
 	}
 
@@ -93,6 +271,7 @@ public class JobOps extends AbstractOps {
 	 */
 	public void createJob(String folderPath, String jobName, String jobXml)
 			throws MaximumOperationsReachedException, JenkinsExecutionException {
+		OperationTimer timer = client.startOperation("JobOps.createJob");
 		JenkinsServer jenkinsServer = null;
 		try {
 			jenkinsServer = client.getJenkinsConnection();
@@ -102,15 +281,25 @@ public class JobOps extends AbstractOps {
 				jenkinsServer.createJob(folderJob, jobName, jobXml, client.getCrumbFlag());
 			} catch (IOException e) {
 				throw new JenkinsExecutionException(String.format("Error creating job %s", jobName), e);
+			} finally {
+				client.getJobCache().invalidate(folderPath + "/" + jobName);
 			}
+		} catch (Exception e) {
+			timer.failed(e);
+			throw e;
 		} finally {
 			client.closeJenkinsConnection(jenkinsServer);
+			timer.stop();
 		}
 	}
 
 	/**
 	 * Will trigger build for a job specified by jobPath with parameters.
 	 * 
+	 * The job is resolved through the job cache of the client, so repeated
+	 * triggers of the same job only fetch its url, parameters and buildable flag
+	 * once per cache period.
+	 * 
 	 * @param jobPath
 	 *            Path of the job, for example "/ProjectABC/JobA" will trigger job
 	 *            "JobA".
@@ -122,32 +311,157 @@ public class JobOps extends AbstractOps {
 	 */
 	public String triggerJob(String jobPath, Map<String, String> params)
 			throws MaximumOperationsReachedException, JenkinsExecutionException {
+		OperationTimer timer = client.startOperation("JobOps.triggerJob");
 		JenkinsServer jenkinsServer = null;
 		try {
 			jenkinsServer = client.getJenkinsConnection();
-			String[] folders = jobPath.split("/");
-			String jobToTrigger = folders[folders.length - 1];
-			folders[folders.length - 1] = "";
-			FolderJob folderJob = new FolderJob("", generateUrl(folders));
-			JobWithDetails job = null;
-			try {
-				job = jenkinsServer.getJob(folderJob, jobToTrigger);
-			} catch (IOException e) {
-				throw new JenkinsExecutionException(String.format("Error triggering job %s", jobPath), e);
-			}
-			if (job != null) {
-				if (params == null)
-					params = new HashMap<String, String>();
-				params.put("delay", "0sec");
-				try {
-					return job.build(params, client.getCrumbFlag()).getQueueItemUrlPart();
-				} catch (IOException e) {
-					throw new JenkinsExecutionException(String.format("Error triggering job %s", jobPath), e);
-				}
-			} else
-				throw new JenkinsExecutionException(String.format("Job %s not found.", jobToTrigger));
+			return trigger(jobPath, params);
+		} catch (Exception e) {
+			timer.failed(e);
+			throw e;
+		} finally {
+			client.closeJenkinsConnection(jenkinsServer);
+			timer.stop();
+		}
+	}
+
+	/**
+	 * Same as {@link #triggerJob(String, Map)} if the client has a free operation
+	 * slot right now, without waiting for one otherwise.
+	 * 
+	 * @return queueReferenceUrl, null if no slot was free
+	 * @throws JenkinsExecutionException
+	 */
+	String tryTriggerJob(String jobPath, Map<String, String> params) throws JenkinsExecutionException {
+		JenkinsServer jenkinsServer = client.tryJenkinsConnection();
+		if (jenkinsServer == null)
+			return null;
+		OperationTimer timer = client.startOperation("JobOps.triggerJob");
+		try {
+			return trigger(jobPath, params);
+		} catch (Exception e) {
+			timer.failed(e);
+			throw e;
 		} finally {
 			client.closeJenkinsConnection(jenkinsServer);
+			timer.stop();
+		}
+	}
+
+	private String trigger(String jobPath, Map<String, String> params) throws JenkinsExecutionException {
+		JobHandle job = resolveJob(jobPath);
+		if (!job.isBuildable())
+			throw new JenkinsExecutionException(String.format("Job %s is not buildable.", jobPath));
+		return build(jobPath, params, job.isParameterized());
+	}
+
+	/**
+	 * Will trigger build for a job specified by jobPath without looking the job
+	 * up first. The job is triggered with buildWithParameters if params are
+	 * given and with build otherwise.
+	 * 
+	 * @param jobPath
+	 *            Path of the job, for example "/ProjectABC/JobA" will trigger job
+	 *            "JobA".
+	 * 
+	 * @return queueReferenceUrl (ex. "jenkinsUrl/queue/item/itemId") the job's
+	 *         reference url for the QueueItem
+	 * @throws MaximumOperationsReachedException
+	 * @throws JenkinsExecutionException
+	 */
+	public String triggerJobDirect(String jobPath, Map<String, String> params)
+			throws MaximumOperationsReachedException, JenkinsExecutionException {
+		OperationTimer timer = client.startOperation("JobOps.triggerJobDirect");
+		JenkinsServer jenkinsServer = null;
+		try {
+			jenkinsServer = client.getJenkinsConnection();
+			return build(jobPath, params, params != null && !params.isEmpty());
+		} catch (Exception e) {
+			timer.failed(e);
+			throw e;
+		} finally {
+			client.closeJenkinsConnection(jenkinsServer);
+			timer.stop();
+		}
+	}
+
+	/**
+	 * Triggers many jobs concurrently over the shared connection pool, with at
+	 * most as many triggers in flight as the client currently allows operations.
+	 * 
+	 * @see #triggerJobs(Collection, int)
+	 */
+	public BatchResult<TriggerOutcome> triggerJobs(Collection<TriggerRequest> requests) {
+		return triggerJobs(requests, client.getOperationLimit());
+	}
+
+	/**
+	 * Triggers many jobs concurrently over the shared connection pool. A failing
+	 * trigger does not affect the others, its error is reported in its outcome.
+	 * 
+	 * @param requests
+	 *            Jobs to trigger with their parameters.
+	 * @param parallelism
+	 *            Maximum triggers in flight at the same time, further limited by
+	 *            the operation limit of the client.
+	 * @return an outcome per request, in the order of the requests, with the
+	 *         aggregate timing of the batch
+	 */
+	public BatchResult<TriggerOutcome> triggerJobs(Collection<TriggerRequest> requests, int parallelism) {
+		OperationTimer timer = client.startOperation("JobOps.triggerJobs");
+		try {
+			long start = System.currentTimeMillis();
+			final Semaphore window = new Semaphore(Math.max(1, parallelism));
+			List<CompletableFuture<TriggerOutcome>> pending = new ArrayList<CompletableFuture<TriggerOutcome>>(
+					requests.size());
+			for (final TriggerRequest request : requests) {
+				window.acquireUninterruptibly();
+				final long submitted = System.currentTimeMillis();
+				pending.add(client.fanOut(() -> triggerJob(request.getJobPath(), request.getParams()))
+						.handle((queueReferenceUrl, error) -> {
+							window.release();
+							return new TriggerOutcome(request, queueReferenceUrl, asException(error),
+									System.currentTimeMillis() - submitted);
+						}));
+			}
+
+			List<TriggerOutcome> outcomes = new ArrayList<TriggerOutcome>(pending.size());
+			for (CompletableFuture<TriggerOutcome> outcome : pending)
+				outcomes.add(outcome.join());
+			return new BatchResult<TriggerOutcome>(outcomes, System.currentTimeMillis() - start);
+		} catch (Exception e) {
+			timer.failed(e);
+			throw e;
+		} finally {
+			timer.stop();
+		}
+	}
+
+	private String build(String jobPath, Map<String, String> params, boolean withParameters)
+			throws JenkinsExecutionException {
+		StringBuilder buildUrl = new StringBuilder(jobUrl(jobPath));
+		if (withParameters) {
+			buildUrl.append("buildWithParameters?delay=0sec");
+			if (params != null) {
+				for (Map.Entry<String, String> param : params.entrySet()) {
+					if (param.getKey().equals("delay"))
+						continue;
+					buildUrl.append('&').append(EncodingUtils.encodeParam(param.getKey())).append('=')
+							.append(EncodingUtils.encodeParam(param.getValue()));
+				}
+			}
+		} else
+			buildUrl.append("build?delay=0sec");
+
+		try {
+			return client.getJenkinsHttpConnection()
+					.post(buildUrl.toString(), null, ExtractHeader.class, client.getCrumbFlag()).getLocation();
+		} catch (IOException e) {
+			if (e instanceof HttpResponseException && ((HttpResponseException) e).getStatusCode() == 404) {
+				client.getJobCache().invalidate(jobPath);
+				throw new JenkinsExecutionException(String.format("Job %s not found.", jobPath));
+			}
+			throw new JenkinsExecutionException(String.format("Error triggering job %s", jobPath), e);
 		}
 	}
 }
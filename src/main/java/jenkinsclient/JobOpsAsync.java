@@ -0,0 +1,58 @@
+package jenkinsclient;
+
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Asynchronous variants of the {@link JobOps} operations. Each call runs on the
+ * async executor of the client and is subject to its operation limit; failures
+ * complete the returned future exceptionally with the exception the synchronous
+ * method would have thrown.
+ */
+public class JobOpsAsync {
+	private final JenkinsClient client;
+	private final JobOps jobOps;
+
+	JobOpsAsync(JenkinsClient client, JobOps jobOps) {
+		this.client = client;
+		this.jobOps = jobOps;
+	}
+
+	/**
+	 * @see JobOps#createFolder(String)
+	 */
+	public CompletableFuture<Void> createFolder(String folderPath) {
+		return client.supplyAsync(() -> {
+			jobOps.createFolder(folderPath);
+			return null;
+		});
+	}
+
+	/**
+	 * @see JobOps#deleteFolderOrJob(String)
+	 */
+	public CompletableFuture<Void> deleteFolderOrJob(String path) {
+		return client.supplyAsync(() -> {
+			jobOps.deleteFolderOrJob(path);
+			return null;
+		});
+	}
+
+	/**
+	 * @see JobOps#createJob(String, String, String)
+	 */
+	public CompletableFuture<Void> createJob(String folderPath, String jobName, String jobXml) {
+		return client.supplyAsync(() -> {
+			jobOps.createJob(folderPath, jobName, jobXml);
+			return null;
+		});
+	}
+
+	/**
+	 * @see JobOps#triggerJob(String, Map)
+	 * @return future of the queueReferenceUrl of the triggered build
+	 */
+	public CompletableFuture<String> triggerJob(String jobPath, Map<String, String> params) {
+		return client.supplyAsync(() -> jobOps.triggerJob(jobPath, params));
+	}
+}
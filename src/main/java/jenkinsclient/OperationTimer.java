@@ -0,0 +1,65 @@
+package jenkinsclient;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import jenkinsclient.model.OperationStats;
+
+/**
+ * Times one call of a public operation of the client. Operations start it on
+ * entry, report a thrown exception with {@link #failed(Throwable)} and stop it
+ * in their finally block.
+ */
+class OperationTimer {
+	private final Metrics metrics;
+	private final AdmissionController admissionController;
+	private final long started = System.nanoTime();
+
+	OperationTimer(Metrics metrics, AdmissionController admissionController) {
+		this.metrics = metrics;
+		this.admissionController = admissionController;
+	}
+
+	void failed(Throwable error) {
+		metrics.failed(error);
+		admissionController.onFailure(error);
+	}
+
+	void stop() {
+		metrics.latency.record(TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - started));
+	}
+
+	/**
+	 * Latencies and errors of all calls of one operation.
+	 */
+	static class Metrics {
+		private final String name;
+		private final LatencyHistogram latency = new LatencyHistogram();
+		private final LongAdder errors = new LongAdder();
+		private final ConcurrentHashMap<String, LongAdder> errorsByType = new ConcurrentHashMap<String, LongAdder>();
+
+		Metrics(String name) {
+			this.name = name;
+		}
+
+		private void failed(Throwable error) {
+			errors.increment();
+			String type = error.getClass().getSimpleName().isEmpty() ? error.getClass().getName()
+					: error.getClass().getSimpleName();
+			errorsByType.computeIfAbsent(type, t -> new LongAdder()).increment();
+		}
+
+		OperationStats getStats() {
+			Map<String, Long> errorCounts = new TreeMap<String, Long>();
+			for (Map.Entry<String, LongAdder> entry : errorsByType.entrySet())
+				errorCounts.put(entry.getKey(), entry.getValue().sum());
+			long[] percentiles = latency.getPercentiles(50, 90, 99, 99.9);
+			return new OperationStats(name, latency.getCount(), errors.sum(), errorCounts, latency.getMean() / 1000,
+					percentiles[0] / 1000.0, percentiles[1] / 1000.0, percentiles[2] / 1000.0,
+					percentiles[3] / 1000.0, latency.getMax() / 1000.0);
+		}
+	}
+}
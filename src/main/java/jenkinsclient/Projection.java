@@ -0,0 +1,34 @@
+package jenkinsclient;
+
+import java.util.function.Function;
+
+import com.fasterxml.jackson.databind.JsonNode;
+
+/**
+ * Declares the fields an operation needs from a JSON api response and how to
+ * decode them. The tree is sent as the tree= filter of the request, so Jenkins
+ * only serializes those fields.
+ *
+ * @see JenkinsClient#fetch(String, Projection)
+ */
+final class Projection<T> {
+	private final String tree;
+	private final Function<JsonNode, T> decoder;
+
+	private Projection(String tree, Function<JsonNode, T> decoder) {
+		this.tree = tree;
+		this.decoder = decoder;
+	}
+
+	static <T> Projection<T> of(String tree, Function<JsonNode, T> decoder) {
+		return new Projection<T>(tree, decoder);
+	}
+
+	String getTree() {
+		return tree;
+	}
+
+	T decode(JsonNode node) {
+		return decoder.apply(node);
+	}
+}
@@ -0,0 +1,225 @@
+package jenkinsclient;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.offbytwo.jenkins.model.BuildResult;
+
+import jenkinsclient.model.ArtifactInfo;
+import jenkinsclient.model.BuildRecord;
+import jenkinsclient.model.BuildSummary;
+import jenkinsclient.model.ComputerInfo;
+import jenkinsclient.model.JobEntry;
+import jenkinsclient.model.LabelInfo;
+import jenkinsclient.model.QueueItemInfo;
+
+/**
+ * The projections used by the operations of the client, one per distinct set
+ * of fields an operation reads.
+ */
+final class Projections {
+	private static final String BUILD_SUMMARY_FIELDS = "number,result,building,duration,timestamp";
+
+	private Projections() {
+	}
+
+	/** Only the name, to check that an item exists. */
+	static final Projection<String> NAME = Projection.of("name", node -> node.path("name").asText());
+
+	/**
+	 * Only the mode of the controller, the smallest answer of the root api. Used
+	 * as liveness check, the version comes with the X-Jenkins header of any answer.
+	 */
+	static final Projection<String> MODE = Projection.of("mode", node -> node.path("mode").asText());
+
+	/** Names of the items of a folder or of the Jenkins root. */
+	static final Projection<Set<String>> CHILD_NAMES = Projection.of("jobs[name]", node -> {
+		Set<String> names = new HashSet<String>();
+		for (JsonNode job : node.path("jobs"))
+			names.add(job.path("name").asText());
+		return names;
+	});
+
+	static final Projection<JobHandle> JOB_HANDLE = Projection.of(
+			"url,buildable,property[parameterDefinitions[name]],actions[parameterDefinitions[name]]", node -> {
+				List<String> parameterNames = new ArrayList<String>();
+				for (String holder : new String[] { "property", "actions" }) {
+					for (JsonNode item : node.path(holder)) {
+						for (JsonNode definition : item.path("parameterDefinitions")) {
+							String name = definition.path("name").asText();
+							if (!parameterNames.contains(name))
+								parameterNames.add(name);
+						}
+					}
+				}
+				return new JobHandle(node.path("url").asText(), node.path("buildable").asBoolean(true),
+						parameterNames);
+			});
+
+	/**
+	 * The next build number of the job read in the same request as the builds.
+	 */
+	static <T> Projection<BuildOps.BuildWindow<T>> withNextBuildNumber(Projection<List<T>> builds) {
+		return Projection.of("nextBuildNumber," + builds.getTree(),
+				node -> new BuildOps.BuildWindow<T>(node.path("nextBuildNumber").asInt(), builds.decode(node)));
+	}
+
+	static final Projection<BuildSummary> BUILD_SUMMARY = Projection.of(BUILD_SUMMARY_FIELDS,
+			Projections::toBuildSummary);
+
+	/**
+	 * Builds at list indexes low (inclusive) to high (exclusive), newest first.
+	 */
+	static Projection<List<BuildSummary>> allBuilds(int low, int high) {
+		return Projection.of(String.format("allBuilds[%s]{%s,%s}", BUILD_SUMMARY_FIELDS, low, high), node -> {
+			List<BuildSummary> builds = new ArrayList<BuildSummary>();
+			for (JsonNode build : node.path("allBuilds"))
+				builds.add(toBuildSummary(build));
+			return builds;
+		});
+	}
+
+	/**
+	 * The next build number of the job and its builds at list indexes 0 to high
+	 * (exclusive), newest first.
+	 */
+	static Projection<BuildWatcher.Window> recentBuilds(int high) {
+		return Projection.of(String.format("nextBuildNumber,allBuilds[%s]{0,%s}", BUILD_SUMMARY_FIELDS, high),
+				node -> {
+					List<BuildSummary> builds = new ArrayList<BuildSummary>();
+					for (JsonNode build : node.path("allBuilds"))
+						builds.add(toBuildSummary(build));
+					return new BuildWatcher.Window(node.path("nextBuildNumber").asInt(), builds);
+				});
+	}
+
+	/**
+	 * Builds of the job at list indexes low (inclusive) to high (exclusive) with
+	 * their queue wait, reported by the metrics plugin if installed.
+	 */
+	static Projection<List<BuildRecord>> allBuildRecords(final String jobPath, int low, int high) {
+		return Projection.of(String.format("allBuilds[%s,actions[queuingDurationMillis]]{%s,%s}",
+				BUILD_SUMMARY_FIELDS, low, high), node -> {
+					List<BuildRecord> builds = new ArrayList<BuildRecord>();
+					for (JsonNode build : node.path("allBuilds")) {
+						BuildSummary summary = toBuildSummary(build);
+						long queueWaitMillis = -1;
+						for (JsonNode action : build.path("actions")) {
+							if (action.has("queuingDurationMillis"))
+								queueWaitMillis = action.path("queuingDurationMillis").asLong();
+						}
+						builds.add(new BuildRecord(jobPath, summary.getNumber(), summary.getResult(),
+								summary.getTimestamp(), summary.getDuration(), queueWaitMillis));
+					}
+					return builds;
+				});
+	}
+
+	static final Projection<Set<Long>> QUEUE_ITEM_IDS = Projection.of("items[id]", node -> {
+		Set<Long> ids = new HashSet<Long>();
+		for (JsonNode item : node.path("items"))
+			ids.add(item.path("id").asLong());
+		return ids;
+	});
+
+	private static final String QUEUE_ITEM_FIELDS = "id,cancelled,blocked,buildable,why,inQueueSince,executable[number,url],task[url]";
+
+	static final Projection<QueueItemInfo> QUEUE_ITEM = Projection.of(QUEUE_ITEM_FIELDS, Projections::toQueueItem);
+
+	/**
+	 * The items currently waiting in the queue.
+	 */
+	static final Projection<List<QueueItemInfo>> QUEUE_ITEMS = Projection.of("items[" + QUEUE_ITEM_FIELDS + "]",
+			node -> {
+				List<QueueItemInfo> items = new ArrayList<QueueItemInfo>();
+				for (JsonNode item : node.path("items"))
+					items.add(toQueueItem(item));
+				return items;
+			});
+
+	private static QueueItemInfo toQueueItem(JsonNode node) {
+		JsonNode executable = node.path("executable");
+		boolean started = executable.hasNonNull("url");
+		JsonNode task = node.path("task");
+		return new QueueItemInfo(node.path("id").asLong(), node.path("cancelled").asBoolean(),
+				node.path("blocked").asBoolean(), node.path("buildable").asBoolean(),
+				node.hasNonNull("why") ? node.path("why").asText() : null, node.path("inQueueSince").asLong(),
+				started ? executable.path("number").asInt() : -1, started ? executable.path("url").asText() : null,
+				task.hasNonNull("url") ? task.path("url").asText() : null);
+	}
+
+	static final Projection<List<ArtifactInfo>> ARTIFACTS = Projection.of("artifacts[fileName,relativePath,displayPath]",
+			node -> {
+				List<ArtifactInfo> artifacts = new ArrayList<ArtifactInfo>();
+				for (JsonNode artifact : node.path("artifacts"))
+					artifacts.add(new ArtifactInfo(artifact.path("fileName").asText(),
+							artifact.path("relativePath").asText(),
+							artifact.hasNonNull("displayPath") ? artifact.path("displayPath").asText() : null));
+				return artifacts;
+			});
+
+	static final Projection<LabelInfo> LABEL = Projection.of("name,totalExecutors,idleExecutors,busyExecutors,offline",
+			node -> new LabelInfo(node.path("name").asText(), node.path("totalExecutors").asInt(),
+					node.path("idleExecutors").asInt(), node.path("busyExecutors").asInt(),
+					node.path("offline").asBoolean()));
+
+	static final Projection<List<ComputerInfo>> COMPUTERS = Projection
+			.of("computer[displayName,offline,numExecutors,assignedLabels[name],executors[idle]]", node -> {
+				List<ComputerInfo> computers = new ArrayList<ComputerInfo>();
+				for (JsonNode computer : node.path("computer")) {
+					List<String> labels = new ArrayList<String>();
+					for (JsonNode label : computer.path("assignedLabels"))
+						labels.add(label.path("name").asText());
+					int idle = 0;
+					for (JsonNode executor : computer.path("executors")) {
+						if (executor.path("idle").asBoolean())
+							idle++;
+					}
+					computers.add(new ComputerInfo(computer.path("displayName").asText(),
+							computer.path("numExecutors").asInt(), idle, computer.path("offline").asBoolean(),
+							labels));
+				}
+				return computers;
+			});
+
+	/**
+	 * The items of a folder and of its subfolders depth levels deep, each with its
+	 * class, color and last build. The deepest level only has the names of the
+	 * items of its folders, to tell folders from jobs and detect changes below.
+	 */
+	static Projection<JsonNode> jobTree(int depth) {
+		String tree = "jobs[name]";
+		for (int level = 0; level < Math.max(1, depth); level++)
+			tree = String.format("jobs[name,url,color,lastBuild[%s],%s]", BUILD_SUMMARY_FIELDS, tree);
+		return Projection.of(tree, node -> node);
+	}
+
+	/**
+	 * The item of a job tree node, its children are not read.
+	 */
+	static JobEntry toJobEntry(String path, JsonNode job) {
+		JsonNode lastBuild = job.path("lastBuild");
+		return new JobEntry(path, job.path("url").asText(), job.hasNonNull("_class") ? job.path("_class").asText() : null,
+				job.has("jobs"),
+				job.hasNonNull("color") ? job.path("color").asText() : null,
+				lastBuild.isObject() ? toBuildSummary(lastBuild) : null);
+	}
+
+	private static BuildSummary toBuildSummary(JsonNode build) {
+		boolean building = build.path("building").asBoolean();
+		BuildResult result;
+		if (build.hasNonNull("result")) {
+			try {
+				result = BuildResult.valueOf(build.path("result").asText());
+			} catch (IllegalArgumentException e) {
+				result = BuildResult.UNKNOWN;
+			}
+		} else
+			result = building ? BuildResult.BUILDING : BuildResult.UNKNOWN;
+		return new BuildSummary(build.path("number").asInt(), result, building, build.path("duration").asLong(),
+				build.path("timestamp").asLong());
+	}
+}
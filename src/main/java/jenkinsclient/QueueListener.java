@@ -0,0 +1,12 @@
+package jenkinsclient;
+
+import jenkinsclient.model.QueueItemStatus;
+
+/**
+ * Notified by a {@link QueueWatcher} once a watched queue item became
+ * executable, was cancelled or disappeared.
+ */
+public interface QueueListener {
+
+	void onResolved(QueueItemStatus status);
+}
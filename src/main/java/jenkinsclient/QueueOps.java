@@ -1,39 +1,118 @@
 package jenkinsclient;
 
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Semaphore;
+import java.util.function.Predicate;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 
 import org.apache.http.client.HttpResponseException;
 
 import com.offbytwo.jenkins.JenkinsServer;
-import com.offbytwo.jenkins.model.Build;
 import com.offbytwo.jenkins.model.QueueItem;
 import com.offbytwo.jenkins.model.QueueReference;
 
 import jenkinsclient.exceptions.JenkinsExecutionException;
 import jenkinsclient.exceptions.MaximumOperationsReachedException;
+import jenkinsclient.model.BatchResult;
+import jenkinsclient.model.CancelOutcome;
+import jenkinsclient.model.QueueItemInfo;
 
 public class QueueOps extends AbstractOps {
+	private static final Pattern QUEUE_ITEM_URL = Pattern.compile("/queue/item/(\\d+)/?$");
 
 	public QueueOps(JenkinsClient client) {
 		super(client);
 	}
 
-	private Build getBuild(JenkinsServer jenkinsServer, String queueReferenceUrl) throws JenkinsExecutionException {
+	/**
+	 * Asynchronous variants of the operations of this class.
+	 */
+	public QueueOpsAsync async() {
+		return new QueueOpsAsync(client, this);
+	}
+
+	/**
+	 * Fetches the fields of the queue item the operations of this class need. The
+	 * caller must hold an operation slot.
+	 */
+	private QueueItemInfo fetchQueueItem(String queueReferenceUrl) throws JenkinsExecutionException {
 		try {
-			return jenkinsServer.getBuild(jenkinsServer.getQueueItem(new QueueReference(queueReferenceUrl)));
+			return client.fetch(queueReferenceUrl, Projections.QUEUE_ITEM);
 		} catch (IOException e) {
 			throw new JenkinsExecutionException(
-					String.format("Error getting build with queue reference url %s", queueReferenceUrl), e);
+					String.format("Error checking if build %s is in queue", queueReferenceUrl), e);
 		}
 	}
 
+	/**
+	 * Fetches the queue item in an operation slot of its own. Identical calls
+	 * running at the same time share the request, whichever of the read
+	 * operations of this class they come from.
+	 */
+	private QueueItemInfo readQueueItem(String queueReferenceUrl)
+			throws MaximumOperationsReachedException, JenkinsExecutionException {
+		return client.getSingleFlight().execute("queue " + client.absoluteUrl(queueReferenceUrl), () -> {
+			JenkinsServer jenkinsServer = null;
+			try {
+				jenkinsServer = client.getJenkinsConnection();
+				return fetchQueueItem(queueReferenceUrl);
+			} finally {
+				client.closeJenkinsConnection(jenkinsServer);
+			}
+		});
+	}
+
+	private QueueItemInfo readStartedQueueItem(String queueReferenceUrl)
+			throws MaximumOperationsReachedException, JenkinsExecutionException {
+		QueueItemInfo q = readQueueItem(queueReferenceUrl);
+		if (!q.isExecutable())
+			throw new JenkinsExecutionException(
+					String.format("Build with queue reference url %s has not started yet", queueReferenceUrl));
+		return q;
+	}
+
 	public QueueItem getQueueItem(JenkinsServer jenkinsServer, String queueReferenceUrl)
 			throws MaximumOperationsReachedException, JenkinsExecutionException {
+		OperationTimer timer = client.startOperation("QueueOps.getQueueItem");
 		try {
-			return jenkinsServer.getQueueItem(new QueueReference(queueReferenceUrl));
-		} catch (IOException e) {
-			throw new JenkinsExecutionException(
-					String.format("Error checking if build %s is in queue", queueReferenceUrl), e);
+			try {
+				return jenkinsServer.getQueueItem(new QueueReference(queueReferenceUrl));
+			} catch (IOException e) {
+				throw new JenkinsExecutionException(
+						String.format("Error checking if build %s is in queue", queueReferenceUrl), e);
+			}
+		} catch (Exception e) {
+			timer.failed(e);
+			throw e;
+		} finally {
+			timer.stop();
+		}
+	}
+
+	/**
+	 * Get the state of the queue item, decoded from a projected request.
+	 * 
+	 * @param queueReferenceUrl
+	 *            (ex. "jenkinsUrl/queue/item/itemId/") was returned when the job
+	 *            was triggered.
+	 * @throws MaximumOperationsReachedException
+	 * @throws JenkinsExecutionException
+	 */
+	public QueueItemInfo getQueueItemInfo(String queueReferenceUrl)
+			throws MaximumOperationsReachedException, JenkinsExecutionException {
+		OperationTimer timer = client.startOperation("QueueOps.getQueueItemInfo");
+		try {
+			return readQueueItem(queueReferenceUrl);
+		} catch (Exception e) {
+			timer.failed(e);
+			throw e;
+		} finally {
+			timer.stop();
 		}
 	}
 
@@ -48,12 +127,14 @@ public class QueueOps extends AbstractOps {
 	 */
 	public String getBuildUrl(String queueReferenceUrl)
 			throws MaximumOperationsReachedException, JenkinsExecutionException {
-		JenkinsServer jenkinsServer = null;
+		OperationTimer timer = client.startOperation("QueueOps.getBuildUrl");
 		try {
-			jenkinsServer = client.getJenkinsConnection();
-			return getBuild(jenkinsServer, queueReferenceUrl).getUrl();
+			return readStartedQueueItem(queueReferenceUrl).getBuildUrl();
+		} catch (Exception e) {
+			timer.failed(e);
+			throw e;
 		} finally {
-			client.closeJenkinsConnection(jenkinsServer);
+			timer.stop();
 		}
 	}
 
@@ -68,12 +149,14 @@ public class QueueOps extends AbstractOps {
 	 */
 	public int getBuildNumber(String queueReferenceUrl)
 			throws MaximumOperationsReachedException, JenkinsExecutionException {
-		JenkinsServer jenkinsServer = null;
+		OperationTimer timer = client.startOperation("QueueOps.getBuildNumber");
 		try {
-			jenkinsServer = client.getJenkinsConnection();
-			return getBuild(jenkinsServer, queueReferenceUrl).getNumber();
+			return readStartedQueueItem(queueReferenceUrl).getBuildNumber();
+		} catch (Exception e) {
+			timer.failed(e);
+			throw e;
 		} finally {
-			client.closeJenkinsConnection(jenkinsServer);
+			timer.stop();
 		}
 	}
 
@@ -88,13 +171,15 @@ public class QueueOps extends AbstractOps {
 	 */
 	public boolean isInQueue(String queueReferenceUrl)
 			throws MaximumOperationsReachedException, JenkinsExecutionException {
-		JenkinsServer jenkinsServer = null;
+		OperationTimer timer = client.startOperation("QueueOps.isInQueue");
 		try {
-			jenkinsServer = client.getJenkinsConnection();
-			QueueItem q = getQueueItem(jenkinsServer, queueReferenceUrl);
-			return q != null && q.getExecutable() == null ? true : false;
+			QueueItemInfo q = readQueueItem(queueReferenceUrl);
+			return !q.isExecutable();
+		} catch (Exception e) {
+			timer.failed(e);
+			throw e;
 		} finally {
-			client.closeJenkinsConnection(jenkinsServer);
+			timer.stop();
 		}
 	}
 
@@ -110,13 +195,15 @@ public class QueueOps extends AbstractOps {
 	 */
 	public boolean isCancelledInQueue(String queueReferenceUrl)
 			throws MaximumOperationsReachedException, JenkinsExecutionException {
-		JenkinsServer jenkinsServer = null;
+		OperationTimer timer = client.startOperation("QueueOps.isCancelledInQueue");
 		try {
-			jenkinsServer = client.getJenkinsConnection();
-			QueueItem q = getQueueItem(jenkinsServer, queueReferenceUrl);
-			return (q != null && q.getExecutable() == null && q.isCancelled()) ? true : false;
+			QueueItemInfo q = readQueueItem(queueReferenceUrl);
+			return !q.isExecutable() && q.isCancelled();
+		} catch (Exception e) {
+			timer.failed(e);
+			throw e;
 		} finally {
-			client.closeJenkinsConnection(jenkinsServer);
+			timer.stop();
 		}
 	}
 
@@ -132,28 +219,138 @@ public class QueueOps extends AbstractOps {
 	 */
 	public void stopQueuedBuild(String queueReferenceUrl)
 			throws MaximumOperationsReachedException, JenkinsExecutionException {
+		OperationTimer timer = client.startOperation("QueueOps.stopQueuedBuild");
 		JenkinsServer jenkinsServer = null;
 		try {
 			jenkinsServer = client.getJenkinsConnection();
 
-			QueueItem q = getQueueItem(jenkinsServer, queueReferenceUrl);
-			String itemId = q.getId().toString();
+			// The id is part of the url, the item is only fetched for urls of another form.
+			Matcher matcher = QUEUE_ITEM_URL.matcher(queueReferenceUrl);
+			long itemId = matcher.find() ? Long.parseLong(matcher.group(1))
+					: fetchQueueItem(queueReferenceUrl).getId();
 
 			try {
-				client.getJenkinsHttpConnection().get(client.getJenkinsUrl() + "/queue/cancelItem?id=" + itemId);
-			} catch (IOException ex) {
-				if (((HttpResponseException) ex).getStatusCode() == 405) {
-					try {
-						client.getJenkinsHttpConnection()
-								.post(client.getJenkinsUrl() + "/queue/cancelItem?id=" + itemId, client.getCrumbFlag());
-					} catch (IOException e) {
-						throw new JenkinsExecutionException(String.format(
-								"Error stopping queued build with queue reference url %s", queueReferenceUrl), e);
-					}
-				}
+				cancelItem(itemId);
+			} catch (IOException e) {
+				throw new JenkinsExecutionException(
+						String.format("Error stopping queued build with queue reference url %s", queueReferenceUrl), e);
 			}
+		} catch (Exception e) {
+			timer.failed(e);
+			throw e;
 		} finally {
 			client.closeJenkinsConnection(jenkinsServer);
+			timer.stop();
+		}
+	}
+
+	/**
+	 * Cancels the queue item with one request. Jenkins versions that only accept
+	 * POST answer a GET with 405, which is remembered for the client so that
+	 * later cancellations send a single POST. The caller must hold an operation
+	 * slot.
+	 */
+	private void cancelItem(long itemId) throws IOException {
+		String cancelUrl = client.getJenkinsUrl() + "/queue/cancelItem?id=" + itemId;
+		if (!client.isCancelByPost()) {
+			try {
+				client.getJenkinsHttpConnection().get(cancelUrl);
+				return;
+			} catch (HttpResponseException e) {
+				if (e.getStatusCode() != 405)
+					throw e;
+				client.setCancelByPost();
+			}
 		}
+		client.getJenkinsHttpConnection().post(cancelUrl, client.getCrumbFlag());
+	}
+
+	/**
+	 * Cancels many queued builds concurrently, with at most as many
+	 * cancellations in flight as the client currently allows operations. A
+	 * failing cancellation does not affect the others, its error is reported in
+	 * its outcome.
+	 * 
+	 * @param queueReferenceUrls
+	 *            (ex. "jenkinsUrl/queue/item/itemId/") were returned when the
+	 *            jobs were triggered.
+	 * @return an outcome per url, in the order of the urls, with the aggregate
+	 *         timing of the batch
+	 */
+	public BatchResult<CancelOutcome> cancelQueued(Collection<String> queueReferenceUrls) {
+		OperationTimer timer = client.startOperation("QueueOps.cancelQueued");
+		try {
+			return cancelAll(queueReferenceUrls);
+		} catch (Exception e) {
+			timer.failed(e);
+			throw e;
+		} finally {
+			timer.stop();
+		}
+	}
+
+	/**
+	 * Cancels the waiting queue items matching the filter, read from the queue
+	 * with one projected request.
+	 * 
+	 * @param filter
+	 *            selects the items to cancel, for example by
+	 *            {@link QueueItemInfo#getTaskUrl()}
+	 * @see #cancelQueued(Collection)
+	 * @throws MaximumOperationsReachedException
+	 * @throws JenkinsExecutionException
+	 */
+	public BatchResult<CancelOutcome> cancelQueued(Predicate<QueueItemInfo> filter)
+			throws MaximumOperationsReachedException, JenkinsExecutionException {
+		OperationTimer timer = client.startOperation("QueueOps.cancelQueued");
+		try {
+			List<String> queueReferenceUrls = new ArrayList<String>();
+			JenkinsServer jenkinsServer = null;
+			try {
+				jenkinsServer = client.getJenkinsConnection();
+				for (QueueItemInfo item : client.fetch("/queue/", Projections.QUEUE_ITEMS)) {
+					if (!item.isExecutable() && !item.isCancelled() && filter.test(item))
+						queueReferenceUrls.add(client.absoluteUrl("/queue/item/" + item.getId() + "/"));
+				}
+			} catch (IOException e) {
+				throw new JenkinsExecutionException("Error reading the queue", e);
+			} finally {
+				client.closeJenkinsConnection(jenkinsServer);
+			}
+			return cancelAll(queueReferenceUrls);
+		} catch (Exception e) {
+			timer.failed(e);
+			throw e;
+		} finally {
+			timer.stop();
+		}
+	}
+
+	/**
+	 * Cancels the queue items with at most as many cancellations in flight as the
+	 * client currently allows operations.
+	 */
+	private BatchResult<CancelOutcome> cancelAll(Collection<String> queueReferenceUrls) {
+		long start = System.currentTimeMillis();
+		final Semaphore window = new Semaphore(Math.max(1, client.getOperationLimit()));
+		List<CompletableFuture<CancelOutcome>> pending = new ArrayList<CompletableFuture<CancelOutcome>>(
+				queueReferenceUrls.size());
+		for (final String queueReferenceUrl : queueReferenceUrls) {
+			window.acquireUninterruptibly();
+			final long submitted = System.currentTimeMillis();
+			pending.add(client.fanOut(() -> {
+				stopQueuedBuild(queueReferenceUrl);
+				return null;
+			}).handle((result, error) -> {
+				window.release();
+				return new CancelOutcome(queueReferenceUrl, asException(error),
+						System.currentTimeMillis() - submitted);
+			}));
+		}
+
+		List<CancelOutcome> outcomes = new ArrayList<CancelOutcome>(pending.size());
+		for (CompletableFuture<CancelOutcome> outcome : pending)
+			outcomes.add(outcome.join());
+		return new BatchResult<CancelOutcome>(outcomes, System.currentTimeMillis() - start);
 	}
 }
@@ -0,0 +1,55 @@
+package jenkinsclient;
+
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Asynchronous variants of the {@link QueueOps} operations. Each call runs on
+ * the async executor of the client and is subject to its operation limit.
+ */
+public class QueueOpsAsync {
+	private final JenkinsClient client;
+	private final QueueOps queueOps;
+
+	QueueOpsAsync(JenkinsClient client, QueueOps queueOps) {
+		this.client = client;
+		this.queueOps = queueOps;
+	}
+
+	/**
+	 * @see QueueOps#getBuildUrl(String)
+	 */
+	public CompletableFuture<String> getBuildUrl(String queueReferenceUrl) {
+		return client.supplyAsync(() -> queueOps.getBuildUrl(queueReferenceUrl));
+	}
+
+	/**
+	 * @see QueueOps#getBuildNumber(String)
+	 */
+	public CompletableFuture<Integer> getBuildNumber(String queueReferenceUrl) {
+		return client.supplyAsync(() -> queueOps.getBuildNumber(queueReferenceUrl));
+	}
+
+	/**
+	 * @see QueueOps#isInQueue(String)
+	 */
+	public CompletableFuture<Boolean> isInQueue(String queueReferenceUrl) {
+		return client.supplyAsync(() -> queueOps.isInQueue(queueReferenceUrl));
+	}
+
+	/**
+	 * @see QueueOps#isCancelledInQueue(String)
+	 */
+	public CompletableFuture<Boolean> isCancelledInQueue(String queueReferenceUrl) {
+		return client.supplyAsync(() -> queueOps.isCancelledInQueue(queueReferenceUrl));
+	}
+
+	/**
+	 * @see QueueOps#stopQueuedBuild(String)
+	 */
+	public CompletableFuture<Void> stopQueuedBuild(String queueReferenceUrl) {
+		return client.supplyAsync(() -> {
+			queueOps.stopQueuedBuild(queueReferenceUrl);
+			return null;
+		});
+	}
+}
@@ -0,0 +1,203 @@
+package jenkinsclient;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.apache.http.client.HttpResponseException;
+
+import com.offbytwo.jenkins.JenkinsServer;
+
+import jenkinsclient.exceptions.MaximumOperationsReachedException;
+import jenkinsclient.model.QueueItemInfo;
+import jenkinsclient.model.QueueItemStatus;
+import jenkinsclient.model.QueueItemStatus.State;
+
+/**
+ * Tracks many triggered builds until they leave the queue. Each tick fetches
+ * the ids of the whole queue once, only items that are no longer in it are
+ * looked up individually, so the cost of a tick does not grow with the number
+ * of watched items that are still waiting.
+ * 
+ * Obtained through {@link JenkinsClient#queueWatcher()}, ticks are scheduled
+ * on the scheduler of the client and sent from its async executor, polling
+ * stops while nothing is watched.
+ */
+public class QueueWatcher {
+	private static final Pattern QUEUE_ITEM_ID = Pattern.compile("/queue/item/(\\d+)");
+
+	private static class Watch {
+		final String queueReferenceUrl;
+		final CompletableFuture<QueueItemStatus> future = new CompletableFuture<QueueItemStatus>();
+		// Callers of watch, updated inside the compute functions of watches.
+		int holders;
+
+		Watch(String queueReferenceUrl) {
+			this.queueReferenceUrl = queueReferenceUrl;
+		}
+	}
+
+	private final JenkinsClient client;
+	private final long pollIntervalMillis;
+	private final Map<Long, Watch> watches = new ConcurrentHashMap<Long, Watch>();
+	private ScheduledFuture<?> poller;
+	private final AtomicBoolean ticking = new AtomicBoolean();
+
+	QueueWatcher(JenkinsClient client, long pollIntervalMillis) {
+		this.client = client;
+		this.pollIntervalMillis = pollIntervalMillis;
+	}
+
+	/**
+	 * Starts watching the queue item.
+	 * 
+	 * @param queueReferenceUrl
+	 *            (ex. "jenkinsUrl/queue/item/itemId/") was returned when the job
+	 *            was triggered.
+	 * @return future completed once the item left the queue
+	 */
+	public CompletableFuture<QueueItemStatus> watch(String queueReferenceUrl) {
+		Watch watch = watches.compute(queueItemId(queueReferenceUrl), (id, watched) -> {
+			if (watched == null)
+				watched = new Watch(queueReferenceUrl);
+			watched.holders++;
+			return watched;
+		});
+		startPolling();
+		return watch.future;
+	}
+
+	/**
+	 * Starts watching the queue item and notifies the listener once it left the
+	 * queue.
+	 */
+	public CompletableFuture<QueueItemStatus> watch(String queueReferenceUrl, final QueueListener listener) {
+		CompletableFuture<QueueItemStatus> future = watch(queueReferenceUrl);
+		future.thenAccept(listener::onResolved);
+		return future;
+	}
+
+	/**
+	 * Stops watching the queue item, its future is cancelled for all callers of
+	 * {@link #watch(String)}.
+	 */
+	public void unwatch(String queueReferenceUrl) {
+		Watch watch = watches.remove(queueItemId(queueReferenceUrl));
+		if (watch != null)
+			watch.future.cancel(false);
+	}
+
+	/**
+	 * Gives up one watch of the queue item returned as future. The item stays
+	 * watched while other callers of {@link #watch(String)} wait for it, the last
+	 * one cancels the future.
+	 */
+	void release(String queueReferenceUrl, CompletableFuture<QueueItemStatus> future) {
+		boolean[] dropped = new boolean[1];
+		watches.computeIfPresent(queueItemId(queueReferenceUrl), (id, watch) -> {
+			if (watch.future != future || --watch.holders > 0)
+				return watch;
+			dropped[0] = true;
+			return null;
+		});
+		if (dropped[0])
+			future.cancel(false);
+	}
+
+	/**
+	 * Number of queue items currently watched.
+	 */
+	public int getWatchedCount() {
+		return watches.size();
+	}
+
+	static long queueItemId(String queueReferenceUrl) {
+		Matcher matcher = QUEUE_ITEM_ID.matcher(queueReferenceUrl);
+		if (!matcher.find())
+			throw new IllegalArgumentException(
+					String.format("%s is not a queue reference url", queueReferenceUrl));
+		return Long.parseLong(matcher.group(1));
+	}
+
+	private synchronized void startPolling() {
+		if (poller == null)
+			poller = client.getScheduler().scheduleWithFixedDelay(() -> startTick(), 0, pollIntervalMillis,
+					TimeUnit.MILLISECONDS);
+	}
+
+	/**
+	 * The requests of a tick block, they are sent from the async executor to keep
+	 * the shared scheduler free. A tick is skipped while the previous one still
+	 * runs.
+	 */
+	private void startTick() {
+		if (!ticking.compareAndSet(false, true))
+			return;
+		client.supplyAsync(() -> {
+			tick();
+			return null;
+		}).whenComplete((result, e) -> ticking.set(false));
+	}
+
+	private synchronized void stopPollingIfIdle() {
+		if (watches.isEmpty() && poller != null) {
+			poller.cancel(false);
+			poller = null;
+		}
+	}
+
+	void tick() {
+		if (watches.isEmpty()) {
+			stopPollingIfIdle();
+			return;
+		}
+		JenkinsServer jenkinsServer = null;
+		try {
+			jenkinsServer = client.getJenkinsConnection();
+			Set<Long> queued = client.fetch("/queue/", Projections.QUEUE_ITEM_IDS);
+
+			for (Map.Entry<Long, Watch> entry : watches.entrySet()) {
+				if (!queued.contains(entry.getKey()))
+					lookupLeftItem(entry.getKey(), entry.getValue());
+			}
+		} catch (IOException | MaximumOperationsReachedException e) {
+			// Transient failure, the next tick retries.
+		} catch (RuntimeException e) {
+			// Never let an exception cancel the periodic task.
+		} finally {
+			client.closeJenkinsConnection(jenkinsServer);
+		}
+		stopPollingIfIdle();
+	}
+
+	private void lookupLeftItem(long id, Watch watch) throws IOException {
+		QueueItemInfo item;
+		try {
+			item = client.fetch("/queue/item/" + id + "/", Projections.QUEUE_ITEM);
+		} catch (HttpResponseException e) {
+			if (e.getStatusCode() != 404)
+				throw e;
+			resolve(id, watch, new QueueItemStatus(watch.queueReferenceUrl, State.DISAPPEARED, -1, null));
+			return;
+		}
+		if (item.isExecutable()) {
+			resolve(id, watch, new QueueItemStatus(watch.queueReferenceUrl, State.EXECUTABLE, item.getBuildNumber(),
+					item.getBuildUrl()));
+		} else if (item.isCancelled()) {
+			resolve(id, watch, new QueueItemStatus(watch.queueReferenceUrl, State.CANCELLED, -1, null));
+		}
+		// Otherwise the item is between leaving the queue and starting, check again next tick.
+	}
+
+	private void resolve(long id, Watch watch, QueueItemStatus status) {
+		watches.remove(id, watch);
+		watch.future.complete(status);
+	}
+}
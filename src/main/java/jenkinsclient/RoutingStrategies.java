@@ -0,0 +1,102 @@
+package jenkinsclient;
+
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+
+import jenkinsclient.model.ControllerLoad;
+
+/**
+ * The routing strategies shipped with the client.
+ */
+public final class RoutingStrategies {
+
+	/**
+	 * Most free capacity first, then the fastest controller. Latency -1 (unknown)
+	 * sorts last.
+	 */
+	private static final Comparator<ControllerLoad> BY_LOAD = Comparator
+			.comparingInt(ControllerLoad::getFreeCapacity).reversed()
+			.thenComparingLong(load -> load.getLatencyMillis() < 0 ? Long.MAX_VALUE : load.getLatencyMillis());
+
+	private RoutingStrategies() {
+	}
+
+	/**
+	 * Always the controller with the most idle executors not claimed by its queue
+	 * or by triggers routed since its snapshot, ties go to the controller with the
+	 * lowest latency.
+	 */
+	public static RoutingStrategy leastLoaded() {
+		return candidates -> {
+			ControllerLoad best = candidates.get(0);
+			for (ControllerLoad candidate : candidates) {
+				if (BY_LOAD.compare(candidate, best) < 0)
+					best = candidate;
+			}
+			return best;
+		};
+	}
+
+	/**
+	 * The better of two randomly picked controllers, by the order of
+	 * {@link #leastLoaded()}. Spreads builds of many routers acting on the same
+	 * stale snapshot instead of sending all of them to the one least loaded
+	 * controller.
+	 */
+	public static RoutingStrategy powerOfTwoChoices() {
+		return candidates -> {
+			if (candidates.size() == 1)
+				return candidates.get(0);
+			ThreadLocalRandom random = ThreadLocalRandom.current();
+			int first = random.nextInt(candidates.size());
+			int second = random.nextInt(candidates.size() - 1);
+			if (second >= first)
+				second++;
+			return BY_LOAD.compare(candidates.get(second), candidates.get(first)) < 0 ? candidates.get(second)
+					: candidates.get(first);
+		};
+	}
+
+	/**
+	 * Random controller with a probability proportional to its weight times its
+	 * idle executors plus one, so weights set the share of builds and saturated
+	 * controllers still get some. Controllers without a weight have weight 1,
+	 * controllers with weight 0 or less are only chosen if no other is left.
+	 * 
+	 * @param weights
+	 *            weight by jenkinsId
+	 */
+	public static RoutingStrategy weighted(Map<String, Integer> weights) {
+		final Map<String, Integer> copy = new HashMap<String, Integer>(weights);
+		return candidates -> {
+			double[] shares = new double[candidates.size()];
+			double sum = 0;
+			for (int i = 0; i < shares.length; i++) {
+				ControllerLoad candidate = candidates.get(i);
+				Integer weight = copy.get(candidate.getJenkinsId());
+				shares[i] = Math.max(0, weight == null ? 1 : weight) * (Math.max(0, candidate.getIdleExecutors()) + 1.0);
+				sum += shares[i];
+			}
+			if (sum == 0)
+				return leastLoaded().choose(candidates);
+			double pick = ThreadLocalRandom.current().nextDouble(sum);
+			for (int i = 0; i < shares.length; i++) {
+				pick -= shares[i];
+				if (pick < 0 && shares[i] > 0)
+					return candidates.get(i);
+			}
+			return chooseLastPositive(candidates, shares);
+		};
+	}
+
+	private static ControllerLoad chooseLastPositive(List<ControllerLoad> candidates, double[] shares) {
+		for (int i = shares.length - 1; i >= 0; i--) {
+			if (shares[i] > 0)
+				return candidates.get(i);
+		}
+		return candidates.get(0);
+	}
+}
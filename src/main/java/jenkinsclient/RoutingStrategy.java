@@ -0,0 +1,19 @@
+package jenkinsclient;
+
+import java.util.List;
+
+import jenkinsclient.model.ControllerLoad;
+
+/**
+ * Picks the controller a {@link JenkinsRouter} triggers a build on. Common
+ * strategies are in {@link RoutingStrategies}.
+ */
+public interface RoutingStrategy {
+
+	/**
+	 * @param candidates
+	 *            loads of the candidate controllers, never empty
+	 * @return one of the candidates
+	 */
+	ControllerLoad choose(List<ControllerLoad> candidates);
+}
@@ -0,0 +1,139 @@
+package jenkinsclient;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import jenkinsclient.exceptions.MaximumOperationsReachedException;
+
+/**
+ * Coalesces identical concurrent reads of a {@link JenkinsClient}. The first
+ * caller of a key runs the read, callers of the same key arriving while it runs
+ * wait for it and share its result or its exception, without a request or an
+ * operation slot of their own. A successful result is also handed to callers
+ * arriving within the reuse window after it completed.
+ */
+class SingleFlight {
+
+	interface Read<T, E extends Exception> {
+		T call() throws MaximumOperationsReachedException, E;
+	}
+
+	private static class Flight {
+		final CompletableFuture<Object> result = new CompletableFuture<Object>();
+		volatile long completedAt;
+	}
+
+	private final ConcurrentHashMap<String, Flight> flights = new ConcurrentHashMap<String, Flight>();
+	private final LongAdder coalesced = new LongAdder();
+	private final boolean enabled;
+	private final long reuseNanos;
+	private final ScheduledExecutorService scheduler;
+
+	SingleFlight(boolean enabled, long reuseMillis, ScheduledExecutorService scheduler) {
+		this.enabled = enabled;
+		this.reuseNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(0, reuseMillis));
+		this.scheduler = scheduler;
+	}
+
+	/**
+	 * Runs the read, or waits for the same read already running.
+	 *
+	 * @param key
+	 *            identifies the read, equal keys must return equal results
+	 */
+	@SuppressWarnings("unchecked")
+	<T, E extends Exception> T execute(String key, Read<T, E> read) throws MaximumOperationsReachedException, E {
+		if (!enabled)
+			return read.call();
+
+		Flight mine = new Flight();
+		Flight flight;
+		while (true) {
+			flight = flights.putIfAbsent(key, mine);
+			if (flight == null) {
+				flight = mine;
+				break;
+			}
+			long completedAt = flight.completedAt;
+			if (completedAt == 0 || System.nanoTime() - completedAt < reuseNanos)
+				break;
+			if (flights.replace(key, flight, mine)) {
+				flight = mine;
+				break;
+			}
+		}
+
+		if (flight != mine) {
+			coalesced.increment();
+			return (T) SingleFlight.<E>await(flight);
+		}
+
+		try {
+			T value = read.call();
+			mine.completedAt = System.nanoTime();
+			mine.result.complete(value);
+			forgetLater(key, mine);
+			return value;
+		} catch (Exception | Error e) {
+			// Failures are not reused, the next caller tries again.
+			flights.remove(key, mine);
+			mine.result.completeExceptionally(e);
+			throw e;
+		}
+	}
+
+	/**
+	 * Waits for the read of another caller and rethrows its exception. The wait is
+	 * not interruptible, like the blocking request the caller would otherwise have
+	 * sent itself.
+	 */
+	@SuppressWarnings("unchecked")
+	private static <E extends Exception> Object await(Flight flight) throws MaximumOperationsReachedException, E {
+		boolean interrupted = false;
+		try {
+			while (true) {
+				try {
+					return flight.result.get();
+				} catch (InterruptedException e) {
+					interrupted = true;
+				}
+			}
+		} catch (ExecutionException e) {
+			Throwable cause = e.getCause();
+			if (cause instanceof MaximumOperationsReachedException)
+				throw (MaximumOperationsReachedException) cause;
+			if (cause instanceof RuntimeException)
+				throw (RuntimeException) cause;
+			if (cause instanceof Error)
+				throw (Error) cause;
+			throw (E) cause;
+		} finally {
+			if (interrupted)
+				Thread.currentThread().interrupt();
+		}
+	}
+
+	private void forgetLater(String key, Flight flight) {
+		if (reuseNanos == 0) {
+			flights.remove(key, flight);
+			return;
+		}
+		try {
+			scheduler.schedule(() -> flights.remove(key, flight), reuseNanos, TimeUnit.NANOSECONDS);
+		} catch (RejectedExecutionException e) {
+			flights.remove(key, flight);
+		}
+	}
+
+	/**
+	 * Calls served by another caller's read since the client was created.
+	 */
+	long getCoalesced() {
+		return coalesced.sum();
+	}
+}
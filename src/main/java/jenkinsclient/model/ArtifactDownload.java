@@ -0,0 +1,73 @@
+package jenkinsclient.model;
+
+import java.nio.file.Path;
+
+/**
+ * Result of downloading an artifact to a file.
+ */
+public class ArtifactDownload {
+	private final String relativePath;
+	private final Path target;
+	private final long size;
+	private final long resumedFrom;
+	private final String sha256;
+	private final long elapsedMillis;
+
+	public ArtifactDownload(String relativePath, Path target, long size, long resumedFrom, String sha256,
+			long elapsedMillis) {
+		this.relativePath = relativePath;
+		this.target = target;
+		this.size = size;
+		this.resumedFrom = resumedFrom;
+		this.sha256 = sha256;
+		this.elapsedMillis = elapsedMillis;
+	}
+
+	public String getRelativePath() {
+		return relativePath;
+	}
+
+	public Path getTarget() {
+		return target;
+	}
+
+	/**
+	 * Size of the downloaded file in bytes.
+	 */
+	public long getSize() {
+		return size;
+	}
+
+	/**
+	 * Bytes that were already on disk from an earlier, interrupted download, 0 if
+	 * the download started from the beginning.
+	 */
+	public long getResumedFrom() {
+		return resumedFrom;
+	}
+
+	/**
+	 * Bytes transferred by this download.
+	 */
+	public long getTransferred() {
+		return size - resumedFrom;
+	}
+
+	/**
+	 * Lowercase hex SHA-256 of the whole file.
+	 */
+	public String getSha256() {
+		return sha256;
+	}
+
+	public long getElapsedMillis() {
+		return elapsedMillis;
+	}
+
+	/**
+	 * Bytes transferred by this download per second.
+	 */
+	public double getBytesPerSecond() {
+		return elapsedMillis == 0 ? getTransferred() * 1000.0 : getTransferred() * 1000.0 / elapsedMillis;
+	}
+}
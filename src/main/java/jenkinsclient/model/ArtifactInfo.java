@@ -0,0 +1,32 @@
+package jenkinsclient.model;
+
+/**
+ * An artifact archived by a build.
+ */
+public class ArtifactInfo {
+	private final String fileName;
+	private final String relativePath;
+	private final String displayPath;
+
+	public ArtifactInfo(String fileName, String relativePath, String displayPath) {
+		this.fileName = fileName;
+		this.relativePath = relativePath;
+		this.displayPath = displayPath;
+	}
+
+	public String getFileName() {
+		return fileName;
+	}
+
+	/**
+	 * Path of the artifact below the artifact directory of the build, used to
+	 * download it.
+	 */
+	public String getRelativePath() {
+		return relativePath;
+	}
+
+	public String getDisplayPath() {
+		return displayPath;
+	}
+}
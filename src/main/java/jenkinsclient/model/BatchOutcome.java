@@ -0,0 +1,34 @@
+package jenkinsclient.model;
+
+/**
+ * Result of one operation of a batch: the error that prevented it, or none if
+ * it succeeded, and how long it took.
+ */
+public abstract class BatchOutcome {
+	private final Exception error;
+	private final long elapsedMillis;
+
+	protected BatchOutcome(Exception error, long elapsedMillis) {
+		this.error = error;
+		this.elapsedMillis = elapsedMillis;
+	}
+
+	/**
+	 * @return the failure, null if the operation succeeded
+	 */
+	public Exception getError() {
+		return error;
+	}
+
+	public boolean isSuccess() {
+		return error == null;
+	}
+
+	/**
+	 * Time from submission of the operation until its response, including time
+	 * spent waiting for an operation slot.
+	 */
+	public long getElapsedMillis() {
+		return elapsedMillis;
+	}
+}
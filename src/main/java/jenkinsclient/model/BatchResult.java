@@ -0,0 +1,55 @@
+package jenkinsclient.model;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Outcomes of a batch operation, in the order of its inputs, with aggregate
+ * timing.
+ */
+public class BatchResult<O extends BatchOutcome> {
+	private final List<O> outcomes;
+	private final long totalMillis;
+
+	public BatchResult(List<O> outcomes, long totalMillis) {
+		this.outcomes = Collections.unmodifiableList(outcomes);
+		this.totalMillis = totalMillis;
+	}
+
+	public List<O> getOutcomes() {
+		return outcomes;
+	}
+
+	public int getSucceeded() {
+		int succeeded = 0;
+		for (O outcome : outcomes) {
+			if (outcome.isSuccess())
+				succeeded++;
+		}
+		return succeeded;
+	}
+
+	public int getFailed() {
+		return outcomes.size() - getSucceeded();
+	}
+
+	/**
+	 * Wall-clock time of the whole batch.
+	 */
+	public long getTotalMillis() {
+		return totalMillis;
+	}
+
+	/**
+	 * Operations per second over the whole batch.
+	 */
+	public double getThroughput() {
+		return totalMillis == 0 ? outcomes.size() * 1000.0 : outcomes.size() * 1000.0 / totalMillis;
+	}
+
+	@Override
+	public String toString() {
+		return String.format("%s succeeded, %s failed in %sms (%.1f/s)", getSucceeded(), getFailed(), totalMillis,
+				getThroughput());
+	}
+}
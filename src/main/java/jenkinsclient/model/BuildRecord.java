@@ -0,0 +1,64 @@
+package jenkinsclient.model;
+
+import com.offbytwo.jenkins.model.BuildResult;
+
+/**
+ * A finished build as kept by the local build history store.
+ */
+public class BuildRecord {
+	private final String jobPath;
+	private final int number;
+	private final BuildResult result;
+	private final long timestamp;
+	private final long duration;
+	private final long queueWaitMillis;
+
+	public BuildRecord(String jobPath, int number, BuildResult result, long timestamp, long duration,
+			long queueWaitMillis) {
+		this.jobPath = jobPath;
+		this.number = number;
+		this.result = result;
+		this.timestamp = timestamp;
+		this.duration = duration;
+		this.queueWaitMillis = queueWaitMillis;
+	}
+
+	public String getJobPath() {
+		return jobPath;
+	}
+
+	public int getNumber() {
+		return number;
+	}
+
+	public BuildResult getResult() {
+		return result;
+	}
+
+	/**
+	 * Start of the build in milliseconds since the epoch.
+	 */
+	public long getTimestamp() {
+		return timestamp;
+	}
+
+	/**
+	 * Duration of the build in milliseconds.
+	 */
+	public long getDuration() {
+		return duration;
+	}
+
+	/**
+	 * Time the build waited in the queue in milliseconds, -1 if the Jenkins does
+	 * not report it.
+	 */
+	public long getQueueWaitMillis() {
+		return queueWaitMillis;
+	}
+
+	@Override
+	public String toString() {
+		return jobPath + " #" + number + " " + result;
+	}
+}
@@ -0,0 +1,76 @@
+package jenkinsclient.model;
+
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.Map;
+
+import com.offbytwo.jenkins.model.BuildResult;
+
+/**
+ * Aggregate of the builds matched by a build history query.
+ */
+public class BuildStats {
+	private final int count;
+	private final Map<BuildResult, Integer> countByResult;
+	private final long[] sortedDurations;
+	private final long[] sortedQueueWaits;
+
+	/**
+	 * @param sortedDurations
+	 *            durations of all builds, ascending
+	 * @param sortedQueueWaits
+	 *            queue waits of the builds that report one, ascending
+	 */
+	public BuildStats(Map<BuildResult, Integer> countByResult, long[] sortedDurations, long[] sortedQueueWaits) {
+		this.countByResult = Collections.unmodifiableMap(new EnumMap<BuildResult, Integer>(countByResult));
+		this.sortedDurations = sortedDurations;
+		this.sortedQueueWaits = sortedQueueWaits;
+		this.count = sortedDurations.length;
+	}
+
+	public int getCount() {
+		return count;
+	}
+
+	public int getCount(BuildResult result) {
+		Integer resultCount = countByResult.get(result);
+		return resultCount == null ? 0 : resultCount;
+	}
+
+	public Map<BuildResult, Integer> getCountByResult() {
+		return countByResult;
+	}
+
+	/**
+	 * Share of builds with result FAILURE, 0 if there are no builds.
+	 */
+	public double getFailureRate() {
+		return count == 0 ? 0 : (double) getCount(BuildResult.FAILURE) / count;
+	}
+
+	/**
+	 * @param percentile
+	 *            between 0 and 100, for example 50 for the median
+	 * @return the build duration at the percentile, -1 if there are no builds
+	 */
+	public long getDurationPercentile(double percentile) {
+		return percentile(sortedDurations, percentile);
+	}
+
+	/**
+	 * @param percentile
+	 *            between 0 and 100
+	 * @return the queue wait at the percentile, -1 if no build reported one
+	 */
+	public long getQueueWaitPercentile(double percentile) {
+		return percentile(sortedQueueWaits, percentile);
+	}
+
+	private static long percentile(long[] sorted, double percentile) {
+		if (sorted.length == 0)
+			return -1;
+		// Nearest rank.
+		int rank = (int) Math.ceil(Math.max(0, Math.min(100, percentile)) / 100 * sorted.length);
+		return sorted[Math.max(0, rank - 1)];
+	}
+}
@@ -0,0 +1,57 @@
+package jenkinsclient.model;
+
+import com.offbytwo.jenkins.model.BuildResult;
+
+/**
+ * Compact status of one build, as returned by the bulk build queries of
+ * {@link jenkinsclient.BuildOps}.
+ */
+public class BuildSummary {
+	private final int number;
+	private final BuildResult result;
+	private final boolean building;
+	private final long duration;
+	private final long timestamp;
+
+	public BuildSummary(int number, BuildResult result, boolean building, long duration, long timestamp) {
+		this.number = number;
+		this.result = result;
+		this.building = building;
+		this.duration = duration;
+		this.timestamp = timestamp;
+	}
+
+	public int getNumber() {
+		return number;
+	}
+
+	/**
+	 * @return the result, BUILDING while the build runs
+	 */
+	public BuildResult getResult() {
+		return result;
+	}
+
+	public boolean isBuilding() {
+		return building;
+	}
+
+	/**
+	 * Duration in milliseconds, 0 while the build runs.
+	 */
+	public long getDuration() {
+		return duration;
+	}
+
+	/**
+	 * Start time in milliseconds since the epoch.
+	 */
+	public long getTimestamp() {
+		return timestamp;
+	}
+
+	@Override
+	public String toString() {
+		return String.format("#%s %s", number, result);
+	}
+}
@@ -0,0 +1,23 @@
+package jenkinsclient.model;
+
+/**
+ * Result of cancelling one queue item of a batch. It succeeded if Jenkins
+ * accepted the cancellation; an item an executor picked up meanwhile keeps
+ * building.
+ */
+public class CancelOutcome extends BatchOutcome {
+	private final String queueReferenceUrl;
+
+	public CancelOutcome(String queueReferenceUrl, Exception error, long elapsedMillis) {
+		super(error, elapsedMillis);
+		this.queueReferenceUrl = queueReferenceUrl;
+	}
+
+	/**
+	 * @return queueReferenceUrl (ex. "jenkinsUrl/queue/item/itemId/") of the
+	 *         cancelled item
+	 */
+	public String getQueueReferenceUrl() {
+		return queueReferenceUrl;
+	}
+}
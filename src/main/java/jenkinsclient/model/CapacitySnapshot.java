@@ -0,0 +1,83 @@
+package jenkinsclient.model;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Executor capacity of all nodes and label atoms of a Jenkins at one point in
+ * time. Label counts follow Jenkins: executors of offline nodes are not counted
+ * and a label is offline if all its nodes are.
+ */
+public class CapacitySnapshot {
+	private final long timestamp;
+	private final List<ComputerInfo> computers;
+	private final Map<String, LabelInfo> labels;
+	private final int queueLength;
+
+	public CapacitySnapshot(long timestamp, List<ComputerInfo> computers, Map<String, LabelInfo> labels,
+			int queueLength) {
+		this.timestamp = timestamp;
+		this.computers = Collections.unmodifiableList(computers);
+		this.labels = Collections.unmodifiableMap(labels);
+		this.queueLength = queueLength;
+	}
+
+	/**
+	 * Time in milliseconds since the epoch at which the snapshot was requested.
+	 */
+	public long getTimestamp() {
+		return timestamp;
+	}
+
+	public List<ComputerInfo> getComputers() {
+		return computers;
+	}
+
+	/**
+	 * Number of items in the build queue.
+	 */
+	public int getQueueLength() {
+		return queueLength;
+	}
+
+	/**
+	 * Executors of all online nodes.
+	 */
+	public int getTotalExecutors() {
+		int total = 0;
+		for (ComputerInfo computer : computers) {
+			if (!computer.isOffline())
+				total += computer.getNumExecutors();
+		}
+		return total;
+	}
+
+	/**
+	 * Idle executors of all online nodes.
+	 */
+	public int getIdleExecutors() {
+		int idle = 0;
+		for (ComputerInfo computer : computers) {
+			if (!computer.isOffline())
+				idle += computer.getIdleExecutors();
+		}
+		return idle;
+	}
+
+	/**
+	 * Label atoms by name, including the node names.
+	 */
+	public Map<String, LabelInfo> getLabels() {
+		return labels;
+	}
+
+	/**
+	 * @return the counts of the label atom, an offline label without executors
+	 *         if no node has the label
+	 */
+	public LabelInfo getLabel(String labelName) {
+		LabelInfo label = labels.get(labelName);
+		return label != null ? label : new LabelInfo(labelName, 0, 0, 0, true);
+	}
+}
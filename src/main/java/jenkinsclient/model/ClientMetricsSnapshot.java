@@ -0,0 +1,102 @@
+package jenkinsclient.model;
+
+import java.util.Collections;
+import java.util.Map;
+
+/**
+ * Operation statistics, limiter state and transferred bytes of one client at
+ * one point in time.
+ */
+public class ClientMetricsSnapshot {
+	private final long timestamp;
+	private final int inFlight;
+	private final int queued;
+	private final int operationLimit;
+	private final int maxOperations;
+	private final long rejected;
+	private final long bytesSent;
+	private final long bytesReceived;
+	private final Map<String, OperationStats> operations;
+
+	public ClientMetricsSnapshot(long timestamp, int inFlight, int queued, int operationLimit, int maxOperations,
+			long rejected, long bytesSent, long bytesReceived, Map<String, OperationStats> operations) {
+		this.timestamp = timestamp;
+		this.inFlight = inFlight;
+		this.queued = queued;
+		this.operationLimit = operationLimit;
+		this.maxOperations = maxOperations;
+		this.rejected = rejected;
+		this.bytesSent = bytesSent;
+		this.bytesReceived = bytesReceived;
+		this.operations = Collections.unmodifiableMap(operations);
+	}
+
+	/**
+	 * Time in milliseconds since the epoch at which the snapshot was taken.
+	 */
+	public long getTimestamp() {
+		return timestamp;
+	}
+
+	/**
+	 * Operations holding a slot.
+	 */
+	public int getInFlight() {
+		return inFlight;
+	}
+
+	/**
+	 * Operations waiting for a slot.
+	 */
+	public int getQueued() {
+		return queued;
+	}
+
+	/**
+	 * Limit of simultaneous operations when the snapshot was taken, it adapts to
+	 * the server unless disabled in the config.
+	 */
+	public int getOperationLimit() {
+		return operationLimit;
+	}
+
+	public int getMaxOperations() {
+		return maxOperations;
+	}
+
+	/**
+	 * Operations rejected with MaximumOperationsReachedException since the
+	 * client was created.
+	 */
+	public long getRejected() {
+		return rejected;
+	}
+
+	/**
+	 * Request body bytes sent since the client was created.
+	 */
+	public long getBytesSent() {
+		return bytesSent;
+	}
+
+	/**
+	 * Response body bytes read since the client was created.
+	 */
+	public long getBytesReceived() {
+		return bytesReceived;
+	}
+
+	/**
+	 * Statistics by operation name, for the operations called at least once.
+	 */
+	public Map<String, OperationStats> getOperations() {
+		return operations;
+	}
+
+	/**
+	 * @return the statistics of the operation, null if it was never called
+	 */
+	public OperationStats getOperation(String name) {
+		return operations.get(name);
+	}
+}
@@ -0,0 +1,46 @@
+package jenkinsclient.model;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A node of the Jenkins with its executor counts and labels.
+ */
+public class ComputerInfo {
+	private final String name;
+	private final int numExecutors;
+	private final int idleExecutors;
+	private final boolean offline;
+	private final List<String> labels;
+
+	public ComputerInfo(String name, int numExecutors, int idleExecutors, boolean offline, List<String> labels) {
+		this.name = name;
+		this.numExecutors = numExecutors;
+		this.idleExecutors = idleExecutors;
+		this.offline = offline;
+		this.labels = Collections.unmodifiableList(labels);
+	}
+
+	public String getName() {
+		return name;
+	}
+
+	public int getNumExecutors() {
+		return numExecutors;
+	}
+
+	public int getIdleExecutors() {
+		return idleExecutors;
+	}
+
+	public boolean isOffline() {
+		return offline;
+	}
+
+	/**
+	 * Label atoms assigned to the node, including its own name.
+	 */
+	public List<String> getLabels() {
+		return labels;
+	}
+}
@@ -0,0 +1,59 @@
+package jenkinsclient.model;
+
+/**
+ * Load of one controller for a label, as seen by the routing of triggers.
+ */
+public class ControllerLoad {
+	private final String jenkinsId;
+	private final int totalExecutors;
+	private final int idleExecutors;
+	private final int queueLength;
+	private final long latencyMillis;
+
+	public ControllerLoad(String jenkinsId, int totalExecutors, int idleExecutors, int queueLength,
+			long latencyMillis) {
+		this.jenkinsId = jenkinsId;
+		this.totalExecutors = totalExecutors;
+		this.idleExecutors = idleExecutors;
+		this.queueLength = queueLength;
+		this.latencyMillis = latencyMillis;
+	}
+
+	public String getJenkinsId() {
+		return jenkinsId;
+	}
+
+	/**
+	 * Executors of the online nodes with the label.
+	 */
+	public int getTotalExecutors() {
+		return totalExecutors;
+	}
+
+	public int getIdleExecutors() {
+		return idleExecutors;
+	}
+
+	/**
+	 * Items in the whole build queue of the controller, including the triggers
+	 * routed to it since its capacity snapshot was taken.
+	 */
+	public int getQueueLength() {
+		return queueLength;
+	}
+
+	/**
+	 * Recent average response time of the controller, -1 if unknown.
+	 */
+	public long getLatencyMillis() {
+		return latencyMillis;
+	}
+
+	/**
+	 * Idle executors not yet claimed by queued items, negative if the queue is
+	 * longer than the idle executors.
+	 */
+	public int getFreeCapacity() {
+		return idleExecutors - queueLength;
+	}
+}
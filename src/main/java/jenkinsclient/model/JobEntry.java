@@ -0,0 +1,66 @@
+package jenkinsclient.model;
+
+/**
+ * A job or folder found by crawling the job tree of a Jenkins.
+ */
+public class JobEntry {
+	private final String path;
+	private final String url;
+	private final String type;
+	private final boolean folder;
+	private final String color;
+	private final BuildSummary lastBuild;
+
+	public JobEntry(String path, String url, String type, boolean folder, String color, BuildSummary lastBuild) {
+		this.path = path;
+		this.url = url;
+		this.type = type;
+		this.folder = folder;
+		this.color = color;
+		this.lastBuild = lastBuild;
+	}
+
+	/**
+	 * Path of the item, for example "/Project/JobA".
+	 */
+	public String getPath() {
+		return path;
+	}
+
+	public String getName() {
+		return path.substring(path.lastIndexOf('/') + 1);
+	}
+
+	public String getUrl() {
+		return url;
+	}
+
+	/**
+	 * Java class of the item on the Jenkins, for example
+	 * "hudson.model.FreeStyleProject".
+	 */
+	public String getType() {
+		return type;
+	}
+
+	/**
+	 * @return true if the item contains other items
+	 */
+	public boolean isFolder() {
+		return folder;
+	}
+
+	/**
+	 * Status color of a job (ex. "blue", "red_anime"), null for folders.
+	 */
+	public String getColor() {
+		return color;
+	}
+
+	/**
+	 * @return the last build, null if the item has no builds
+	 */
+	public BuildSummary getLastBuild() {
+		return lastBuild;
+	}
+}
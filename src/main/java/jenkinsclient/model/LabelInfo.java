@@ -0,0 +1,43 @@
+package jenkinsclient.model;
+
+/**
+ * Executor counts of a label.
+ */
+public class LabelInfo {
+	private final String name;
+	private final int totalExecutors;
+	private final int idleExecutors;
+	private final int busyExecutors;
+	private final boolean offline;
+
+	public LabelInfo(String name, int totalExecutors, int idleExecutors, int busyExecutors, boolean offline) {
+		this.name = name;
+		this.totalExecutors = totalExecutors;
+		this.idleExecutors = idleExecutors;
+		this.busyExecutors = busyExecutors;
+		this.offline = offline;
+	}
+
+	public String getName() {
+		return name;
+	}
+
+	public int getTotalExecutors() {
+		return totalExecutors;
+	}
+
+	public int getIdleExecutors() {
+		return idleExecutors;
+	}
+
+	public int getBusyExecutors() {
+		return busyExecutors;
+	}
+
+	/**
+	 * @return true if all nodes of the label are offline
+	 */
+	public boolean isOffline() {
+		return offline;
+	}
+}
@@ -0,0 +1,97 @@
+package jenkinsclient.model;
+
+import java.beans.ConstructorProperties;
+import java.util.Collections;
+import java.util.Map;
+
+/**
+ * Calls, errors and latency percentiles of one operation of a client since the
+ * client was created. Latencies include the wait for an operation slot.
+ */
+public class OperationStats {
+	private final String name;
+	private final long calls;
+	private final long errors;
+	private final Map<String, Long> errorsByType;
+	private final double meanMillis;
+	private final double p50Millis;
+	private final double p90Millis;
+	private final double p99Millis;
+	private final double p999Millis;
+	private final double maxMillis;
+
+	@ConstructorProperties({ "name", "calls", "errors", "errorsByType", "meanMillis", "p50Millis", "p90Millis",
+			"p99Millis", "p999Millis", "maxMillis" })
+	public OperationStats(String name, long calls, long errors, Map<String, Long> errorsByType, double meanMillis,
+			double p50Millis, double p90Millis, double p99Millis, double p999Millis, double maxMillis) {
+		this.name = name;
+		this.calls = calls;
+		this.errors = errors;
+		this.errorsByType = Collections.unmodifiableMap(errorsByType);
+		this.meanMillis = meanMillis;
+		this.p50Millis = p50Millis;
+		this.p90Millis = p90Millis;
+		this.p99Millis = p99Millis;
+		this.p999Millis = p999Millis;
+		this.maxMillis = maxMillis;
+	}
+
+	/**
+	 * Name of the operation, for example "JobOps.triggerJob".
+	 */
+	public String getName() {
+		return name;
+	}
+
+	/**
+	 * Finished calls, successful or not.
+	 */
+	public long getCalls() {
+		return calls;
+	}
+
+	public long getErrors() {
+		return errors;
+	}
+
+	/**
+	 * Failed calls by simple name of the exception thrown.
+	 */
+	public Map<String, Long> getErrorsByType() {
+		return errorsByType;
+	}
+
+	public double getErrorRate() {
+		return calls == 0 ? 0 : (double) errors / calls;
+	}
+
+	public double getMeanMillis() {
+		return meanMillis;
+	}
+
+	public double getP50Millis() {
+		return p50Millis;
+	}
+
+	public double getP90Millis() {
+		return p90Millis;
+	}
+
+	public double getP99Millis() {
+		return p99Millis;
+	}
+
+	public double getP999Millis() {
+		return p999Millis;
+	}
+
+	public double getMaxMillis() {
+		return maxMillis;
+	}
+
+	@Override
+	public String toString() {
+		return String.format("%s calls=%s errors=%s p50=%.1fms p99=%.1fms max=%.1fms", name, calls, errors, p50Millis,
+				p99Millis, maxMillis);
+	}
+}
@@ -0,0 +1,89 @@
+package jenkinsclient.model;
+
+/**
+ * State of a queue item as decoded from a projected queue item request.
+ */
+public class QueueItemInfo {
+	private final long id;
+	private final boolean cancelled;
+	private final boolean blocked;
+	private final boolean buildable;
+	private final String why;
+	private final long inQueueSince;
+	private final int buildNumber;
+	private final String buildUrl;
+	private final String taskUrl;
+
+	public QueueItemInfo(long id, boolean cancelled, boolean blocked, boolean buildable, String why,
+			long inQueueSince, int buildNumber, String buildUrl, String taskUrl) {
+		this.id = id;
+		this.cancelled = cancelled;
+		this.blocked = blocked;
+		this.buildable = buildable;
+		this.why = why;
+		this.inQueueSince = inQueueSince;
+		this.buildNumber = buildNumber;
+		this.buildUrl = buildUrl;
+		this.taskUrl = taskUrl;
+	}
+
+	public long getId() {
+		return id;
+	}
+
+	public boolean isCancelled() {
+		return cancelled;
+	}
+
+	public boolean isBlocked() {
+		return blocked;
+	}
+
+	public boolean isBuildable() {
+		return buildable;
+	}
+
+	/**
+	 * Reason why the item is still waiting, null once it left the queue.
+	 */
+	public String getWhy() {
+		return why;
+	}
+
+	/**
+	 * Time the item entered the queue in milliseconds since the epoch, 0 once it
+	 * left the queue.
+	 */
+	public long getInQueueSince() {
+		return inQueueSince;
+	}
+
+	/**
+	 * @return true once an executor picked the item up
+	 */
+	public boolean isExecutable() {
+		return buildUrl != null;
+	}
+
+	/**
+	 * @return the build number, -1 until the item is executable
+	 */
+	public int getBuildNumber() {
+		return buildNumber;
+	}
+
+	/**
+	 * @return the build url, null until the item is executable
+	 */
+	public String getBuildUrl() {
+		return buildUrl;
+	}
+
+	/**
+	 * @return the url of the job the item builds, null if the answer did not
+	 *         include it
+	 */
+	public String getTaskUrl() {
+		return taskUrl;
+	}
+}
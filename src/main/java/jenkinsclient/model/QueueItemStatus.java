@@ -0,0 +1,56 @@
+package jenkinsclient.model;
+
+/**
+ * Final state of a watched queue item, see {@link jenkinsclient.QueueWatcher}.
+ */
+public class QueueItemStatus {
+
+	public enum State {
+		/** An executor picked the item up, the build number and url are known. */
+		EXECUTABLE,
+		/** The item was cancelled while in the queue. */
+		CANCELLED,
+		/** The item left the queue and is no longer known to Jenkins. */
+		DISAPPEARED
+	}
+
+	private final String queueReferenceUrl;
+	private final State state;
+	private final int buildNumber;
+	private final String buildUrl;
+
+	public QueueItemStatus(String queueReferenceUrl, State state, int buildNumber, String buildUrl) {
+		this.queueReferenceUrl = queueReferenceUrl;
+		this.state = state;
+		this.buildNumber = buildNumber;
+		this.buildUrl = buildUrl;
+	}
+
+	public String getQueueReferenceUrl() {
+		return queueReferenceUrl;
+	}
+
+	public State getState() {
+		return state;
+	}
+
+	/**
+	 * @return the build number, -1 unless the state is EXECUTABLE
+	 */
+	public int getBuildNumber() {
+		return buildNumber;
+	}
+
+	/**
+	 * @return the build url, null unless the state is EXECUTABLE
+	 */
+	public String getBuildUrl() {
+		return buildUrl;
+	}
+
+	@Override
+	public String toString() {
+		return state == State.EXECUTABLE ? String.format("%s -> %s", queueReferenceUrl, buildUrl)
+				: String.format("%s %s", queueReferenceUrl, state);
+	}
+}
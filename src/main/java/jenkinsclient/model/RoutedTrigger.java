@@ -0,0 +1,35 @@
+package jenkinsclient.model;
+
+/**
+ * A build triggered through a router, with the controller that got it.
+ */
+public class RoutedTrigger {
+	private final String jenkinsId;
+	private final String jenkinsUrl;
+	private final String queueReferenceUrl;
+
+	public RoutedTrigger(String jenkinsId, String jenkinsUrl, String queueReferenceUrl) {
+		this.jenkinsId = jenkinsId;
+		this.jenkinsUrl = jenkinsUrl;
+		this.queueReferenceUrl = queueReferenceUrl;
+	}
+
+	/**
+	 * Id of the client of the controller, usable with JenkinsClient.getClient.
+	 */
+	public String getJenkinsId() {
+		return jenkinsId;
+	}
+
+	public String getJenkinsUrl() {
+		return jenkinsUrl;
+	}
+
+	/**
+	 * @return queueReferenceUrl (ex. "jenkinsUrl/queue/item/itemId") on the
+	 *         controller that got the build
+	 */
+	public String getQueueReferenceUrl() {
+		return queueReferenceUrl;
+	}
+}
@@ -0,0 +1,28 @@
+package jenkinsclient.model;
+
+/**
+ * Result of one {@link TriggerRequest} of a batch: either the queue reference
+ * url of the triggered build or the error that prevented it.
+ */
+public class TriggerOutcome extends BatchOutcome {
+	private final TriggerRequest request;
+	private final String queueReferenceUrl;
+
+	public TriggerOutcome(TriggerRequest request, String queueReferenceUrl, Exception error, long elapsedMillis) {
+		super(error, elapsedMillis);
+		this.request = request;
+		this.queueReferenceUrl = queueReferenceUrl;
+	}
+
+	public TriggerRequest getRequest() {
+		return request;
+	}
+
+	/**
+	 * @return queueReferenceUrl (ex. "jenkinsUrl/queue/item/itemId"), null if the
+	 *         trigger failed
+	 */
+	public String getQueueReferenceUrl() {
+		return queueReferenceUrl;
+	}
+}
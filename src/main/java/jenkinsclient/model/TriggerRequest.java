@@ -0,0 +1,31 @@
+package jenkinsclient.model;
+
+import java.util.Map;
+
+/**
+ * A job to trigger as part of a batch, see
+ * {@link jenkinsclient.JobOps#triggerJobs(java.util.Collection, int)}.
+ */
+public class TriggerRequest {
+	private final String jobPath;
+	private final Map<String, String> params;
+
+	/**
+	 * @param jobPath
+	 *            Path of the job, for example "/ProjectABC/JobA".
+	 * @param params
+	 *            Build parameters, may be null.
+	 */
+	public TriggerRequest(String jobPath, Map<String, String> params) {
+		this.jobPath = jobPath;
+		this.params = params;
+	}
+
+	public String getJobPath() {
+		return jobPath;
+	}
+
+	public Map<String, String> getParams() {
+		return params;
+	}
+}
@@ -0,0 +1,236 @@
+package jenkinsclient;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.net.ConnectException;
+import java.net.SocketTimeoutException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
+import org.junit.Test;
+
+import jenkinsclient.exceptions.MaximumOperationsReachedException;
+
+public class AdmissionControllerTest {
+
+	private static JenkinsClientConfig adaptive() {
+		JenkinsClientConfig config = new JenkinsClientConfig();
+		config.setMinOperations(2);
+		config.setInitialOperations(20);
+		config.setMaxOperations(200);
+		return config;
+	}
+
+	private static JenkinsClientConfig fixed(int maxOperations, int maxQueuedOperations, long acquireTimeoutMillis) {
+		JenkinsClientConfig config = new JenkinsClientConfig();
+		config.setAdaptiveConcurrency(false);
+		config.setMaxOperations(maxOperations);
+		config.setMaxQueuedOperations(maxQueuedOperations);
+		config.setAcquireTimeoutMillis(acquireTimeoutMillis);
+		return config;
+	}
+
+	/**
+	 * Keeps every slot of the limit in use and reports the latency until the
+	 * condition holds.
+	 */
+	private static void load(AdmissionController admission, long rttNanos, BooleanSupplier until) {
+		long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+		while (!until.getAsBoolean()) {
+			assertTrue("limit did not move", System.nanoTime() < deadline);
+			while (admission.tryAcquire())
+				;
+			admission.onResponse(rttNanos, false);
+		}
+	}
+
+	@Test
+	public void limitGrowsWhileLatencyStays() {
+		AdmissionController admission = new AdmissionController(adaptive());
+		List<Integer> limits = new CopyOnWriteArrayList<Integer>();
+		admission.setLimitListener(limits::add);
+		assertEquals(20, admission.getLimit());
+
+		load(admission, 1000, () -> admission.getLimit() == 200);
+		assertEquals(Integer.valueOf(200), limits.get(limits.size() - 1));
+		List<Integer> sorted = new ArrayList<Integer>(limits);
+		Collections.sort(sorted);
+		assertEquals(sorted, limits);
+	}
+
+	@Test
+	public void unusedLimitDoesNotGrow() {
+		AdmissionController admission = new AdmissionController(adaptive());
+		for (int i = 0; i < 10000; i++)
+			admission.onResponse(1000, false);
+		assertEquals(20, admission.getLimit());
+	}
+
+	@Test
+	public void limitShrinksWhenLatencyRises() {
+		AdmissionController admission = new AdmissionController(adaptive());
+		load(admission, 1000, () -> admission.getLimit() >= 100);
+		int grown = admission.getLimit();
+
+		load(admission, 20000, () -> admission.getLimit() < grown / 4);
+		assertTrue(admission.getLimit() >= 2);
+	}
+
+	@Test
+	public void overloadBacksOffOncePerRoundTrip() {
+		AdmissionController admission = new AdmissionController(adaptive());
+		List<Integer> limits = new CopyOnWriteArrayList<Integer>();
+		admission.setLimitListener(limits::add);
+		// One slow sample makes the round trip a second long.
+		admission.onResponse(TimeUnit.SECONDS.toNanos(1), false);
+
+		admission.onResponse(1000, true);
+		admission.onResponse(1000, true);
+		admission.onFailure(new SocketTimeoutException());
+		assertEquals(18, admission.getLimit());
+		assertEquals(Arrays.asList(18), limits);
+	}
+
+	@Test
+	public void onlyTimeoutsAndRefusedConnectionsBackOff() {
+		AdmissionController admission = new AdmissionController(adaptive());
+		admission.onFailure(new IllegalStateException("bad request"));
+		assertEquals(20, admission.getLimit());
+		admission.onFailure(new RuntimeException(new ConnectException("refused")));
+		assertEquals(18, admission.getLimit());
+	}
+
+	@Test
+	public void backoffStopsAtMinimum() {
+		AdmissionController admission = new AdmissionController(adaptive());
+		for (int i = 0; i < 100; i++)
+			admission.onResponse(1000, true);
+		assertEquals(2, admission.getLimit());
+	}
+
+	@Test
+	public void fixedLimitIgnoresSignals() {
+		AdmissionController admission = new AdmissionController(fixed(5, 10, 1000));
+		admission.onResponse(1000, true);
+		admission.onFailure(new ConnectException());
+		assertEquals(5, admission.getLimit());
+	}
+
+	@Test
+	public void waitersAreAdmittedInArrivalOrder() throws Exception {
+		AdmissionController admission = new AdmissionController(fixed(1, 10, 10000));
+		admission.acquire();
+		List<Integer> admitted = new CopyOnWriteArrayList<Integer>();
+		List<Thread> waiters = new ArrayList<Thread>();
+		for (int i = 0; i < 5; i++) {
+			final int id = i;
+			Thread waiter = new Thread(() -> {
+				try {
+					admission.acquire();
+					admitted.add(id);
+					admission.release();
+				} catch (MaximumOperationsReachedException e) {
+					admitted.add(-1);
+				}
+			});
+			waiter.start();
+			waiters.add(waiter);
+			awaitQueued(admission, i + 1);
+		}
+		// A newcomer does not overtake the waiters.
+		assertFalse(admission.tryAcquire());
+
+		admission.release();
+		for (Thread waiter : waiters)
+			waiter.join(5000);
+		assertEquals(Arrays.asList(0, 1, 2, 3, 4), admitted);
+		assertEquals(0, admission.getInFlight());
+		assertEquals(0, admission.getRejected());
+	}
+
+	@Test
+	public void fullWaitQueueRejects() throws Exception {
+		AdmissionController admission = new AdmissionController(fixed(1, 1, 10000));
+		admission.acquire();
+		Thread waiter = new Thread(() -> {
+			try {
+				admission.acquire();
+				admission.release();
+			} catch (MaximumOperationsReachedException e) {
+				// Not expected, checked through the rejection count.
+			}
+		});
+		waiter.start();
+		awaitQueued(admission, 1);
+
+		try {
+			admission.acquire();
+			fail("Expected the wait queue to be full");
+		} catch (MaximumOperationsReachedException e) {
+			assertEquals(1, admission.getRejected());
+		}
+		admission.release();
+		waiter.join(5000);
+		assertEquals(1, admission.getRejected());
+	}
+
+	@Test
+	public void waitTimesOut() throws Exception {
+		AdmissionController admission = new AdmissionController(fixed(1, 10, 50));
+		admission.acquire();
+		long started = System.nanoTime();
+		try {
+			admission.acquire();
+			fail("Expected the wait to time out");
+		} catch (MaximumOperationsReachedException e) {
+			assertTrue(System.nanoTime() - started >= TimeUnit.MILLISECONDS.toNanos(50));
+		}
+		assertEquals(0, admission.getQueued());
+	}
+
+	@Test
+	public void nonBlockingRejectsAtOnce() throws Exception {
+		JenkinsClientConfig config = fixed(1, 10, 10000);
+		config.setNonBlockingAdmission(true);
+		AdmissionController admission = new AdmissionController(config);
+		admission.acquire();
+		try {
+			admission.acquire();
+			fail("Expected a rejection");
+		} catch (MaximumOperationsReachedException e) {
+			assertEquals(1, admission.getRejected());
+		}
+	}
+
+	@Test
+	public void asyncPoolFollowsLimit() throws Exception {
+		JenkinsClientConfig config = adaptive();
+		config.setJmxEnabled(false);
+		config.setValidateOnStartup(false);
+		JenkinsClient client = JenkinsClient
+				.getClient(JenkinsClient.createClient("http://127.0.0.1:1/", "user", "token", config));
+		try {
+			assertEquals(20, client.getAsyncPoolSize());
+			client.getAdmissionController().onResponse(1000, true);
+			assertEquals(18, client.getAsyncPoolSize());
+		} finally {
+			client.close();
+		}
+	}
+
+	private static void awaitQueued(AdmissionController admission, int queued) throws InterruptedException {
+		long deadline = System.currentTimeMillis() + 5000;
+		while (admission.getQueued() < queued) {
+			assertTrue(System.currentTimeMillis() < deadline);
+			Thread.sleep(1);
+		}
+	}
+}
@@ -0,0 +1,194 @@
+package jenkinsclient;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.offbytwo.jenkins.model.BuildResult;
+
+import jenkinsclient.model.BuildRecord;
+import jenkinsclient.model.BuildStats;
+
+public class BuildHistoryStoreTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private static BuildRecord build(String jobPath, int number, BuildResult result) {
+		return new BuildRecord(jobPath, number, result, 1000L * number, 10L * number, number);
+	}
+
+	private static List<BuildRecord> builds(String jobPath, int from, int to) {
+		List<BuildRecord> builds = new ArrayList<BuildRecord>();
+		for (int number = from; number <= to; number++)
+			builds.add(build(jobPath, number, number % 4 == 0 ? BuildResult.FAILURE : BuildResult.SUCCESS));
+		return builds;
+	}
+
+	@Test
+	public void reopenAfterClose() throws IOException {
+		Path directory = folder.getRoot().toPath().resolve("history");
+		try (BuildHistoryStore store = BuildHistoryStore.open(directory)) {
+			assertEquals(10, store.append("/F/A", 1, builds("/F/A", 1, 10)));
+			assertEquals(5, store.append("/F/B", 1, builds("/F/B", 1, 5)));
+		}
+
+		try (BuildHistoryStore store = BuildHistoryStore.open(directory)) {
+			assertEquals(15, store.size());
+			assertEquals(10, store.getLastBuildNumber("/F/A"));
+			assertEquals(5, store.getLastBuildNumber("F/B/"));
+			BuildRecord record = store.get("/F/A", 4);
+			assertEquals(BuildResult.FAILURE, record.getResult());
+			assertEquals(4000, record.getTimestamp());
+			assertEquals(40, record.getDuration());
+			assertEquals(4, record.getQueueWaitMillis());
+			assertEquals(Arrays.asList(3, 4, 5), numbers(store.getBuilds("/F/A", 3, 5)));
+			assertNull(store.get("/F/C", 1));
+
+			BuildStats stats = store.getStats("/F", 0, Long.MAX_VALUE);
+			assertEquals(15, stats.getCount());
+			assertEquals(3, stats.getCount(BuildResult.FAILURE));
+			assertEquals(10, store.getStats("/F/A", 0, 10000).getCount());
+			assertEquals(3, store.getStats("/F/A", 2000, 4000).getCount());
+		}
+	}
+
+	@Test
+	public void tornLastRecordIsDropped() throws IOException {
+		Path directory = folder.getRoot().toPath();
+		try (BuildHistoryStore store = BuildHistoryStore.open(directory)) {
+			store.append("/A", 1, builds("/A", 1, 3));
+		}
+		long complete = Files.size(directory.resolve("records.dat"));
+		// A crash in the middle of writing the fourth record.
+		try (FileChannel records = FileChannel.open(directory.resolve("records.dat"), StandardOpenOption.APPEND)) {
+			records.write(ByteBuffer.wrap(new byte[17]));
+		}
+
+		try (BuildHistoryStore store = BuildHistoryStore.open(directory)) {
+			assertEquals(3, store.size());
+			assertEquals(complete, Files.size(directory.resolve("records.dat")));
+			assertEquals(1, store.append("/A", 1, builds("/A", 1, 4)));
+		}
+		try (BuildHistoryStore store = BuildHistoryStore.open(directory)) {
+			assertEquals(4, store.size());
+			assertEquals(Arrays.asList(1, 2, 3, 4), numbers(store.getBuilds("/A", 1, 10)));
+		}
+	}
+
+	@Test
+	public void recordsMissingFromIndexAreIndexedAgain() throws IOException {
+		Path directory = folder.getRoot().toPath();
+		try (BuildHistoryStore store = BuildHistoryStore.open(directory)) {
+			store.append("/A", 1, builds("/A", 1, 20));
+		}
+		// A crash after the records were written but before the index was.
+		try (BuildHistoryIndex index = BuildHistoryIndex.open(directory.resolve("index.dat"))) {
+			index.reset();
+		}
+
+		try (BuildHistoryStore store = BuildHistoryStore.open(directory)) {
+			assertEquals(20, store.size());
+			assertEquals(17, store.get("/A", 17).getNumber());
+			assertEquals(0, store.append("/A", 1, builds("/A", 1, 20)));
+		}
+	}
+
+	@Test
+	public void indexGrowsPastLoadFactor() throws IOException {
+		Path file = folder.getRoot().toPath().resolve("index.dat");
+		int builds = 100000;
+		try (BuildHistoryIndex index = BuildHistoryIndex.open(file)) {
+			long initialSize = Files.size(file);
+			for (int number = 1; number <= builds; number++)
+				assertTrue(index.put(number % 7, number, number * 3L));
+			index.setCoveredRecords(builds);
+			assertTrue(Files.size(file) > initialSize);
+			assertEquals(builds, index.size());
+		}
+
+		try (BuildHistoryIndex index = BuildHistoryIndex.open(file)) {
+			assertEquals(builds, index.size());
+			assertEquals(builds, index.getCoveredRecords());
+			for (int number = 1; number <= builds; number++)
+				assertEquals(number * 3L, index.get(number % 7, number));
+			assertEquals(-1, index.get(0, builds + 1));
+			assertEquals(-1, index.get(1, 7));
+		}
+	}
+
+	@Test
+	public void scanSpansSeveralBuffers() throws IOException {
+		Path directory = folder.getRoot().toPath();
+		// More records than two scan buffers, written through several flushes.
+		int count = 4000;
+		try (BuildHistoryStore store = BuildHistoryStore.open(directory)) {
+			assertEquals(count, store.append("/A", 1, builds("/A", 1, count)));
+		}
+		try (BuildHistoryIndex index = BuildHistoryIndex.open(directory.resolve("index.dat"))) {
+			index.reset();
+		}
+
+		try (BuildHistoryStore store = BuildHistoryStore.open(directory)) {
+			assertEquals(count, store.size());
+			assertEquals(3999 * 10L, store.get("/A", 3999).getDuration());
+			List<BuildRecord> scanned = new ArrayList<BuildRecord>();
+			store.forEach("/A", 0, Long.MAX_VALUE, scanned::add);
+			assertEquals(count, scanned.size());
+			for (int i = 0; i < count; i++) {
+				assertEquals(i + 1, scanned.get(i).getNumber());
+				assertEquals(i + 1, scanned.get(i).getQueueWaitMillis());
+			}
+			BuildStats stats = store.getStats("/A", 0, Long.MAX_VALUE);
+			assertEquals(count, stats.getCount());
+			assertEquals(count / 4, stats.getCount(BuildResult.FAILURE));
+		}
+	}
+
+	@Test
+	public void duplicateBuildKeepsItsRecord() throws IOException {
+		try (BuildHistoryStore store = BuildHistoryStore.open(folder.getRoot().toPath())) {
+			assertEquals(2, store.append("/A", 1, builds("/A", 1, 2)));
+			List<BuildRecord> again = Arrays.asList(build("/A", 2, BuildResult.ABORTED), build("/A", 3,
+					BuildResult.SUCCESS));
+			assertEquals(1, store.append("/A", 1, again));
+
+			assertEquals(3, store.size());
+			assertEquals(BuildResult.SUCCESS, store.get("/A", 2).getResult());
+			assertEquals(1, store.getStats("/A", 2000, 2000).getCount());
+		}
+	}
+
+	@Test
+	public void runningBuildsAreNotStored() throws IOException {
+		try (BuildHistoryStore store = BuildHistoryStore.open(folder.getRoot().toPath())) {
+			List<BuildRecord> builds = builds("/A", 1, 3);
+			builds.add(build("/A", 4, BuildResult.BUILDING));
+			builds.add(build("/A", 5, BuildResult.SUCCESS));
+			assertEquals(4, store.append("/A", 1, builds));
+			assertNull(store.get("/A", 4));
+			assertEquals(5, store.getLastBuildNumber("/A"));
+		}
+	}
+
+	private static List<Integer> numbers(List<BuildRecord> builds) {
+		List<Integer> numbers = new ArrayList<Integer>();
+		for (BuildRecord build : builds)
+			numbers.add(build.getNumber());
+		return numbers;
+	}
+}